@@ -0,0 +1,109 @@
+package com.example.jira.plugin.bench;
+
+import com.example.jira.plugin.model.Budget;
+import com.example.jira.plugin.model.CumulativePoint;
+import com.example.jira.plugin.model.NamedAmount;
+import com.example.jira.plugin.service.BudgetServiceImpl;
+import com.example.jira.plugin.store.TimeBucket;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// the read paths behind the dashboard and the issue panel, plus a single expense write.
+// every call picks the next project round-robin, so with several projects the lookups
+// don't always hit the same hot entries
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "-Dbudget.tracker.mail=memory"})
+@State(Scope.Benchmark)
+public class BudgetServiceBenchmark {
+    private static final int EPICS = 10;
+
+    @Param({"1", "20"})
+    public int projects;
+
+    @Param({"1000", "10000"})
+    public int expensesPerProject;
+
+    @Param({"3"})
+    public int issuesPerExpense;
+
+    @Param({"20"})
+    public int epicFanout;
+
+    private Workload workload;
+    private BudgetServiceImpl budgetService;
+    private List<String> projectKeys;
+    private List<String> epicKeys;
+    private List<String> childKeys;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        workload = new Workload(projects, expensesPerProject, issuesPerExpense, EPICS, epicFanout, 42);
+        budgetService = workload.getBudgetService();
+        projectKeys = workload.getProjectKeys();
+        epicKeys = workload.getEpicKeys();
+        childKeys = workload.getChildKeys();
+    }
+
+    @TearDown
+    public void tearDown() {
+        workload.close();
+    }
+
+    private int nextProject() {
+        next = next + 1 == projects ? 0 : next + 1;
+        return next;
+    }
+
+    // a create followed by a delete, so the store stays the same size however long it runs
+    @Benchmark
+    public Budget createBudget() {
+        String projectKey = projectKeys.get(nextProject());
+        Budget budget = new Budget();
+        budget.setProjectKey(projectKey);
+        budget.setBudgetName("Benchmark expense");
+        budget.setBudgetCategory("Hardware");
+        budget.setAmount(12.5);
+        budget.setDate("2024-06-01T00:00:00.000Z");
+        budgetService.createBudget(budget);
+        budgetService.deleteBudget(budget.getId());
+        return budget;
+    }
+
+    @Benchmark
+    public Map<String, Object> getBudgetOverview() {
+        return budgetService.getBudgetOverview(projectKeys.get(nextProject()));
+    }
+
+    @Benchmark
+    public List<NamedAmount> getExpensesByCategory() {
+        return budgetService.getExpensesByCategory(projectKeys.get(nextProject()));
+    }
+
+    @Benchmark
+    public List<CumulativePoint> getCumulativeExpensesDaily() {
+        return budgetService.getCumulativeExpenses(projectKeys.get(nextProject()), TimeBucket.DAY, null, null);
+    }
+
+    @Benchmark
+    public List<CumulativePoint> getCumulativeExpensesMonthly() {
+        return budgetService.getCumulativeExpenses(projectKeys.get(nextProject()), TimeBucket.MONTH, null, null);
+    }
+
+    // an epic covers itself and its epicFanout children
+    @Benchmark
+    public List<Budget> getExpensesForEpic() {
+        return budgetService.getExpensesForIssue(epicKeys.get(nextProject()));
+    }
+
+    @Benchmark
+    public List<Budget> getExpensesForIssue() {
+        return budgetService.getExpensesForIssue(childKeys.get(nextProject()));
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.jira.plugin.bench;
+
+import com.example.jira.plugin.model.Budget;
+import com.example.jira.plugin.service.BudgetServiceImpl;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// loading a batch of expenses one createBudget call at a time against one createBudgets
+// call, each into an empty service. both index every row the same way; the bulk call saves
+// the per-row lock, aggregate snapshot, version and listener calls (one history timeline
+// point, one alert evaluation and one stream event per project instead of one per row)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, batchSize = 1)
+@Measurement(iterations = 20, batchSize = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "-Dbudget.tracker.mail=memory"})
+@State(Scope.Benchmark)
+public class ExpenseInsertBenchmark {
+    private static final String PROJECT_KEY = "BENCH";
+
+    @Param({"10000"})
+    public int expenses;
+
+    @Param({"3"})
+    public int issuesPerExpense;
+
+    private List<Budget> batch;
+    private BudgetServiceImpl budgetService;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        batch = SyntheticData.expenses(PROJECT_KEY, expenses, 1_000, issuesPerExpense, 42);
+    }
+
+    @Setup(Level.Invocation)
+    public void emptyService() {
+        budgetService = new BudgetServiceImpl(new InMemoryIssueHierarchy());
+        budgetService.setProjectBudget(PROJECT_KEY, 1_000_000_000_000.0);
+    }
+
+    @TearDown(Level.Invocation)
+    public void closeService() {
+        budgetService.shutdown();
+    }
+
+    @Benchmark
+    public BudgetServiceImpl singleInserts() {
+        for (Budget budget : batch) {
+            budgetService.createBudget(budget);
+        }
+        return budgetService;
+    }
+
+    @Benchmark
+    public BudgetServiceImpl bulkInsert() {
+        budgetService.createBudgets(batch);
+        return budgetService;
+    }
+}
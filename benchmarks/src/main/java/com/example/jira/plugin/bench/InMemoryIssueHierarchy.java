@@ -0,0 +1,35 @@
+package com.example.jira.plugin.bench;
+
+import com.example.jira.plugin.hierarchy.IssueHierarchy;
+
+import java.util.*;
+
+// stands in for Jira's search so the benchmarks measure the plugin, not Lucene
+public class InMemoryIssueHierarchy implements IssueHierarchy {
+    private final Map<String, List<Epic>> epicsByProject = new HashMap<>();
+    private final Map<String, Set<String>> childKeysByEpic = new HashMap<>();
+
+    public void addEpic(String projectKey, String epicKey, String summary) {
+        epicsByProject.computeIfAbsent(projectKey, k -> new ArrayList<>()).add(new Epic(epicKey, summary));
+        childKeysByEpic.computeIfAbsent(epicKey, k -> new HashSet<>());
+    }
+
+    public void addChild(String epicKey, String issueKey) {
+        childKeysByEpic.computeIfAbsent(epicKey, k -> new HashSet<>()).add(issueKey);
+    }
+
+    @Override
+    public List<Epic> getEpics(String projectKey) {
+        return epicsByProject.getOrDefault(projectKey, Collections.<Epic>emptyList());
+    }
+
+    @Override
+    public Set<String> getChildKeys(String epicKey) {
+        return childKeysByEpic.getOrDefault(epicKey, Collections.<String>emptySet());
+    }
+
+    @Override
+    public boolean isEpic(String issueKey) {
+        return childKeysByEpic.containsKey(issueKey);
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.jira.plugin.bench;
+
+import com.example.jira.plugin.suggest.IndexedIssue;
+import com.example.jira.plugin.suggest.IssuePrefixIndex;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+// issue picker lookups against one project's prefix index, next to a scan of every summary,
+// which is what answering from memory without an index would cost. each call takes the next
+// query round-robin: short and long word prefixes, two words, and key prefixes
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "-Dbudget.tracker.mail=memory"})
+@State(Scope.Benchmark)
+public class IssueSuggestBenchmark {
+    private static final String PROJECT_KEY = "BENCH";
+    private static final int LIMIT = 20;
+    private static final String[] WORDS = {"laptop", "license", "server", "migration", "training", "cloud", "hosting",
+            "consulting", "audit", "backup", "monitor", "network", "upgrade", "design", "review", "vendor", "support",
+            "rollout", "security", "storage", "database", "invoice", "travel", "onboarding", "hardware", "renewal"};
+    private static final String[] QUERIES = {"la", "migr", "cloud host", "bench-12", "secu aud", "renewal", "bench-4711"};
+
+    @Param({"10000", "100000"})
+    public int issues;
+
+    private IssuePrefixIndex index;
+    private List<IndexedIssue> allIssues;
+    private int nextQuery;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        index = new IssuePrefixIndex();
+        allIssues = new ArrayList<>(issues);
+        for (int i = 1; i <= issues; i++) {
+            StringBuilder summary = new StringBuilder();
+            int words = 3 + random.nextInt(5);
+            for (int w = 0; w < words; w++) {
+                summary.append(w > 0 ? " " : "").append(WORDS[random.nextInt(WORDS.length)]);
+            }
+            IndexedIssue issue = new IndexedIssue(i, SyntheticData.issueKey(PROJECT_KEY, i), summary.toString(), "Task", null);
+            index.add(issue);
+            allIssues.add(issue);
+        }
+        index.loaded();
+    }
+
+    @Benchmark
+    public List<IndexedIssue> prefixIndex() {
+        return index.search(QUERIES[nextQuery()], LIMIT, issue -> true);
+    }
+
+    @Benchmark
+    public List<IndexedIssue> summaryScan() {
+        String query = QUERIES[nextQuery()].toLowerCase(Locale.ROOT);
+        String[] words = query.split("\\s+");
+        List<IndexedIssue> matches = new ArrayList<>();
+        for (IndexedIssue issue : allIssues) {
+            if (matches.size() == LIMIT) {
+                break;
+            }
+            String key = issue.getKey().toLowerCase(Locale.ROOT);
+            String summary = " " + issue.getSummary().toLowerCase(Locale.ROOT);
+            boolean all = true;
+            for (String word : words) {
+                if (!summary.contains(" " + word)) {
+                    all = false;
+                    break;
+                }
+            }
+            if (key.startsWith(query) || all) {
+                matches.add(issue);
+            }
+        }
+        return matches;
+    }
+
+    private int nextQuery() {
+        int query = nextQuery;
+        nextQuery = (query + 1) % QUERIES.length;
+        return query;
+    }
+}
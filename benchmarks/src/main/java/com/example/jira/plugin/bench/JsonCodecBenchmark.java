@@ -0,0 +1,114 @@
+package com.example.jira.plugin.bench;
+
+import com.example.jira.plugin.json.BudgetJson;
+import com.example.jira.plugin.model.Budget;
+import com.example.jira.plugin.model.CumulativePoint;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.reflect.Type;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+// the shared codec's streaming adapters against the reflective Gson every resource used to
+// build for itself: an expense listing encoded and decoded, and a year of daily cumulative
+// chart points built and encoded, as typed rows versus a HashMap with boxed values per point.
+// bytes per request are the gc.alloc.rate.norm lines of the GC profiler
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "-Dbudget.tracker.mail=memory"})
+@State(Scope.Benchmark)
+public class JsonCodecBenchmark {
+    private static final String PROJECT_KEY = "BENCH";
+    private static final Type BUDGET_LIST_TYPE = new TypeToken<List<Budget>>() {}.getType();
+    private static final int CHART_POINTS = 365;
+
+    // a page of the listing, and a whole project
+    @Param({"25", "1000"})
+    public int expenses;
+
+    private final Gson reflective = new Gson();
+    private final Gson codec = BudgetJson.gson();
+    private List<Budget> budgets;
+    private String budgetsJson;
+    private String[] dates;
+    private double[] bucketAmounts;
+    private double[] cumulativeAmounts;
+    private int[] counts;
+
+    @Setup
+    public void setUp() {
+        budgets = SyntheticData.expenses(PROJECT_KEY, expenses, 200, 3, 42);
+        for (Budget budget : budgets) {
+            for (Budget.Issue issue : budget.getSelectedIssues()) {
+                issue.setSummary("Issue " + issue.getKey());
+                issue.setType("Task");
+            }
+        }
+        budgetsJson = reflective.toJson(budgets, BUDGET_LIST_TYPE);
+        if (!budgetsJson.equals(codec.toJson(budgets, BUDGET_LIST_TYPE))) {
+            throw new IllegalStateException("The codec writes expenses differently from reflective Gson");
+        }
+
+        Random random = new Random(42);
+        dates = new String[CHART_POINTS];
+        bucketAmounts = new double[CHART_POINTS];
+        cumulativeAmounts = new double[CHART_POINTS];
+        counts = new int[CHART_POINTS];
+        double cumulative = 0;
+        for (int i = 0; i < CHART_POINTS; i++) {
+            dates[i] = LocalDate.of(2024, 1, 1).plusDays(i).toString();
+            bucketAmounts[i] = Math.round(random.nextDouble() * 100_000) / 100.0;
+            cumulative += bucketAmounts[i];
+            cumulativeAmounts[i] = cumulative;
+            counts[i] = random.nextInt(10) + 1;
+        }
+    }
+
+    @Benchmark
+    public String encodeReflective() {
+        return reflective.toJson(budgets, BUDGET_LIST_TYPE);
+    }
+
+    @Benchmark
+    public String encodeCodec() {
+        return codec.toJson(budgets, BUDGET_LIST_TYPE);
+    }
+
+    @Benchmark
+    public List<Budget> decodeReflective() {
+        return reflective.fromJson(budgetsJson, BUDGET_LIST_TYPE);
+    }
+
+    @Benchmark
+    public List<Budget> decodeCodec() {
+        return codec.fromJson(budgetsJson, BUDGET_LIST_TYPE);
+    }
+
+    @Benchmark
+    public String chartReflective() {
+        List<Map<String, Object>> points = new ArrayList<>(CHART_POINTS);
+        for (int i = 0; i < CHART_POINTS; i++) {
+            Map<String, Object> point = new HashMap<>();
+            point.put("date", dates[i]);
+            point.put("amount", cumulativeAmounts[i]);
+            point.put("bucketAmount", bucketAmounts[i]);
+            point.put("count", counts[i]);
+            points.add(point);
+        }
+        return reflective.toJson(points);
+    }
+
+    @Benchmark
+    public String chartCodec() {
+        List<CumulativePoint> points = new ArrayList<>(CHART_POINTS);
+        for (int i = 0; i < CHART_POINTS; i++) {
+            points.add(new CumulativePoint(dates[i], cumulativeAmounts[i], bucketAmounts[i], counts[i]));
+        }
+        return codec.toJson(points);
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.jira.plugin.bench;
+
+import com.example.jira.plugin.hierarchy.IssueHierarchy;
+import com.example.jira.plugin.model.Budget;
+import com.example.jira.plugin.model.NamedAmount;
+import com.example.jira.plugin.service.BudgetServiceImpl;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+// single-pass phase rollup against the per-epic scan it replaced, which cost
+// O(epics x expenses x linked issues) plus one child lookup per epic
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PhaseRollupBenchmark {
+    private static final String PROJECT_KEY = "BENCH";
+
+    @Param({"10", "50", "200"})
+    public int epics;
+
+    @Param({"1000", "10000"})
+    public int expenses;
+
+    private InMemoryIssueHierarchy hierarchy;
+    private BudgetServiceImpl budgetService;
+    private List<Budget> projectExpenses;
+
+    @Setup
+    public void setUp() {
+        int issues = epics * 20;
+        hierarchy = SyntheticData.hierarchy(PROJECT_KEY, epics, issues);
+        budgetService = new BudgetServiceImpl(hierarchy);
+        budgetService.setProjectBudget(PROJECT_KEY, 1_000_000_000.0);
+        projectExpenses = SyntheticData.expenses(PROJECT_KEY, expenses, issues, 3, 42);
+        budgetService.createBudgets(projectExpenses);
+    }
+
+    @Benchmark
+    public List<NamedAmount> singlePass() {
+        return budgetService.getExpensesByPhase(PROJECT_KEY);
+    }
+
+    @Benchmark
+    public Map<String, Double> perEpicScan() {
+        Map<String, Double> epicExpenses = new HashMap<>();
+        for (IssueHierarchy.Epic epic : hierarchy.getEpics(PROJECT_KEY)) {
+            Set<String> epicIssueKeys = new HashSet<>(hierarchy.getChildKeys(epic.getKey()));
+            epicIssueKeys.add(epic.getKey());
+            double epicTotal = projectExpenses.stream()
+                    .filter(b -> b.getSelectedIssues().stream()
+                            .anyMatch(issue -> epicIssueKeys.contains(issue.getKey())))
+                    .mapToDouble(Budget::getAmount)
+                    .sum();
+            epicExpenses.put(epic.getSummary(), epicTotal);
+        }
+        return epicExpenses;
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.jira.plugin.bench;
+
+import com.example.jira.plugin.service.BudgetServiceImpl;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+// the portfolio rollup against what a PMO view has to do without it: one overview call per
+// project, adding up the totals itself and sorting every project to find the worst overruns
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "-Dbudget.tracker.mail=memory"})
+@State(Scope.Benchmark)
+public class PortfolioBenchmark {
+    private static final int TOP = 10;
+
+    @Param({"1000"})
+    public int projects;
+
+    @Param({"100"})
+    public int expensesPerProject;
+
+    private Workload workload;
+    private BudgetServiceImpl budgetService;
+    private List<String> projectKeys;
+
+    @Setup
+    public void setUp() {
+        workload = new Workload(projects, expensesPerProject, 1, 1, 1, 42);
+        budgetService = workload.getBudgetService();
+        projectKeys = workload.getProjectKeys();
+        // budgets between half and one and a half times the spend, so about half the projects are over
+        Random random = new Random(42);
+        for (String projectKey : projectKeys) {
+            double spent = budgetService.getTotalExpenses(projectKey);
+            budgetService.setProjectBudget(projectKey, Math.round(spent * (0.5 + random.nextDouble())));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        workload.close();
+    }
+
+    @Benchmark
+    public Map<String, Object> portfolioRollup() {
+        return budgetService.getPortfolio(TOP);
+    }
+
+    @Benchmark
+    public Map<String, Object> perProjectLoop() {
+        double totalBudget = 0.0;
+        double totalExpenses = 0.0;
+        List<Map.Entry<String, Double>> overruns = new ArrayList<>();
+        for (String projectKey : projectKeys) {
+            Map<String, Object> overview = budgetService.getBudgetOverview(projectKey);
+            double budget = (Double) overview.get("totalBudget");
+            double expenses = (Double) overview.get("totalExpenses");
+            totalBudget += budget;
+            totalExpenses += expenses;
+            if (expenses > budget) {
+                overruns.add(new AbstractMap.SimpleEntry<>(projectKey, expenses - budget));
+            }
+        }
+        overruns.sort(Map.Entry.<String, Double>comparingByValue().reversed());
+
+        Map<String, Object> portfolio = new LinkedHashMap<>();
+        portfolio.put("totalBudget", totalBudget);
+        portfolio.put("totalExpenses", totalExpenses);
+        portfolio.put("topOverruns", overruns.subList(0, Math.min(TOP, overruns.size())));
+        return portfolio;
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.jira.plugin.bench;
+
+import com.example.jira.plugin.model.Budget;
+
+import java.util.*;
+
+// reproducible fake projects: epics with child issues, and expenses linked to a few of those issues
+public final class SyntheticData {
+    private static final String[] CATEGORIES = {"Hardware", "Software", "Travel", "Training", "Consulting", "Licenses"};
+
+    private SyntheticData() {}
+
+    public static String issueKey(String projectKey, int issueNumber) {
+        return projectKey + "-" + issueNumber;
+    }
+
+    public static String projectKey(int project) {
+        return "P" + project;
+    }
+
+    public static InMemoryIssueHierarchy hierarchy(String projectKey, int epics, int issues) {
+        InMemoryIssueHierarchy hierarchy = new InMemoryIssueHierarchy();
+        addProject(hierarchy, projectKey, epics, issues);
+        return hierarchy;
+    }
+
+    // epic i is issue i + 1; the remaining issues are spread round-robin over the epics
+    public static void addProject(InMemoryIssueHierarchy hierarchy, String projectKey, int epics, int issues) {
+        for (int epic = 0; epic < epics; epic++) {
+            hierarchy.addEpic(projectKey, issueKey(projectKey, epic + 1), "Phase " + (epic + 1));
+        }
+        for (int issue = epics; issue < issues; issue++) {
+            hierarchy.addChild(issueKey(projectKey, (issue - epics) % epics + 1), issueKey(projectKey, issue + 1));
+        }
+    }
+
+    public static List<Budget> expenses(String projectKey, int count, int issues, int issuesPerExpense, long seed) {
+        Random random = new Random(seed);
+        List<Budget> budgets = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Budget budget = new Budget();
+            budget.setId(new UUID(seed, i).toString());
+            budget.setProjectKey(projectKey);
+            budget.setBudgetName("Expense " + i);
+            budget.setBudgetCategory(CATEGORIES[random.nextInt(CATEGORIES.length)]);
+            budget.setDescription("synthetic");
+            budget.setAmount(Math.round(random.nextDouble() * 100_000) / 100.0);
+            budget.setDate(String.format("2024-%02d-%02dT00:00:00.000Z", random.nextInt(12) + 1, random.nextInt(28) + 1));
+            List<Budget.Issue> selectedIssues = new ArrayList<>(issuesPerExpense);
+            for (int j = 0; j < issuesPerExpense; j++) {
+                Budget.Issue issue = new Budget.Issue();
+                issue.setKey(issueKey(projectKey, random.nextInt(issues) + 1));
+                selectedIssues.add(issue);
+            }
+            budget.setSelectedIssues(selectedIssues);
+            budgets.add(budget);
+        }
+        return budgets;
+    }
+}
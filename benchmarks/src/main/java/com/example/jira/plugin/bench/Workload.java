@@ -0,0 +1,52 @@
+package com.example.jira.plugin.bench;
+
+import com.example.jira.plugin.service.BudgetServiceImpl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// a BudgetServiceImpl filled with synthetic projects. every project gets its own epics,
+// each with epicFanout child issues, and expenses linked to issuesPerExpense of them
+public final class Workload {
+    private final List<String> projectKeys = new ArrayList<>();
+    private final List<String> epicKeys = new ArrayList<>();
+    private final List<String> childKeys = new ArrayList<>();
+    private final InMemoryIssueHierarchy hierarchy = new InMemoryIssueHierarchy();
+    private final BudgetServiceImpl budgetService = new BudgetServiceImpl(hierarchy);
+
+    public Workload(int projects, int expensesPerProject, int issuesPerExpense, int epics, int epicFanout, long seed) {
+        int issues = epics * (epicFanout + 1);
+        for (int project = 0; project < projects; project++) {
+            String projectKey = SyntheticData.projectKey(project);
+            projectKeys.add(projectKey);
+            SyntheticData.addProject(hierarchy, projectKey, epics, issues);
+            epicKeys.add(SyntheticData.issueKey(projectKey, 1));
+            childKeys.add(SyntheticData.issueKey(projectKey, issues));
+            // high enough that no alert threshold is crossed while measuring
+            budgetService.setProjectBudget(projectKey, 1_000_000_000_000.0);
+            budgetService.createBudgets(SyntheticData.expenses(projectKey, expensesPerProject, issues, issuesPerExpense, seed + project));
+        }
+    }
+
+    public BudgetServiceImpl getBudgetService() {
+        return budgetService;
+    }
+
+    public List<String> getProjectKeys() {
+        return projectKeys;
+    }
+
+    // the first epic of every project
+    public List<String> getEpicKeys() {
+        return epicKeys;
+    }
+
+    // one plain child issue of every project
+    public List<String> getChildKeys() {
+        return childKeys;
+    }
+
+    public void close() {
+        budgetService.shutdown();
+    }
+}
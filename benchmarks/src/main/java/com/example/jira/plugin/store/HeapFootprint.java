@@ -0,0 +1,102 @@
+package com.example.jira.plugin.store;
+
+import com.example.jira.plugin.bench.SyntheticData;
+import com.example.jira.plugin.model.Budget;
+import com.example.jira.plugin.model.Money;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// not a JMH benchmark: measures retained heap per expense, as Budget objects the way
+// they come out of JSON (every row owning its strings) and as the store's compact rows.
+// TLABs count as used heap, hence -XX:-UseTLAB. lives in the store package to reach ExpenseRow. run with a fixed heap, e.g.
+//   java -Xms4g -Xmx4g -XX:-UseTLAB -cp target/benchmarks.jar com.example.jira.plugin.store.HeapFootprint 100000 1000000
+public final class HeapFootprint {
+    private static final int ISSUES = 2_000;
+    private static final int ISSUES_PER_EXPENSE = 3;
+
+    // keeps what's being measured reachable, locals that are no longer read may be collected early
+    private static Object retained;
+
+    private HeapFootprint() {}
+
+    public static void main(String[] args) {
+        int[] counts = args.length > 0 ? new int[args.length] : new int[] {100_000, 1_000_000};
+        for (int i = 0; i < args.length; i++) {
+            counts[i] = Integer.parseInt(args[i]);
+        }
+        for (int count : counts) {
+            measure(count);
+        }
+    }
+
+    private static void measure(int count) {
+        long baseline = usedHeap();
+        List<Budget> budgets = deserializedCopies(SyntheticData.expenses("BENCH", count, ISSUES, ISSUES_PER_EXPENSE, 42));
+        retained = budgets;
+        long budgetBytes = usedHeap() - baseline;
+
+        StringDictionary dictionary = new StringDictionary();
+        List<ExpenseRow> rows = new ArrayList<>(count);
+        for (Budget budget : budgets) {
+            rows.add(ExpenseRow.encode(budget, dictionary, Money.DEFAULT_CURRENCY));
+        }
+        retained = new Object[] {rows, dictionary};
+        budgets = null;
+        long rowBytes = usedHeap() - baseline;
+
+        rows = null;
+        retained = null;
+        ExpenseStore store = new ExpenseStore();
+        store.addAll(deserializedCopies(SyntheticData.expenses("BENCH", count, ISSUES, ISSUES_PER_EXPENSE, 42)));
+        retained = store;
+        long storeBytes = usedHeap() - baseline;
+        retained = null;
+
+        System.out.printf("%,d expenses: Budget %d B/row, ExpenseRow %d B/row, ExpenseStore with indexes %d B/row%n",
+                count, budgetBytes / count, rowBytes / count, storeBytes / count);
+    }
+
+    // SyntheticData shares string literals between rows, a request body doesn't
+    private static List<Budget> deserializedCopies(List<Budget> budgets) {
+        List<Budget> copies = new ArrayList<>(budgets.size());
+        for (Budget budget : budgets) {
+            Budget copy = new Budget();
+            copy.setId(copy(budget.getId()));
+            copy.setProjectKey(copy(budget.getProjectKey()));
+            copy.setBudgetName(copy(budget.getBudgetName()));
+            copy.setBudgetCategory(copy(budget.getBudgetCategory()));
+            copy.setDescription(copy(budget.getDescription()));
+            copy.setAmount(budget.getAmount());
+            copy.setDate(copy(budget.getDate()));
+            List<Budget.Issue> issues = new ArrayList<>(budget.getSelectedIssues().size());
+            for (Budget.Issue issue : budget.getSelectedIssues()) {
+                Budget.Issue issueCopy = new Budget.Issue();
+                issueCopy.setKey(copy(issue.getKey()));
+                issueCopy.setSummary(copy("Issue " + issue.getKey()));
+                issueCopy.setType(copy("Story"));
+                issues.add(issueCopy);
+            }
+            copy.setSelectedIssues(issues);
+            copies.add(copy);
+        }
+        return copies;
+    }
+
+    private static String copy(String value) {
+        return value != null ? new String(value.toCharArray()) : null;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -30,22 +30,17 @@ const JiraIssueSearch = ({ selectedIssues, setSelectedIssues, projectKey }) => {
     if (searchTerm.length < 2) return;
 
     try {
-      const jql = encodeURIComponent(
-        `project = "${projectKey}" AND text ~ "${searchTerm}*"`
-      );
-
+      // served from the plugin's in-memory index, already as {key, summary, type}
       const response = await fetch(
-        `/jira/rest/api/2/search?jql=${jql}&fields=key,summary,issuetype`
-      );
-      const data = await response.json();
-
-      setIssues(
-        data.issues.map((issue) => ({
-          key: issue.key,
-          summary: issue.fields.summary,
-          type: issue.fields.issuetype.name,
-        }))
+        `/jira/rest/budget/1.0/issue-suggestions/${encodeURIComponent(
+          projectKey
+        )}?q=${encodeURIComponent(searchTerm)}`
       );
+      if (!response.ok) {
+        setIssues([]);
+        return;
+      }
+      setIssues(await response.json());
     } catch (error) {
       console.error("Error searching for issues:", error);
     }
@@ -1,4 +1,4 @@
-import React, { useState, useEffect, useMemo } from 'react';
+import React, { useState, useEffect, useMemo, useRef } from 'react';
 import PropTypes from 'prop-types';
 import {
   Box, Table, TableBody, TableCell, TableContainer, TableHead, TablePagination, TableRow, TableSortLabel, Toolbar, Typography, Paper,
@@ -22,6 +22,7 @@ import DateRangeIcon from '@mui/icons-material/DateRange';
 import EuroIcon from '@mui/icons-material/Euro';
 import { visuallyHidden } from '@mui/utils';
 import dayjs from 'dayjs';
+import { debounce } from 'lodash';
 import { PieChart, Pie, Cell, ResponsiveContainer, Tooltip as RechartsTooltip, Legend, BarChart, Bar, XAxis, YAxis, CartesianGrid, LineChart, Line, RadarChart, PolarGrid, PolarAngleAxis, PolarRadiusAxis, Radar } from 'recharts';
 import ExpenseReportModal from '../components/ExpenseReportModal';
 
@@ -206,6 +207,75 @@ export default function BudgetDashboardPage({ projectKey }) {
     fetchAllExpenses();
   }, [projectKey]);
 
+  // the stream handlers compare a changed expense with the row it replaces
+  const expensesRef = useRef(expenses);
+  useEffect(() => {
+    expensesRef.current = expenses;
+  }, [expenses]);
+
+  // the phase chart depends on Jira's epic links, which the events don't carry, so it is
+  // refetched rather than patched: once per burst of changes, and not at all for edits
+  // that leave the amount and the linked issues alone
+  const fetchPhaseDataSoon = useMemo(() => debounce(() => fetchPhaseData(), 2000), [projectKey]);
+
+  // live updates instead of polling: every change to the project arrives as one event
+  useEffect(() => {
+    if (!projectKey || typeof EventSource === 'undefined') {
+      return undefined;
+    }
+    const source = new EventSource(`/jira/plugins/servlet/budget/stream/${projectKey}`);
+    // every event carries the project's totals and its whole by-category breakdown
+    const applyTotals = ({ totals, categories }) => {
+      setBudgetData(prevData => ({ ...prevData, ...totals }));
+      setExpensesByCategory(categories);
+    };
+    const issueKeys = (expense) => (expense.selectedIssues || []).map(issue => issue.key).sort().join(',');
+
+    const onTotals = (event) => applyTotals(JSON.parse(event.data));
+    const onExpenseSaved = (event) => {
+      const data = JSON.parse(event.data);
+      const { expense } = data;
+      applyTotals(data);
+      const previous = expensesRef.current.find(e => e.id === expense.id);
+      if (!previous || previous.amount !== expense.amount || issueKeys(previous) !== issueKeys(expense)) {
+        fetchPhaseDataSoon();
+      }
+      setExpenses(prevExpenses => [...prevExpenses.filter(e => e.id !== expense.id), { selectedIssues: [], ...expense }]);
+    };
+    const onExpenseRemoved = (event) => {
+      const data = JSON.parse(event.data);
+      applyTotals(data);
+      setExpenses(prevExpenses => prevExpenses.filter(e => e.id !== data.id));
+      fetchPhaseDataSoon();
+    };
+    // the first one repeats what the page fetched on mount; a later one means a bulk import
+    // went in or the stream fell behind, so anything may have changed
+    let connected = false;
+    const onSnapshot = (event) => {
+      applyTotals(JSON.parse(event.data));
+      if (connected) {
+        fetchPhaseDataSoon();
+        fetchAllExpenses();
+      }
+      connected = true;
+    };
+
+    source.addEventListener('snapshot', onSnapshot);
+    source.addEventListener('totals', onTotals);
+    source.addEventListener('expense-added', onExpenseSaved);
+    source.addEventListener('expense-updated', onExpenseSaved);
+    source.addEventListener('expense-removed', onExpenseRemoved);
+    return () => {
+      source.close();
+      fetchPhaseDataSoon.cancel();
+    };
+  }, [projectKey]);
+
+  // streamed changes edit the expense list in place, the trend chart follows it
+  useEffect(() => {
+    setExpensesTrend(processExpenseTrends(expenses));
+  }, [expenses]);
+
   const fetchBudgetData = async () => {
     try {
       const response = await fetch(`/jira/rest/budget/1.0/budget/overview/${projectKey}`);
@@ -221,7 +291,14 @@ export default function BudgetDashboardPage({ projectKey }) {
       const categoryResponse = await fetch(`/jira/rest/budget/1.0/budget/expenses/by-category/${projectKey}`);
       const categoryData = await categoryResponse.json();
       setExpensesByCategory(categoryData);
+    } catch (error) {
+      console.error('Error fetching expense data:', error);
+    }
+    fetchPhaseData();
+  };
 
+  const fetchPhaseData = async () => {
+    try {
       const phaseResponse = await fetch(`/jira/rest/budget/1.0/budget/expenses/by-phase/${projectKey}`);
       const phaseData = await phaseResponse.json();
       setExpensesByPhase(phaseData);
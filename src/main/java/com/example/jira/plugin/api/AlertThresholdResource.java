@@ -1,5 +1,6 @@
 package com.example.jira.plugin.api;
 
+import com.example.jira.plugin.json.BudgetJson;
 import com.example.jira.plugin.service.AlertThresholdService;
 import com.example.jira.plugin.service.AlertThresholdServiceImpl;
 import com.example.jira.plugin.service.AlertThresholdServiceSingleton;
@@ -8,7 +9,9 @@ import com.google.gson.Gson;
 import javax.ws.rs.*;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @Path("/alert-thresholds")
 @Produces(MediaType.APPLICATION_JSON)
@@ -19,7 +22,7 @@ public class AlertThresholdResource {
 
     public AlertThresholdResource() {
         this.alertThresholdService = AlertThresholdServiceSingleton.getInstance();
-        this.gson = new Gson();
+        this.gson = BudgetJson.gson();
     }
 
     @GET
@@ -42,7 +45,71 @@ public class AlertThresholdResource {
         return Response.ok().build();
     }
 
+    @GET
+    @Path("/project/{projectKey}")
+    public Response getProjectThresholds(@PathParam("projectKey") String projectKey) {
+        List<Integer> thresholds = alertThresholdService.getProjectThresholds(projectKey);
+        Map<String, Object> result = new HashMap<>();
+        result.put("projectKey", projectKey);
+        result.put("inherited", thresholds == null);
+        result.put("thresholds", thresholds != null ? thresholds : alertThresholdService.getThresholds());
+        return Response.ok(gson.toJson(result)).build();
+    }
+
+    @PUT
+    @Path("/project/{projectKey}")
+    public Response setProjectThresholds(@PathParam("projectKey") String projectKey, String thresholdsJson) {
+        ProjectThresholdsDTO dto = gson.fromJson(thresholdsJson, ProjectThresholdsDTO.class);
+        if (dto == null || dto.thresholds == null) {
+            return Response.status(Response.Status.BAD_REQUEST).entity("thresholds is required").build();
+        }
+        for (Integer threshold : dto.thresholds) {
+            if (threshold == null || threshold <= 0) {
+                return Response.status(Response.Status.BAD_REQUEST).entity("Thresholds must be positive percentages").build();
+            }
+        }
+        alertThresholdService.setProjectThresholds(projectKey, dto.thresholds);
+        return Response.ok().build();
+    }
+
+    // back to the global thresholds
+    @DELETE
+    @Path("/project/{projectKey}")
+    public Response clearProjectThresholds(@PathParam("projectKey") String projectKey) {
+        alertThresholdService.clearProjectThresholds(projectKey);
+        return Response.ok().build();
+    }
+
+    @GET
+    @Path("/recipient-role")
+    public Response getRecipientRole() {
+        Map<String, Object> result = new HashMap<>();
+        result.put("roleName", alertThresholdService.getRecipientRole());
+        return Response.ok(gson.toJson(result)).build();
+    }
+
+    // the project role whose members are emailed the alerts, "Project Manager" unless set here
+    // or with -Dbudget.tracker.alerts.role
+    @PUT
+    @Path("/recipient-role")
+    public Response setRecipientRole(String roleJson) {
+        RecipientRoleDTO dto = gson.fromJson(roleJson, RecipientRoleDTO.class);
+        if (dto == null || dto.roleName == null || dto.roleName.trim().isEmpty()) {
+            return Response.status(Response.Status.BAD_REQUEST).entity("roleName is required").build();
+        }
+        alertThresholdService.setRecipientRole(dto.roleName.trim());
+        return Response.ok().build();
+    }
+
     private static class ThresholdDTO {
         int threshold;
     }
+
+    private static class ProjectThresholdsDTO {
+        List<Integer> thresholds;
+    }
+
+    private static class RecipientRoleDTO {
+        String roleName;
+    }
 }
@@ -1,52 +1,224 @@
 package com.example.jira.plugin.api;
 
+import com.example.jira.plugin.json.BudgetJson;
+import com.example.jira.plugin.metrics.BudgetMetrics;
 import com.example.jira.plugin.model.Budget;
+import com.example.jira.plugin.model.BulkImportResult;
+import com.example.jira.plugin.model.ExpensePage;
+import com.example.jira.plugin.model.Money;
 import com.example.jira.plugin.service.*;
+import com.example.jira.plugin.store.ExpenseKey;
+import com.example.jira.plugin.store.ExpenseQuery;
+import com.example.jira.plugin.store.TimeBucket;
 
 import javax.ws.rs.*;
+import javax.ws.rs.core.CacheControl;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.UriInfo;
+import javax.ws.rs.core.StreamingOutput;
 import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
 
-import java.util.List;
-import java.util.Map;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 @Path("/budget")
 @Consumes({MediaType.APPLICATION_JSON})
 @Produces({MediaType.APPLICATION_JSON})
 public class BudgetResource {
     private final BudgetService budgetService;
-    private final AlertThresholdService alertThresholdService;
+    private static final int MAX_BULK_ROWS = 100_000;
+    private static final int DEFAULT_PAGE_SIZE = 25;
+    private static final int MAX_PAGE_SIZE = 500;
+    private static final int DEFAULT_PORTFOLIO_TOP = 10;
+    private static final int MAX_PORTFOLIO_TOP = 100;
+    private static final int DEFAULT_HISTORY_LIMIT = 100;
+    private static final int MAX_HISTORY_LIMIT = 1_000;
+    // browsers may keep dashboard responses but have to check the ETag before reusing them
+    private static final CacheControl REVALIDATE = revalidate();
+
     private final Gson gson;
 
     public BudgetResource() {
-        this.budgetService = new BudgetServiceImpl();
-        this.alertThresholdService = AlertThresholdServiceSingleton.getInstance();
-        this.gson = new Gson();
+        this.budgetService = BudgetServiceSingleton.getInstance();
+        this.gson = BudgetJson.gson();
     }
 
+    // optional query parameters on the expense listings: category, from, to (yyyy-MM-dd, inclusive),
+    // minAmount, maxAmount, order=asc|desc, plus limit and cursor for keyset paging. with limit or
+    // cursor the response is {"items": [...], "nextCursor": ...}, otherwise a plain array
     @GET
-    public Response getBudgets() {
-        return Response.ok(gson.toJson(budgetService.getAllBudgets())).build();
+    public Response getBudgets(@Context UriInfo uriInfo) {
+        return listExpenses(uriInfo, query -> budgetService.queryExpenses(null, query));
     }
 
     @POST
     public Response createBudget(String budgetJson) {
         Budget budget = gson.fromJson(budgetJson, Budget.class);
-        if (budget.getBudgetName() == null || budget.getBudgetName().isEmpty()) {
-            return Response.status(Response.Status.BAD_REQUEST).entity("Budget name is required").build();
+        String error = validateBudget(budget);
+        if (error != null) {
+            return Response.status(Response.Status.BAD_REQUEST).entity(error).build();
         }
+        // a new expense always gets an id of its own; taking the client's would overwrite whatever expense has it
+        budget.setId(UUID.randomUUID().toString());
         Budget createdBudget = budgetService.createBudget(budget);
 
-        // check thresholds and send alerts
-        String projectKey = createdBudget.getProjectKey();
-        double totalBudget = budgetService.getTotalBudget(projectKey);
-        double totalExpenses = budgetService.getTotalExpenses(projectKey);
-        alertThresholdService.checkThresholdsAndAlert(projectKey, totalBudget, totalExpenses);
-
         return Response.ok(gson.toJson(createdBudget)).build();
     }
 
+    @POST
+    @Path("/bulk")
+    public Response createBudgetsFromJson(InputStream body) {
+        List<Budget> rows = new ArrayList<>();
+        try (JsonReader reader = new JsonReader(new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8)))) {
+            reader.beginArray();
+            while (reader.hasNext()) {
+                if (rows.size() == MAX_BULK_ROWS) {
+                    return tooManyRows();
+                }
+                rows.add(gson.fromJson(reader, Budget.class));
+            }
+            reader.endArray();
+        } catch (IOException | IllegalStateException | JsonParseException e) {
+            return Response.status(Response.Status.BAD_REQUEST).entity("Expected a JSON array of expenses").build();
+        }
+
+        List<BulkImportResult> results = new ArrayList<>(rows.size());
+        List<Budget> valid = new ArrayList<>(rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            acceptRow(i + 1, rows.get(i), results, valid);
+        }
+        return importBudgets(results, valid);
+    }
+
+    // columns: budgetName, budgetCategory, amount, date, description, projectKey and
+    // issueKeys (separated by semicolons), in any order
+    @POST
+    @Path("/bulk")
+    @Consumes("text/csv")
+    public Response createBudgetsFromCsv(InputStream body) {
+        List<BulkImportResult> results = new ArrayList<>();
+        List<Budget> valid = new ArrayList<>();
+        try {
+            CsvRecordReader reader = new CsvRecordReader(new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8)));
+            Map<String, String> record;
+            int row = 0;
+            while ((record = reader.next()) != null) {
+                if (++row > MAX_BULK_ROWS) {
+                    return tooManyRows();
+                }
+                Budget budget;
+                try {
+                    budget = budgetFromCsv(record);
+                } catch (NumberFormatException e) {
+                    results.add(BulkImportResult.rejected(row, "Amount is not a number"));
+                    continue;
+                }
+                acceptRow(row, budget, results, valid);
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            return Response.status(Response.Status.BAD_REQUEST).entity("Invalid CSV: " + e.getMessage()).build();
+        }
+        return importBudgets(results, valid);
+    }
+
+    // writes the rows straight to the response one at a time, so memory use doesn't grow with the result
+    private StreamingOutput streamBudgets(Iterable<Budget> budgets) {
+        return output -> BudgetJson.writeBudgets(budgets, output);
+    }
+
+    private void acceptRow(int row, Budget budget, List<BulkImportResult> results, List<Budget> valid) {
+        String error = validateBudget(budget);
+        if (error != null) {
+            results.add(BulkImportResult.rejected(row, error));
+            return;
+        }
+        // imported rows are always new expenses
+        budget.setId(UUID.randomUUID().toString());
+        if (budget.getSelectedIssues() == null) {
+            budget.setSelectedIssues(new ArrayList<>());
+        }
+        valid.add(budget);
+        results.add(BulkImportResult.created(row, budget.getId()));
+    }
+
+    private Response importBudgets(List<BulkImportResult> results, List<Budget> valid) {
+        if (!valid.isEmpty()) {
+            budgetService.createBudgets(valid);
+        }
+        return Response.ok(gson.toJson(results)).build();
+    }
+
+    private Response tooManyRows() {
+        return Response.status(Response.Status.BAD_REQUEST)
+                .entity("A bulk import can contain at most " + MAX_BULK_ROWS + " rows").build();
+    }
+
+    private static Budget budgetFromCsv(Map<String, String> record) {
+        Budget budget = new Budget();
+        budget.setBudgetName(emptyToNull(record.get("budgetname")));
+        budget.setBudgetCategory(emptyToNull(record.get("budgetcategory")));
+        budget.setDescription(emptyToNull(record.get("description")));
+        budget.setDate(emptyToNull(record.get("date")));
+        budget.setProjectKey(emptyToNull(record.get("projectkey")));
+        String amount = record.get("amount");
+        budget.setAmount(amount == null || amount.trim().isEmpty() ? 0.0 : Double.parseDouble(amount.trim()));
+
+        List<Budget.Issue> issues = new ArrayList<>();
+        String issueKeys = record.get("issuekeys");
+        if (issueKeys != null) {
+            for (String issueKey : issueKeys.split(";")) {
+                if (!issueKey.trim().isEmpty()) {
+                    Budget.Issue issue = new Budget.Issue();
+                    issue.setKey(issueKey.trim());
+                    issues.add(issue);
+                }
+            }
+        }
+        budget.setSelectedIssues(issues);
+        return budget;
+    }
+
+    private static String emptyToNull(String value) {
+        return value == null || value.trim().isEmpty() ? null : value.trim();
+    }
+
+    // returns null if the budget can be stored
+    private static String validateBudget(Budget budget) {
+        if (budget == null) {
+            return "Expense is empty";
+        }
+        if (budget.getBudgetName() == null || budget.getBudgetName().isEmpty()) {
+            return "Budget name is required";
+        }
+        if (budget.getProjectKey() == null || budget.getProjectKey().isEmpty()) {
+            return "Project key is required";
+        }
+        if (Double.isNaN(budget.getAmount()) || Double.isInfinite(budget.getAmount())) {
+            return "Amount must be a number";
+        }
+        if (!Money.isRepresentable(budget.getAmount(), Money.DEFAULT_CURRENCY)) {
+            return "Amount is out of range";
+        }
+        return null;
+    }
+
     @DELETE
     @Path("/{id}")
     public Response deleteBudget(@PathParam("id") String id) {
@@ -63,6 +235,10 @@ public class BudgetResource {
     public Response updateBudget(@PathParam("id") String id, String budgetJson) {
         try {
             Budget updatedBudget = gson.fromJson(budgetJson, Budget.class);
+            String error = validateBudget(updatedBudget);
+            if (error != null) {
+                return Response.status(Response.Status.BAD_REQUEST).entity(error).build();
+            }
             updatedBudget.setId(id);
             Budget result = budgetService.updateBudget(updatedBudget);
             if (result != null) {
@@ -77,8 +253,8 @@ public class BudgetResource {
 
     @GET
     @Path("/expenses/all/{projectKey}")
-    public Response getProjectExpenses(@PathParam("projectKey") String projectKey) {
-        return Response.ok(gson.toJson(budgetService.getProjectExpenses(projectKey))).build();
+    public Response getProjectExpenses(@PathParam("projectKey") String projectKey, @Context UriInfo uriInfo) {
+        return listExpenses(uriInfo, query -> budgetService.queryExpenses(projectKey, query));
     }
 
     @GET
@@ -92,42 +268,224 @@ public class BudgetResource {
     @Path("/set")
     public Response setProjectBudget(String budgetJson) {
         Budget budget = gson.fromJson(budgetJson, Budget.class);
+        String error = validateProjectBudget(budget);
+        if (error != null) {
+            return Response.status(Response.Status.BAD_REQUEST).entity(error).build();
+        }
         budgetService.setProjectBudget(budget.getProjectKey(), budget.getTotalBudget());
         return Response.ok().build();
     }
 
+    // returns null if the project budget can be stored
+    private static String validateProjectBudget(Budget budget) {
+        if (budget == null) {
+            return "Budget is empty";
+        }
+        if (budget.getProjectKey() == null || budget.getProjectKey().isEmpty()) {
+            return "Project key is required";
+        }
+        if (Double.isNaN(budget.getTotalBudget()) || Double.isInfinite(budget.getTotalBudget())) {
+            return "Total budget must be a number";
+        }
+        if (!Money.isRepresentable(budget.getTotalBudget(), Money.DEFAULT_CURRENCY)) {
+            return "Total budget is out of range";
+        }
+        return null;
+    }
+
+    // ?asOf= gives the overview as it stood then, e.g. at the end of last quarter
     @GET
     @Path("/overview/{projectKey}")
-    public Response getBudgetOverview(@PathParam("projectKey") String projectKey) {
-        Map<String, Object> overview = budgetService.getBudgetOverview(projectKey);
-        return Response.ok(gson.toJson(overview)).build();
+    public Response getBudgetOverview(@PathParam("projectKey") String projectKey, @QueryParam("asOf") String asOf,
+                                      @Context Request request) {
+        if (asOf == null) {
+            return conditional(request, projectTag(projectKey), () -> budgetService.getBudgetOverview(projectKey));
+        }
+        try {
+            return Response.ok(gson.toJson(budgetService.getBudgetOverviewAt(projectKey, parseTime(asOf, true)))).build();
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            return Response.status(Response.Status.BAD_REQUEST).entity("Invalid query parameter: " + e.getMessage()).build();
+        }
+    }
+
+    // who changed the project's expenses and budget, when, and the values before and after, oldest
+    // first. optional from and to (inclusive) and limit (default 100, at most 1000)
+    @GET
+    @Path("/history/{projectKey}")
+    public Response getExpenseHistory(@PathParam("projectKey") String projectKey,
+                                      @QueryParam("from") String from,
+                                      @QueryParam("to") String to,
+                                      @QueryParam("limit") String limit) {
+        long fromTime;
+        long toTime;
+        int pageSize;
+        try {
+            fromTime = from != null ? parseTime(from, false) : 0L;
+            toTime = to != null ? parseTime(to, true) : System.currentTimeMillis();
+            pageSize = limit != null ? Integer.parseInt(limit) : DEFAULT_HISTORY_LIMIT;
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            return Response.status(Response.Status.BAD_REQUEST).entity("Invalid query parameter: " + e.getMessage()).build();
+        }
+        if (pageSize < 1 || pageSize > MAX_HISTORY_LIMIT) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity("Invalid query parameter: limit must be between 1 and " + MAX_HISTORY_LIMIT).build();
+        }
+        return Response.ok(gson.toJson(budgetService.getExpenseHistory(projectKey, fromTime, toTime, pageSize))).build();
     }
 
     @GET
     @Path("/expenses/by-category/{projectKey}")
-    public Response getExpensesByCategory(@PathParam("projectKey") String projectKey) {
-        List<Map<String, Object>> expenses = budgetService.getExpensesByCategory(projectKey);
-        return Response.ok(gson.toJson(expenses)).build();
+    public Response getExpensesByCategory(@PathParam("projectKey") String projectKey, @Context Request request) {
+        return conditional(request, projectTag(projectKey), () -> budgetService.getExpensesByCategory(projectKey));
     }
 
     @GET
     @Path("/expenses/by-phase/{projectKey}")
-    public Response getExpensesByPhase(@PathParam("projectKey") String projectKey) {
-        List<Map<String, Object>> expenses = budgetService.getExpensesByPhase(projectKey);
-        return Response.ok(gson.toJson(expenses)).build();
+    public Response getExpensesByPhase(@PathParam("projectKey") String projectKey, @Context Request request) {
+        // epic summaries are Jira data, cached for everyone; each user only gets the ones they can see
+        if (JiraPermissions.browsableProject(projectKey) == null) {
+            return Response.status(Response.Status.NOT_FOUND).build();
+        }
+        // epics and their children come from Jira, so issue changes have to move the tag too
+        EntityTag tag = new EntityTag(Long.toString(budgetService.getProjectVersion(projectKey), 36)
+                + "-" + Long.toString(BudgetServiceSingleton.getIssueHierarchy().getVersion(), 36));
+        return conditional(request, tag, () -> budgetService.getExpensesByPhase(projectKey,
+                epic -> JiraPermissions.canBrowse(epic.getSecurityLevelId(), epic.getKey())));
     }
 
     @GET
     @Path("/cumulative-expenses/{projectKey}")
-    public Response getCumulativeExpenses(@PathParam("projectKey") String projectKey) {
-        List<Map<String, Object>> expenses = budgetService.getCumulativeExpenses(projectKey);
-        return Response.ok(gson.toJson(expenses)).build();
+    public Response getCumulativeExpenses(@PathParam("projectKey") String projectKey,
+                                          @QueryParam("granularity") String granularity,
+                                          @QueryParam("from") String from,
+                                          @QueryParam("to") String to,
+                                          @Context Request request) {
+        try {
+            TimeBucket bucket = TimeBucket.parse(granularity);
+            return conditional(request, projectTag(projectKey),
+                    () -> budgetService.getCumulativeExpenses(projectKey, bucket, from, to));
+        } catch (IllegalArgumentException e) {
+            return Response.status(Response.Status.BAD_REQUEST).entity("Invalid query parameter: " + e.getMessage()).build();
+        }
+    }
+
+    // every project at once: totals, % used, and the top projects by overrun (?top=, default 10)
+    @GET
+    @Path("/portfolio")
+    public Response getPortfolio(@QueryParam("top") String top) {
+        int topK;
+        try {
+            topK = top != null ? Integer.parseInt(top) : DEFAULT_PORTFOLIO_TOP;
+        } catch (NumberFormatException e) {
+            return Response.status(Response.Status.BAD_REQUEST).entity("Invalid query parameter: " + e.getMessage()).build();
+        }
+        if (topK < 0 || topK > MAX_PORTFOLIO_TOP) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity("Invalid query parameter: top must be between 0 and " + MAX_PORTFOLIO_TOP).build();
+        }
+        return Response.ok(gson.toJson(budgetService.getPortfolio(topK))).build();
+    }
+
+    @POST
+    @Path("/aggregates/check")
+    public Response checkAggregates() {
+        Map<String, Object> result = new HashMap<>();
+        result.put("consistent", budgetService.checkAggregates());
+        return Response.ok(gson.toJson(result)).build();
+    }
+
+    @GET
+    @Path("/hierarchy-cache")
+    public Response getHierarchyCacheStats() {
+        return Response.ok(gson.toJson(BudgetServiceSingleton.getIssueHierarchy().getStats())).build();
+    }
+
+    // counters, latency percentiles and gauges; the same numbers are on the BudgetMetrics MBean
+    @GET
+    @Path("/metrics")
+    public Response getMetrics() {
+        return Response.ok(gson.toJson(BudgetMetrics.getInstance().snapshot())).build();
     }
 
     @GET
     @Path("/expenses/{issueKey}")
-    public Response getExpensesForIssue(@PathParam("issueKey") String issueKey) {
-        List<Budget> linkedExpenses = budgetService.getExpensesForIssue(issueKey);
-        return Response.ok(gson.toJson(linkedExpenses)).build();
+    public Response getExpensesForIssue(@PathParam("issueKey") String issueKey, @Context UriInfo uriInfo) {
+        // an epic's expenses include its children's, which come from the shared hierarchy cache
+        if (!JiraPermissions.canBrowseIssue(issueKey)) {
+            return Response.status(Response.Status.NOT_FOUND).build();
+        }
+        return listExpenses(uriInfo, query -> budgetService.queryExpensesForIssue(issueKey, query));
+    }
+
+    private Response listExpenses(UriInfo uriInfo, Function<ExpenseQuery, Iterable<Budget>> source) {
+        MultivaluedMap<String, String> params = uriInfo.getQueryParameters();
+        ExpenseQuery query = new ExpenseQuery();
+        Integer limit;
+        try {
+            query.setCategory(params.getFirst("category"))
+                    .setFromDate(params.getFirst("from"))
+                    .setToDate(params.getFirst("to"))
+                    .setMinAmount(parseDouble(params.getFirst("minAmount")))
+                    .setMaxAmount(parseDouble(params.getFirst("maxAmount")))
+                    .setDescending("desc".equalsIgnoreCase(params.getFirst("order")))
+                    .setCursor(params.getFirst("cursor"));
+            limit = params.getFirst("limit") != null ? Integer.valueOf(params.getFirst("limit")) : null;
+        } catch (IllegalArgumentException e) {
+            return Response.status(Response.Status.BAD_REQUEST).entity("Invalid query parameter: " + e.getMessage()).build();
+        }
+
+        Iterable<Budget> rows = source.apply(query);
+        if (limit == null && params.getFirst("cursor") == null) {
+            return Response.ok(streamBudgets(rows)).build();
+        }
+
+        int pageSize = Math.max(1, Math.min(limit != null ? limit : DEFAULT_PAGE_SIZE, MAX_PAGE_SIZE));
+        List<Budget> items = new ArrayList<>(pageSize);
+        String nextCursor = null;
+        for (Budget budget : rows) {
+            if (items.size() == pageSize) {
+                nextCursor = ExpenseKey.of(items.get(pageSize - 1)).toCursor();
+                break;
+            }
+            items.add(budget);
+        }
+        return Response.ok(gson.toJson(new ExpensePage(items, nextCursor))).build();
+    }
+
+    private EntityTag projectTag(String projectKey) {
+        return new EntityTag(Long.toString(budgetService.getProjectVersion(projectKey), 36));
+    }
+
+    // answers a matching If-None-Match with 304 before the body is computed. the tag has to be
+    // taken before the body, so a concurrent write can only leave the tag older than the data
+    private Response conditional(Request request, EntityTag tag, Supplier<Object> body) {
+        Response.ResponseBuilder notModified = request.evaluatePreconditions(tag);
+        if (notModified != null) {
+            return notModified.cacheControl(REVALIDATE).build();
+        }
+        return Response.ok(gson.toJson(body.get())).tag(tag).cacheControl(REVALIDATE).build();
+    }
+
+    private static CacheControl revalidate() {
+        CacheControl cacheControl = new CacheControl();
+        cacheControl.setPrivate(true);
+        cacheControl.setNoCache(true);
+        return cacheControl;
+    }
+
+    // a yyyy-MM-dd date is the start or the end of that day in UTC, like the expense dates;
+    // anything else has to be an ISO-8601 instant
+    private static long parseTime(String value, boolean endOfDay) {
+        if (value.length() == 10) {
+            LocalDate day = LocalDate.parse(value);
+            return endOfDay
+                    ? day.plusDays(1).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli() - 1
+                    : day.atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+        }
+        return Instant.parse(value).toEpochMilli();
+    }
+
+    private static Double parseDouble(String value) {
+        return value != null ? Double.valueOf(value) : null;
     }
 }
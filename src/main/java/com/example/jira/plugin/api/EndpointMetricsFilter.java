@@ -0,0 +1,144 @@
+package com.example.jira.plugin.api;
+
+import com.example.jira.plugin.metrics.BudgetMetrics;
+import com.example.jira.plugin.metrics.LatencyHistogram;
+
+import javax.servlet.*;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.ws.rs.HttpMethod;
+import javax.ws.rs.Path;
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// records the latency of every REST call, per endpoint. the endpoints are read off the
+// resources' JAX-RS annotations, so a request is filed under its template, e.g.
+// "http.GET /budget/overview/{projectKey}", not under every project key it was called with
+public class EndpointMetricsFilter implements Filter {
+    private static final Class<?>[] RESOURCES = {BudgetResource.class, AlertThresholdResource.class, IssueSuggestionResource.class};
+    // /rest/<module path>/<version>
+    private static final Pattern REST_PREFIX = Pattern.compile("^/rest/[^/]+/[^/]+");
+    private static final Pattern TEMPLATE_PARAMETER = Pattern.compile("\\{\\s*\\w[\\w.-]*\\s*(?::\\s*([^{}]*(?:\\{[^{}]*}[^{}]*)*))?}");
+
+    private final BudgetMetrics metrics = BudgetMetrics.getInstance();
+    private final List<Endpoint> endpoints = new ArrayList<>();
+    private final LatencyHistogram unmatched = metrics.histogram("http.unmatched");
+    private final LongAdder serverErrors = metrics.counter("http.serverErrors");
+
+    @Override
+    public void init(FilterConfig filterConfig) {
+        for (Class<?> resource : RESOURCES) {
+            Path resourcePath = resource.getAnnotation(Path.class);
+            for (Method method : resource.getMethods()) {
+                String httpMethod = httpMethodOf(method);
+                if (httpMethod == null) {
+                    continue;
+                }
+                Path methodPath = method.getAnnotation(Path.class);
+                String template = join(resourcePath != null ? resourcePath.value() : "", methodPath != null ? methodPath.value() : "");
+                endpoints.add(new Endpoint(httpMethod, template, metrics.histogram("http." + httpMethod + " " + template)));
+            }
+        }
+        // like JAX-RS matching, templates with more literal text win
+        endpoints.sort(Comparator.comparingInt((Endpoint endpoint) -> endpoint.literalLength).reversed());
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException, ServletException {
+        if (!(request instanceof HttpServletRequest)) {
+            chain.doFilter(request, response);
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            HttpServletRequest httpRequest = (HttpServletRequest) request;
+            histogramFor(httpRequest.getMethod(), resourcePath(httpRequest)).recordSince(start);
+            if (response instanceof HttpServletResponse && ((HttpServletResponse) response).getStatus() >= 500) {
+                serverErrors.increment();
+            }
+        }
+    }
+
+    @Override
+    public void destroy() {
+    }
+
+    private LatencyHistogram histogramFor(String httpMethod, String path) {
+        for (Endpoint endpoint : endpoints) {
+            if (endpoint.httpMethod.equals(httpMethod) && endpoint.pattern.matcher(path).matches()) {
+                return endpoint.histogram;
+            }
+        }
+        return unmatched;
+    }
+
+    private static String resourcePath(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        Matcher prefix = REST_PREFIX.matcher(path);
+        return prefix.find() ? path.substring(prefix.end()) : path;
+    }
+
+    private static String httpMethodOf(Method method) {
+        for (Annotation annotation : method.getAnnotations()) {
+            HttpMethod httpMethod = annotation.annotationType().getAnnotation(HttpMethod.class);
+            if (httpMethod != null) {
+                return httpMethod.value();
+            }
+        }
+        return null;
+    }
+
+    private static String join(String resourcePath, String methodPath) {
+        String path = "/" + trimSlashes(resourcePath);
+        String rest = trimSlashes(methodPath);
+        return rest.isEmpty() ? path : path + "/" + rest;
+    }
+
+    private static String trimSlashes(String path) {
+        int start = 0;
+        int end = path.length();
+        while (start < end && path.charAt(start) == '/') {
+            start++;
+        }
+        while (end > start && path.charAt(end - 1) == '/') {
+            end--;
+        }
+        return path.substring(start, end);
+    }
+
+    private static final class Endpoint {
+        final String httpMethod;
+        final Pattern pattern;
+        final int literalLength;
+        final LatencyHistogram histogram;
+
+        Endpoint(String httpMethod, String template, LatencyHistogram histogram) {
+            this.httpMethod = httpMethod;
+            this.histogram = histogram;
+            StringBuilder regex = new StringBuilder();
+            int literalLength = 0;
+            int last = 0;
+            Matcher parameter = TEMPLATE_PARAMETER.matcher(template);
+            while (parameter.find()) {
+                String literal = template.substring(last, parameter.start());
+                regex.append(Pattern.quote(literal));
+                literalLength += literal.length();
+                regex.append('(').append(parameter.group(1) != null ? parameter.group(1).trim() : "[^/]+").append(')');
+                last = parameter.end();
+            }
+            String literal = template.substring(last);
+            regex.append(Pattern.quote(literal)).append("/?");
+            this.literalLength = literalLength + literal.length();
+            this.pattern = Pattern.compile(regex.toString());
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.jira.plugin.api;
+
+import com.atlassian.jira.project.Project;
+import com.example.jira.plugin.json.BudgetJson;
+import com.example.jira.plugin.model.Budget;
+import com.example.jira.plugin.service.BudgetServiceSingleton;
+import com.example.jira.plugin.suggest.IssueSuggestions;
+import com.google.gson.Gson;
+
+import javax.ws.rs.*;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.util.List;
+
+@Path("/issue-suggestions")
+@Produces(MediaType.APPLICATION_JSON)
+public class IssueSuggestionResource {
+    private static final int DEFAULT_LIMIT = 20;
+    private static final int MAX_LIMIT = 100;
+
+    private final IssueSuggestions issueSuggestions;
+    private final Gson gson;
+
+    public IssueSuggestionResource() {
+        this.issueSuggestions = BudgetServiceSingleton.getIssueSuggestions();
+        this.gson = BudgetJson.gson();
+    }
+
+    // issues of the project for the issue picker, as [{key, summary, type}]: those whose key
+    // starts with q, then those with a word starting with every word of q. optional limit
+    // (default 20, at most 100)
+    @GET
+    @Path("/{projectKey}")
+    public Response suggest(@PathParam("projectKey") String projectKey,
+                            @QueryParam("q") String query,
+                            @QueryParam("limit") String limit) {
+        int size;
+        try {
+            size = limit != null ? Integer.parseInt(limit) : DEFAULT_LIMIT;
+        } catch (NumberFormatException e) {
+            return Response.status(Response.Status.BAD_REQUEST).entity("Invalid query parameter: " + e.getMessage()).build();
+        }
+        if (size < 1 || size > MAX_LIMIT) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity("Invalid query parameter: limit must be between 1 and " + MAX_LIMIT).build();
+        }
+
+        Project project = JiraPermissions.browsableProject(projectKey);
+        if (project == null) {
+            return Response.status(Response.Status.NOT_FOUND).build();
+        }
+        if (query == null || query.trim().isEmpty()) {
+            return Response.ok("[]").build();
+        }
+
+        List<Budget.Issue> suggestions = issueSuggestions.suggest(project.getKey(), query, size,
+                issue -> JiraPermissions.canBrowse(issue.getSecurityLevelId(), issue.getId()));
+        return Response.ok(gson.toJson(suggestions)).build();
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.jira.plugin.api;
+
+import com.atlassian.jira.component.ComponentAccessor;
+import com.atlassian.jira.issue.Issue;
+import com.atlassian.jira.permission.ProjectPermissions;
+import com.atlassian.jira.project.Project;
+import com.atlassian.jira.user.ApplicationUser;
+
+// the current user's browse permission, checked on every request. Jira data the plugin caches
+// (epics, child keys, suggestion indexes) is loaded without permissions and shared by all
+// users, so what a response shows of it has to be filtered here
+final class JiraPermissions {
+    private JiraPermissions() {}
+
+    // null when the project doesn't exist or the current user can't browse it, so callers give
+    // the same answer for both
+    static Project browsableProject(String projectKey) {
+        Project project = ComponentAccessor.getProjectManager().getProjectObjByKey(projectKey);
+        if (project == null || !ComponentAccessor.getPermissionManager()
+                .hasPermission(ProjectPermissions.BROWSE_PROJECTS, project, currentUser())) {
+            return null;
+        }
+        return project;
+    }
+
+    static boolean canBrowseIssue(String issueKey) {
+        return canBrowse(ComponentAccessor.getIssueManager().getIssueObject(issueKey));
+    }
+
+    // issue security can hide single issues from users who see the rest of the project, so
+    // issues with a security level are looked up and checked one by one
+    static boolean canBrowse(Long securityLevelId, Long issueId) {
+        return securityLevelId == null || canBrowse(ComponentAccessor.getIssueManager().getIssueObject(issueId));
+    }
+
+    static boolean canBrowse(Long securityLevelId, String issueKey) {
+        return securityLevelId == null || canBrowseIssue(issueKey);
+    }
+
+    private static boolean canBrowse(Issue issue) {
+        return issue != null && ComponentAccessor.getPermissionManager()
+                .hasPermission(ProjectPermissions.BROWSE_PROJECTS, issue, currentUser());
+    }
+
+    private static ApplicationUser currentUser() {
+        return ComponentAccessor.getJiraAuthenticationContext().getLoggedInUser();
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.jira.plugin.cache;
+
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+
+// size-bounded LRU map whose entries also expire after a fixed time
+public final class ExpiringLruCache<K, V> {
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final LinkedHashMap<K, Cached<V>> entries;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    // the loads running outside the lock. an invalidation is recorded on each of them and
+    // checked against what it loaded, so only a load the invalidation could affect isn't stored
+    private final Set<Load<K, V>> loads = new HashSet<>();
+
+    public ExpiringLruCache(int maxEntries, long ttlNanos) {
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttlNanos;
+        this.entries = new LinkedHashMap<K, Cached<V>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Cached<V>> eldest) {
+                return size() > ExpiringLruCache.this.maxEntries;
+            }
+        };
+    }
+
+    // the loader runs outside the lock, so a slow search never blocks other lookups
+    public V get(K key, Function<K, V> loader) {
+        Load<K, V> load = new Load<>();
+        synchronized (this) {
+            Cached<V> entry = entries.get(key);
+            if (entry != null && System.nanoTime() - entry.loadedAt < ttlNanos) {
+                hits.increment();
+                return entry.value;
+            }
+            misses.increment();
+            loads.add(load);
+        }
+        V value;
+        try {
+            value = loader.apply(key);
+        } catch (RuntimeException | Error e) {
+            synchronized (this) {
+                loads.remove(load);
+            }
+            throw e;
+        }
+        synchronized (this) {
+            loads.remove(load);
+            if (!load.invalidated(key, value)) {
+                entries.put(key, new Cached<>(value, System.nanoTime()));
+            }
+        }
+        return value;
+    }
+
+    // looks up all keys, handing the ones that miss to the loader in a single call
+    public Map<K, V> getAll(Collection<K> keys, Function<List<K>, Map<K, V>> loader) {
+        Map<K, V> result = new HashMap<>();
+        List<K> missing = new ArrayList<>();
+        Load<K, V> load = new Load<>();
+        synchronized (this) {
+            long now = System.nanoTime();
+            for (K key : keys) {
+                Cached<V> entry = entries.get(key);
+                if (entry != null && now - entry.loadedAt < ttlNanos) {
+                    hits.increment();
+                    result.put(key, entry.value);
+                } else {
+                    misses.increment();
+                    missing.add(key);
+                }
+            }
+            if (missing.isEmpty()) {
+                return result;
+            }
+            loads.add(load);
+        }
+        Map<K, V> loaded;
+        try {
+            loaded = loader.apply(missing);
+        } catch (RuntimeException | Error e) {
+            synchronized (this) {
+                loads.remove(load);
+            }
+            throw e;
+        }
+        synchronized (this) {
+            loads.remove(load);
+            long now = System.nanoTime();
+            for (Map.Entry<K, V> entry : loaded.entrySet()) {
+                if (!load.invalidated(entry.getKey(), entry.getValue())) {
+                    entries.put(entry.getKey(), new Cached<>(entry.getValue(), now));
+                }
+            }
+        }
+        result.putAll(loaded);
+        return result;
+    }
+
+    public synchronized void invalidate(K key) {
+        for (Load<K, V> load : loads) {
+            load.invalidations.add((k, v) -> k.equals(key));
+        }
+        entries.remove(key);
+    }
+
+    public synchronized void invalidateIf(BiPredicate<K, V> predicate) {
+        for (Load<K, V> load : loads) {
+            load.invalidations.add(predicate);
+        }
+        for (Iterator<Map.Entry<K, Cached<V>>> it = entries.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<K, Cached<V>> entry = it.next();
+            if (predicate.test(entry.getKey(), entry.getValue().value)) {
+                it.remove();
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        for (Load<K, V> load : loads) {
+            load.invalidations.add((k, v) -> true);
+        }
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    // the invalidations made while a load ran; guarded by the cache
+    private static final class Load<K, V> {
+        final List<BiPredicate<K, V>> invalidations = new ArrayList<>(0);
+
+        boolean invalidated(K key, V value) {
+            for (BiPredicate<K, V> invalidation : invalidations) {
+                if (invalidation.test(key, value)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static final class Cached<V> {
+        final V value;
+        final long loadedAt;
+
+        Cached(V value, long loadedAt) {
+            this.value = value;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.jira.plugin.hierarchy;
+
+import com.example.jira.plugin.cache.ExpiringLruCache;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// keeps hierarchy lookups in memory so warm dashboard loads don't search at all.
+// issue events invalidate what they can affect, the TTL catches anything they can't see
+// (e.g. an issue linked to an epic in another project)
+public class CachingIssueHierarchy implements IssueHierarchy {
+    private static final int DEFAULT_MAX_ENTRIES = 10_000;
+    private static final long DEFAULT_TTL_MINUTES = 10;
+
+    private final IssueHierarchy delegate;
+    private final long ttlMillis;
+    private final AtomicLong invalidations = new AtomicLong();
+    private final ExpiringLruCache<String, List<Epic>> epicsByProject;
+    private final ExpiringLruCache<String, Set<String>> childKeysByEpic;
+    private final ExpiringLruCache<String, Boolean> epicFlags;
+
+    public CachingIssueHierarchy(IssueHierarchy delegate) {
+        this(delegate, DEFAULT_MAX_ENTRIES, TimeUnit.MINUTES.toMillis(DEFAULT_TTL_MINUTES));
+    }
+
+    public CachingIssueHierarchy(IssueHierarchy delegate, int maxEntries, long ttlMillis) {
+        long ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.delegate = delegate;
+        this.ttlMillis = ttlMillis;
+        this.epicsByProject = new ExpiringLruCache<>(maxEntries, ttlNanos);
+        this.childKeysByEpic = new ExpiringLruCache<>(maxEntries, ttlNanos);
+        this.epicFlags = new ExpiringLruCache<>(maxEntries, ttlNanos);
+    }
+
+    @Override
+    public List<Epic> getEpics(String projectKey) {
+        return epicsByProject.get(projectKey,
+                key -> Collections.unmodifiableList(new ArrayList<>(delegate.getEpics(key))));
+    }
+
+    @Override
+    public Set<String> getChildKeys(String epicKey) {
+        return childKeysByEpic.get(epicKey,
+                key -> Collections.unmodifiableSet(new HashSet<>(delegate.getChildKeys(key))));
+    }
+
+    @Override
+    public Map<String, Set<String>> getChildKeys(Collection<String> epicKeys) {
+        return childKeysByEpic.getAll(epicKeys, missing -> {
+            Map<String, Set<String>> loaded = new HashMap<>();
+            for (Map.Entry<String, Set<String>> entry : delegate.getChildKeys(missing).entrySet()) {
+                loaded.put(entry.getKey(), Collections.unmodifiableSet(new HashSet<>(entry.getValue())));
+            }
+            return loaded;
+        });
+    }
+
+    @Override
+    public boolean isEpic(String issueKey) {
+        return epicFlags.get(issueKey, delegate::isEpic);
+    }
+
+    // an issue was created, edited, moved or deleted: its type, summary or epic link may have changed
+    public void issueChanged(String issueKey, String projectKey) {
+        epicFlags.invalidate(issueKey);
+        epicsByProject.invalidate(projectKey);
+        String projectPrefix = projectKey + "-";
+        // the old epic still lists the issue; the new one is most likely in the same project
+        childKeysByEpic.invalidateIf((epicKey, childKeys) ->
+                epicKey.equals(issueKey) || epicKey.startsWith(projectPrefix) || childKeys.contains(issueKey));
+        // only once the stale entries are gone, or a reader could tag old answers with the new version
+        invalidations.incrementAndGet();
+    }
+
+    public void invalidateAll() {
+        epicsByProject.clear();
+        childKeysByEpic.clear();
+        epicFlags.clear();
+        invalidations.incrementAndGet();
+    }
+
+    // changes whenever cached answers may have: on every invalidation, and once per TTL period
+    // for the changes no event reported
+    public long getVersion() {
+        return (invalidations.get() << 32) | ((System.currentTimeMillis() / Math.max(1L, ttlMillis)) & 0xFFFFFFFFL);
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("hits", epicsByProject.hits() + childKeysByEpic.hits() + epicFlags.hits());
+        stats.put("misses", epicsByProject.misses() + childKeysByEpic.misses() + epicFlags.misses());
+        stats.put("epics", statsOf(epicsByProject));
+        stats.put("epicChildren", statsOf(childKeysByEpic));
+        stats.put("epicFlags", statsOf(epicFlags));
+        return stats;
+    }
+
+    private static Map<String, Object> statsOf(ExpiringLruCache<?, ?> cache) {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("hits", cache.hits());
+        stats.put("misses", cache.misses());
+        stats.put("size", cache.size());
+        return stats;
+    }
+}
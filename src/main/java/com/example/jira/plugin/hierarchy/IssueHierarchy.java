@@ -0,0 +1,55 @@
+package com.example.jira.plugin.hierarchy;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// the epic/issue structure the phase and issue views need from Jira
+public interface IssueHierarchy {
+    List<Epic> getEpics(String projectKey);
+
+    // keys of the issues whose Epic Link points at the epic, not including the epic itself
+    Set<String> getChildKeys(String epicKey);
+
+    // the same for many epics at once; every requested epic is in the result, childless ones with an empty set
+    default Map<String, Set<String>> getChildKeys(Collection<String> epicKeys) {
+        Map<String, Set<String>> childKeys = new HashMap<>();
+        for (String epicKey : epicKeys) {
+            childKeys.put(epicKey, getChildKeys(epicKey));
+        }
+        return childKeys;
+    }
+
+    boolean isEpic(String issueKey);
+
+    final class Epic {
+        private final String key;
+        private final String summary;
+        // null when everyone who can browse the project can see the epic
+        private final Long securityLevelId;
+
+        public Epic(String key, String summary) {
+            this(key, summary, null);
+        }
+
+        public Epic(String key, String summary, Long securityLevelId) {
+            this.key = key;
+            this.summary = summary;
+            this.securityLevelId = securityLevelId;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public String getSummary() {
+            return summary;
+        }
+
+        public Long getSecurityLevelId() {
+            return securityLevelId;
+        }
+    }
+}
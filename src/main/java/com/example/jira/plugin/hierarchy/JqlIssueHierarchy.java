@@ -0,0 +1,111 @@
+package com.example.jira.plugin.hierarchy;
+
+import com.atlassian.jira.bc.issue.search.SearchService;
+import com.atlassian.jira.component.ComponentAccessor;
+import com.atlassian.jira.issue.Issue;
+import com.atlassian.jira.issue.fields.CustomField;
+import com.atlassian.jira.issue.search.SearchResults;
+import com.atlassian.jira.jql.parser.JqlQueryParser;
+import com.atlassian.jira.user.ApplicationUser;
+import com.atlassian.jira.web.bean.PagerFilter;
+import com.atlassian.query.Query;
+import com.example.jira.plugin.metrics.BudgetMetrics;
+import com.example.jira.plugin.metrics.LatencyHistogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+// answers every lookup with a JQL search that ignores permissions, so the answers are the
+// same whoever asks and can be cached once for everyone. callers filter what they show by
+// the current user's permissions (see api.JiraPermissions)
+public class JqlIssueHierarchy implements IssueHierarchy {
+    private static final Logger log = LoggerFactory.getLogger(JqlIssueHierarchy.class);
+    // keeps each JQL clause well below the query length limits
+    private static final int EPIC_KEYS_PER_SEARCH = 200;
+    private static final LatencyHistogram searchLatency = BudgetMetrics.getInstance().histogram("jql.search");
+    private static final LongAdder searchFailures = BudgetMetrics.getInstance().counter("jql.failures");
+
+    @Override
+    public List<Epic> getEpics(String projectKey) {
+        List<Epic> epics = new ArrayList<>();
+        for (Issue issue : search(String.format("project = %s AND issuetype = Epic", projectKey))) {
+            epics.add(new Epic(issue.getKey(), issue.getSummary(), issue.getSecurityLevelId()));
+        }
+        return epics;
+    }
+
+    @Override
+    public Set<String> getChildKeys(String epicKey) {
+        Set<String> childKeys = new HashSet<>();
+        for (Issue issue : search(String.format("'Epic Link' = %s", epicKey))) {
+            childKeys.add(issue.getKey());
+        }
+        return childKeys;
+    }
+
+    // one search per chunk of epics instead of one per epic; the Epic Link field tells which epic each child belongs to
+    @Override
+    public Map<String, Set<String>> getChildKeys(Collection<String> epicKeys) {
+        CustomField epicLink = epicLinkField();
+        if (epicLink == null) {
+            return IssueHierarchy.super.getChildKeys(epicKeys);
+        }
+
+        Map<String, Set<String>> childKeys = new HashMap<>();
+        for (String epicKey : epicKeys) {
+            childKeys.put(epicKey, new HashSet<>());
+        }
+        List<String> keys = new ArrayList<>(childKeys.keySet());
+        for (int from = 0; from < keys.size(); from += EPIC_KEYS_PER_SEARCH) {
+            List<String> chunk = keys.subList(from, Math.min(keys.size(), from + EPIC_KEYS_PER_SEARCH));
+            for (Issue issue : search(String.format("'Epic Link' in (%s)", String.join(", ", chunk)))) {
+                Object epic = issue.getCustomFieldValue(epicLink);
+                String epicKey = epic instanceof Issue ? ((Issue) epic).getKey() : null;
+                Set<String> children = childKeys.get(epicKey);
+                if (children != null) {
+                    children.add(issue.getKey());
+                }
+            }
+        }
+        return childKeys;
+    }
+
+    @Override
+    public boolean isEpic(String issueKey) {
+        return !search(String.format("key = %s AND issuetype = Epic", issueKey)).isEmpty();
+    }
+
+    // only present when Jira Software is installed
+    private CustomField epicLinkField() {
+        Collection<CustomField> fields = ComponentAccessor.getCustomFieldManager().getCustomFieldObjectsByName("Epic Link");
+        return fields == null || fields.isEmpty() ? null : fields.iterator().next();
+    }
+
+    private List<Issue> search(String jqlQuery) {
+        JqlQueryParser jqlQueryParser = ComponentAccessor.getComponent(JqlQueryParser.class);
+        SearchService searchService = ComponentAccessor.getComponent(SearchService.class);
+        ApplicationUser user = ComponentAccessor.getJiraAuthenticationContext().getLoggedInUser();
+
+        long start = System.nanoTime();
+        try {
+            Query query = jqlQueryParser.parseQuery(jqlQuery);
+            SearchService.ParseResult parseResult = searchService.parseQuery(user, query.getQueryString());
+
+            if (parseResult.isValid()) {
+                SearchResults<Issue> searchResult = searchService.searchOverrideSecurity(user, parseResult.getQuery(), PagerFilter.getUnlimitedFilter());
+                return searchResult.getResults();
+            } else {
+                log.warn("Invalid JQL: {}", jqlQuery);
+                return new ArrayList<>();
+            }
+        } catch (Exception e) {
+            searchFailures.increment();
+            log.error("JQL search failed: {}", jqlQuery, e);
+            return new ArrayList<>();
+        } finally {
+            searchLatency.recordSince(start);
+        }
+    }
+}
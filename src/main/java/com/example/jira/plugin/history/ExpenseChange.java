@@ -0,0 +1,234 @@
+package com.example.jira.plugin.history;
+
+import com.example.jira.plugin.model.Budget;
+import com.example.jira.plugin.model.Money;
+
+import java.util.Currency;
+import java.util.Objects;
+import java.util.function.Function;
+
+// one write to the expenses as the history keeps it: who made it, when, and the values before
+// and after. to keep the log small, `before` of an update only has the fields the update changed,
+// the others are as in `after`, and fields that are null are left out of the JSON altogether
+public final class ExpenseChange {
+    public enum Type {
+        CREATED,
+        UPDATED,
+        DELETED,
+        BUDGET_SET,
+        // the history had lost track of the stored totals, e.g. after a crash, and was reset to them
+        RECONCILED
+    }
+
+    private long sequence;
+    private long timestamp;
+    private String user;
+    private Type type;
+    // set for BUDGET_SET and RECONCILED, the expense changes have it in their values
+    private String projectKey;
+    private String expenseId;
+    private Values before;
+    private Values after;
+    private Double budgetBefore;
+    private Double budgetAfter;
+    // RECONCILED only
+    private Double expensesAfter;
+    private Integer expenseCountAfter;
+
+    private ExpenseChange() {
+    }
+
+    private ExpenseChange(long sequence, long timestamp, String user, Type type) {
+        this.sequence = sequence;
+        this.timestamp = timestamp;
+        this.user = user;
+        this.type = type;
+    }
+
+    // oldBudget is null when the expense is new
+    static ExpenseChange saved(long sequence, long timestamp, String user, Budget oldBudget, Budget newBudget) {
+        ExpenseChange change = new ExpenseChange(sequence, timestamp, user, oldBudget == null ? Type.CREATED : Type.UPDATED);
+        change.expenseId = newBudget.getId();
+        change.before = oldBudget != null ? Values.changed(oldBudget, newBudget) : null;
+        change.after = Values.of(newBudget);
+        return change;
+    }
+
+    static ExpenseChange removed(long sequence, long timestamp, String user, Budget budget) {
+        ExpenseChange change = new ExpenseChange(sequence, timestamp, user, Type.DELETED);
+        change.expenseId = budget.getId();
+        change.before = Values.of(budget);
+        return change;
+    }
+
+    static ExpenseChange budgetSet(long sequence, long timestamp, String user, String projectKey,
+                                   double budgetBefore, double budgetAfter) {
+        ExpenseChange change = new ExpenseChange(sequence, timestamp, user, Type.BUDGET_SET);
+        change.projectKey = projectKey;
+        change.budgetBefore = budgetBefore;
+        change.budgetAfter = budgetAfter;
+        return change;
+    }
+
+    static ExpenseChange reconciled(long sequence, long timestamp, String projectKey, long[] totals, Currency currency) {
+        ExpenseChange change = new ExpenseChange(sequence, timestamp, null, Type.RECONCILED);
+        change.projectKey = projectKey;
+        change.budgetAfter = Money.toAmount(totals[ProjectTimeline.BUDGET], currency);
+        change.expensesAfter = Money.toAmount(totals[ProjectTimeline.EXPENSES], currency);
+        change.expenseCountAfter = (int) totals[ProjectTimeline.COUNT];
+        return change;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    // epoch millis
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    // null for changes made outside a Jira request
+    public String getUser() {
+        return user;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getExpenseId() {
+        return expenseId;
+    }
+
+    public Values getBefore() {
+        return before;
+    }
+
+    public Values getAfter() {
+        return after;
+    }
+
+    public Double getBudgetBefore() {
+        return budgetBefore;
+    }
+
+    public Double getBudgetAfter() {
+        return budgetAfter;
+    }
+
+    boolean touches(String project) {
+        if (projectKey != null) {
+            return projectKey.equals(project);
+        }
+        return project.equals(oldProjectKey()) || (after != null && project.equals(after.projectKey));
+    }
+
+    // applies the change to the totals ({budget, expenses, count} in minor units) of the projects it touches
+    void applyTo(Function<String, long[]> totalsByProject, Currency currency) {
+        switch (type) {
+            case BUDGET_SET:
+                totalsByProject.apply(projectKey)[ProjectTimeline.BUDGET] = Money.toMinorUnits(budgetAfter, currency);
+                break;
+            case RECONCILED:
+                long[] totals = totalsByProject.apply(projectKey);
+                totals[ProjectTimeline.BUDGET] = Money.toMinorUnits(budgetAfter, currency);
+                totals[ProjectTimeline.EXPENSES] = Money.toMinorUnits(expensesAfter, currency);
+                totals[ProjectTimeline.COUNT] = expenseCountAfter;
+                break;
+            default:
+                if (before != null) {
+                    long[] old = totalsByProject.apply(oldProjectKey());
+                    old[ProjectTimeline.EXPENSES] -= Money.toMinorUnits(before.amount != null ? before.amount : after.amount, currency);
+                    old[ProjectTimeline.COUNT]--;
+                }
+                if (after != null) {
+                    long[] current = totalsByProject.apply(after.projectKey);
+                    current[ProjectTimeline.EXPENSES] += Money.toMinorUnits(after.amount, currency);
+                    current[ProjectTimeline.COUNT]++;
+                }
+        }
+    }
+
+    private String oldProjectKey() {
+        if (before == null) {
+            return null;
+        }
+        return before.projectKey != null ? before.projectKey : after.projectKey;
+    }
+
+    // the fields of an expense that the history tracks. issue links are left out
+    public static final class Values {
+        private String projectKey;
+        private String name;
+        private String category;
+        private Double amount;
+        private String date;
+        private String issueKey;
+        private String description;
+
+        private Values() {
+        }
+
+        static Values of(Budget budget) {
+            Values values = new Values();
+            values.projectKey = budget.getProjectKey();
+            values.name = budget.getBudgetName();
+            values.category = budget.getBudgetCategory();
+            values.amount = budget.getAmount();
+            values.date = budget.getDate();
+            values.issueKey = budget.getIssueKey();
+            values.description = budget.getDescription();
+            return values;
+        }
+
+        // the fields of oldBudget that differ from newBudget
+        static Values changed(Budget oldBudget, Budget newBudget) {
+            Values values = new Values();
+            values.projectKey = changed(oldBudget.getProjectKey(), newBudget.getProjectKey());
+            values.name = changed(oldBudget.getBudgetName(), newBudget.getBudgetName());
+            values.category = changed(oldBudget.getBudgetCategory(), newBudget.getBudgetCategory());
+            values.amount = oldBudget.getAmount() != newBudget.getAmount() ? oldBudget.getAmount() : null;
+            values.date = changed(oldBudget.getDate(), newBudget.getDate());
+            values.issueKey = changed(oldBudget.getIssueKey(), newBudget.getIssueKey());
+            values.description = changed(oldBudget.getDescription(), newBudget.getDescription());
+            return values;
+        }
+
+        // a field that was unset comes out as "", since null already means unchanged
+        private static String changed(String oldValue, String newValue) {
+            if (Objects.equals(oldValue, newValue)) {
+                return null;
+            }
+            return oldValue != null ? oldValue : "";
+        }
+
+        public String getProjectKey() {
+            return projectKey;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getCategory() {
+            return category;
+        }
+
+        public Double getAmount() {
+            return amount;
+        }
+
+        public String getDate() {
+            return date;
+        }
+
+        public String getIssueKey() {
+            return issueKey;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+    }
+}
@@ -0,0 +1,298 @@
+package com.example.jira.plugin.history;
+
+import com.atlassian.jira.component.ComponentAccessor;
+import com.atlassian.jira.user.ApplicationUser;
+import com.example.jira.plugin.json.BudgetJson;
+import com.example.jira.plugin.model.Budget;
+import com.example.jira.plugin.model.Money;
+import com.example.jira.plugin.store.ExpenseStore;
+import com.example.jira.plugin.store.ExpenseStoreListener;
+import com.example.jira.plugin.store.ProjectAggregates;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+// an append-only history of the writes to the store: who changed which expense or budget, when,
+// and from what to what, so totals can be asked for as of any past moment.
+//
+// point-in-time totals come from each project's ProjectTimeline, updated as the store calls us.
+// the changes themselves go to the HistoryLog on a background thread, like WriteBehindWriter,
+// so recording one costs the writing thread a queue offer. history older than the retention
+// period (budget.tracker.history.retentionMonths, 36 by default) is folded into a checkpoint
+// and deleted. without a directory only the timelines are kept, there's no change log to list
+public class ExpenseHistory implements ExpenseStoreListener {
+    private static final Logger log = LoggerFactory.getLogger(ExpenseHistory.class);
+    private static final String RETENTION_PROPERTY = "budget.tracker.history.retentionMonths";
+    private static final long DEFAULT_RETENTION_MONTHS = 36;
+    private static final int QUEUE_CAPACITY = 100_000;
+    private static final int MAX_BATCH_SIZE = 1_000;
+    private static final long RETRY_DELAY_MILLIS = 1_000;
+    private static final int MAX_ATTEMPTS = 30;
+
+    private final Currency currency;
+    private final HistoryLog historyLog;
+    private final Supplier<String> currentUser;
+    private final long retentionMonths = Long.getLong(RETENTION_PROPERTY, DEFAULT_RETENTION_MONTHS);
+    private final Map<String, ProjectTimeline> timelines = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final BlockingQueue<ExpenseChange> queue = new LinkedBlockingQueue<>(QUEUE_CAPACITY);
+    private final Thread thread;
+    private volatile boolean running = true;
+    // the earliest time the history can answer for
+    private volatile long start;
+    // writer thread only
+    private YearMonth retainedFrom;
+
+    // has to be attached to the store before anything else writes to it, since it starts from
+    // the store's current totals
+    public ExpenseHistory(ExpenseStore store, File directory, Supplier<String> currentUser) {
+        this.currency = store.getCurrency();
+        this.historyLog = directory != null ? new HistoryLog(directory, currency) : null;
+        this.currentUser = currentUser;
+        open(storeTotals(store));
+        this.thread = new Thread(this::run, "budget-tracker-history");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    // the Jira user of the current request, null outside one
+    public static String currentJiraUser() {
+        ApplicationUser user = ComponentAccessor.getJiraAuthenticationContext().getLoggedInUser();
+        return user != null ? user.getUsername() : null;
+    }
+
+    @Override
+    public void expenseSaved(Budget oldBudget, Budget newBudget) {
+        record(ExpenseChange.saved(sequence.incrementAndGet(), System.currentTimeMillis(), currentUser.get(), oldBudget, newBudget));
+    }
+
+    // every expense still gets its own log entry, the timeline one point for the whole batch
+    @Override
+    public void expensesAdded(String projectKey, List<Budget> budgets) {
+        long timestamp = System.currentTimeMillis();
+        String user = currentUser.get();
+        ProjectTimeline timeline = timeline(projectKey);
+        long[] totals = timeline.current();
+        for (Budget budget : budgets) {
+            ExpenseChange change = ExpenseChange.saved(sequence.incrementAndGet(), timestamp, user, null, budget);
+            change.applyTo(key -> totals, currency);
+            if (!queue.offer(change)) {
+                dropped(Collections.singletonList(change), "the history queue is full", null);
+            }
+        }
+        timeline.record(timestamp, totals);
+    }
+
+    @Override
+    public void expenseRemoved(Budget budget) {
+        record(ExpenseChange.removed(sequence.incrementAndGet(), System.currentTimeMillis(), currentUser.get(), budget));
+    }
+
+    @Override
+    public void projectBudgetSet(String projectKey, double totalBudget) {
+        double budgetBefore = Money.toAmount(timeline(projectKey).current()[ProjectTimeline.BUDGET], currency);
+        record(ExpenseChange.budgetSet(sequence.incrementAndGet(), System.currentTimeMillis(), currentUser.get(),
+                projectKey, budgetBefore, totalBudget));
+    }
+
+    // the project's totals after every change at or before `time` (epoch millis)
+    public ProjectTotals getTotalsAt(String projectKey, long time) {
+        if (time < start) {
+            throw new IllegalArgumentException("History before " + Instant.ofEpochMilli(start) + " is not kept");
+        }
+        ProjectTimeline timeline = timelines.get(projectKey);
+        return new ProjectTotals(currency, timeline != null ? timeline.totalsAt(time) : new long[3]);
+    }
+
+    // the changes to the project with timestamps in [from, to], oldest first
+    public List<ExpenseChange> getChanges(String projectKey, long from, long to, int limit) {
+        if (historyLog == null) {
+            return Collections.emptyList();
+        }
+        return historyLog.read(projectKey, Math.max(from, start), to, limit);
+    }
+
+    public long getStart() {
+        return start;
+    }
+
+    // writes out what's still queued
+    public void close() {
+        running = false;
+        thread.interrupt();
+        try {
+            thread.join(RETRY_DELAY_MILLIS * 5);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (historyLog != null) {
+            historyLog.close();
+        }
+    }
+
+    private void open(Map<String, long[]> storeTotals) {
+        long now = System.currentTimeMillis();
+        HistoryLog.Checkpoint base = historyLog != null ? historyLog.load() : null;
+        if (base == null) {
+            // a new history starts from what's in the store now
+            for (Map.Entry<String, long[]> entry : storeTotals.entrySet()) {
+                timelines.put(entry.getKey(), new ProjectTimeline(entry.getValue()));
+            }
+            if (historyLog != null) {
+                historyLog.start(now, storeTotals);
+            }
+            start = now;
+            return;
+        }
+        start = base.timestamp;
+        for (Map.Entry<String, long[]> entry : base.toTotals(currency).entrySet()) {
+            timelines.put(entry.getKey(), new ProjectTimeline(entry.getValue()));
+        }
+        historyLog.replay(change -> {
+            sequence.set(Math.max(sequence.get(), change.getSequence()));
+            apply(change);
+        });
+
+        // both the store and the history are written behind, so a crash can lose the tail of
+        // either. whatever the store holds wins, the difference is recorded as a reconciliation
+        Set<String> projectKeys = new HashSet<>(storeTotals.keySet());
+        projectKeys.addAll(timelines.keySet());
+        int reconciled = 0;
+        for (String projectKey : projectKeys) {
+            long[] expected = storeTotals.getOrDefault(projectKey, new long[3]);
+            if (!Arrays.equals(timeline(projectKey).current(), expected)) {
+                record(ExpenseChange.reconciled(sequence.incrementAndGet(), now, projectKey, expected, currency));
+                reconciled++;
+            }
+        }
+        if (reconciled > 0) {
+            log.warn("Budget history was out of step with the stored totals of {} projects, reconciled", reconciled);
+        }
+    }
+
+    private void record(ExpenseChange change) {
+        apply(change);
+        // the store calls us under its stripe locks, so a full queue can't be waited on without
+        // stalling every writer to the project. the timelines already have the change; the
+        // entry that doesn't make it into the log is logged here instead
+        if (!queue.offer(change)) {
+            dropped(Collections.singletonList(change), "the history queue is full", null);
+        }
+    }
+
+    private void dropped(List<ExpenseChange> changes, String reason, Exception cause) {
+        // as the log would have held them
+        log.error("Dropping {} budget history entries, {}: {}", changes.size(), reason, BudgetJson.gson().toJson(changes), cause);
+    }
+
+    // the store calls us under the stripe locks of every project the change touches, so no
+    // other change to those projects can come between reading their totals and recording them
+    private void apply(ExpenseChange change) {
+        Map<String, long[]> totals = new HashMap<>(4);
+        change.applyTo(projectKey -> totals.computeIfAbsent(projectKey, key -> timeline(key).current()), currency);
+        for (Map.Entry<String, long[]> entry : totals.entrySet()) {
+            timeline(entry.getKey()).record(change.getTimestamp(), entry.getValue());
+        }
+    }
+
+    private ProjectTimeline timeline(String projectKey) {
+        return timelines.computeIfAbsent(projectKey, key -> new ProjectTimeline(new long[3]));
+    }
+
+    private void run() {
+        List<ExpenseChange> batch = new ArrayList<>(MAX_BATCH_SIZE);
+        while (running || !queue.isEmpty()) {
+            try {
+                ExpenseChange first = queue.poll(1, TimeUnit.SECONDS);
+                if (first != null) {
+                    batch.add(first);
+                }
+            } catch (InterruptedException e) {
+                // close() wakes us up to drain the queue and stop
+            }
+            queue.drainTo(batch, MAX_BATCH_SIZE - batch.size());
+            if (!batch.isEmpty() && historyLog != null) {
+                writeWithRetry(batch);
+            }
+            batch.clear();
+            applyRetention();
+        }
+    }
+
+    // gives up after MAX_ATTEMPTS, so a log that can't be written doesn't stall the ones behind it
+    private void writeWithRetry(List<ExpenseChange> batch) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                historyLog.append(batch);
+                return;
+            } catch (RuntimeException e) {
+                if (attempt >= MAX_ATTEMPTS || !running) {
+                    dropped(batch, "the history log failed " + attempt + " times", e);
+                    return;
+                }
+                log.warn("Failed to write {} budget history entries, retrying (attempt {} of {})",
+                        batch.size(), attempt, MAX_ATTEMPTS, e);
+                try {
+                    Thread.sleep(RETRY_DELAY_MILLIS);
+                } catch (InterruptedException interrupted) {
+                    // close() interrupts; the next attempt is the last one
+                }
+            }
+        }
+    }
+
+    // checked once a month: moves the start of the history up to the retention horizon
+    private void applyRetention() {
+        YearMonth horizon = YearMonth.now(ZoneOffset.UTC).minusMonths(retentionMonths);
+        if (retainedFrom != null && !horizon.isAfter(retainedFrom)) {
+            return;
+        }
+        retainedFrom = horizon;
+
+        long newStart;
+        if (historyLog != null) {
+            try {
+                newStart = historyLog.prune(horizon);
+            } catch (RuntimeException e) {
+                log.error("Failed to apply the budget history retention policy", e);
+                return;
+            }
+        } else {
+            newStart = horizon.atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+        }
+        if (newStart <= start) {
+            return;
+        }
+        // queries before the new start are refused from here on, so dropping the changes can't change an answer
+        start = newStart;
+        for (ProjectTimeline timeline : timelines.values()) {
+            timeline.compactBefore(newStart);
+        }
+    }
+
+    private static Map<String, long[]> storeTotals(ExpenseStore store) {
+        Map<String, long[]> totals = new HashMap<>();
+        for (String projectKey : store.getProjectKeys()) {
+            ProjectAggregates aggregates = store.getAggregates(projectKey);
+            if (aggregates != null) {
+                long[] values = new long[3];
+                values[ProjectTimeline.BUDGET] = aggregates.getTotalBudgetMoney().getMinorUnits();
+                values[ProjectTimeline.EXPENSES] = aggregates.getTotalExpensesMoney().getMinorUnits();
+                values[ProjectTimeline.COUNT] = aggregates.getExpenseCount();
+                totals.put(projectKey, values);
+            }
+        }
+        return totals;
+    }
+}
@@ -0,0 +1,365 @@
+package com.example.jira.plugin.history;
+
+import com.example.jira.plugin.model.Money;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+// the expense history on disk, one segment per month (UTC):
+//
+// changes-yyyy-MM.log holds the changes written during that month, one JSON line each, and is
+// gzipped into changes-yyyy-MM.log.gz once the next month starts. checkpoint-yyyy-MM.json holds
+// every project's totals over all the segments before that month, so the history can be read
+// from any checkpoint on, and everything before the oldest checkpoint kept can be deleted.
+// only the writer thread appends; reading the changes back is safe from any thread
+final class HistoryLog {
+    private static final Logger log = LoggerFactory.getLogger(HistoryLog.class);
+    private static final Pattern SEGMENT_FILE = Pattern.compile("changes-(\\d{4}-\\d{2})\\.log(?:\\.gz)?");
+    private static final Pattern CHECKPOINT_FILE = Pattern.compile("checkpoint-(\\d{4}-\\d{2})\\.json");
+
+    private final File directory;
+    private final Currency currency;
+    private final Gson gson = new Gson();
+    // the totals over everything appended so far, for the next checkpoint
+    private final Map<String, long[]> written = new HashMap<>();
+    private YearMonth segmentMonth;
+    private FileOutputStream segmentStream;
+    private Writer segmentWriter;
+
+    HistoryLog(File directory, Currency currency) {
+        this.directory = directory;
+        this.currency = currency;
+    }
+
+    // the oldest checkpoint, which the history starts from, or null if there's no history here yet.
+    // replay() then reads the changes since
+    synchronized Checkpoint load() {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IllegalStateException("Cannot create budget history directory " + directory);
+        }
+        List<YearMonth> checkpoints = months(CHECKPOINT_FILE);
+        if (checkpoints.isEmpty()) {
+            return null;
+        }
+        Checkpoint base = readCheckpoint(checkpoints.get(0));
+        written.putAll(base.toTotals(currency));
+        return base;
+    }
+
+    // feeds every change since the loaded checkpoint to `replay`, then reopens the current month for appending
+    synchronized void replay(Consumer<ExpenseChange> replay) {
+        List<YearMonth> checkpoints = months(CHECKPOINT_FILE);
+        segmentMonth = checkpoints.get(checkpoints.size() - 1);
+        for (YearMonth month : months(SEGMENT_FILE)) {
+            if (month.isBefore(checkpoints.get(0))) {
+                continue;
+            }
+            readSegment(month, change -> {
+                change.applyTo(this::writtenTotals, currency);
+                replay.accept(change);
+            });
+            segmentMonth = month.isAfter(segmentMonth) ? month : segmentMonth;
+        }
+        // a segment left unsealed by a crash during the switch to a new month
+        for (YearMonth month : months(SEGMENT_FILE)) {
+            if (month.isBefore(segmentMonth) && segmentFile(month).exists()) {
+                seal(month);
+            }
+        }
+        openSegment();
+    }
+
+    // starts a new history whose first checkpoint is the totals at `timestamp`
+    synchronized void start(long timestamp, Map<String, long[]> totals) {
+        segmentMonth = monthOf(timestamp);
+        written.clear();
+        for (Map.Entry<String, long[]> entry : totals.entrySet()) {
+            written.put(entry.getKey(), entry.getValue().clone());
+        }
+        writeCheckpoint(Checkpoint.of(segmentMonth, timestamp, written, currency));
+        openSegment();
+    }
+
+    synchronized void append(List<ExpenseChange> batch) {
+        try {
+            for (ExpenseChange change : batch) {
+                YearMonth month = monthOf(change.getTimestamp());
+                if (month.isAfter(segmentMonth)) {
+                    startMonth(month);
+                }
+                segmentWriter.write(gson.toJson(change));
+                segmentWriter.write('\n');
+                change.applyTo(this::writtenTotals, currency);
+            }
+            segmentWriter.flush();
+            segmentStream.getChannel().force(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to append to " + segmentFile(segmentMonth), e);
+        }
+    }
+
+    // deletes the months before the newest checkpoint at or before `horizon`, and returns the
+    // timestamp the history now starts at, or -1 if there was nothing to delete
+    synchronized long prune(YearMonth horizon) {
+        List<YearMonth> checkpoints = months(CHECKPOINT_FILE);
+        YearMonth base = null;
+        for (YearMonth month : checkpoints) {
+            if (!month.isAfter(horizon)) {
+                base = month;
+            }
+        }
+        if (base == null || base.equals(checkpoints.get(0))) {
+            return -1;
+        }
+        long start = readCheckpoint(base).timestamp;
+        for (YearMonth month : months(SEGMENT_FILE)) {
+            if (month.isBefore(base)) {
+                segmentFile(month).delete();
+                sealedSegmentFile(month).delete();
+            }
+        }
+        for (YearMonth month : checkpoints) {
+            if (month.isBefore(base)) {
+                checkpointFile(month).delete();
+            }
+        }
+        log.info("Dropped the budget history before {}", base);
+        return start;
+    }
+
+    // the changes to the project with timestamps in [from, to], in the order they were written
+    List<ExpenseChange> read(String projectKey, long from, long to, int limit) {
+        List<ExpenseChange> changes = new ArrayList<>();
+        // a change can be written just after its month has ended, so one more month is read
+        YearMonth first = monthOf(from);
+        YearMonth last = monthOf(to).plusMonths(1);
+        for (YearMonth month : months(SEGMENT_FILE)) {
+            if (month.isBefore(first) || month.isAfter(last) || changes.size() >= limit) {
+                continue;
+            }
+            readSegment(month, change -> {
+                if (changes.size() < limit && change.getTimestamp() >= from && change.getTimestamp() <= to
+                        && change.touches(projectKey)) {
+                    changes.add(change);
+                }
+            });
+        }
+        return changes;
+    }
+
+    synchronized void close() {
+        closeSegment();
+    }
+
+    private void startMonth(YearMonth month) {
+        closeSegment();
+        seal(segmentMonth);
+        writeCheckpoint(Checkpoint.of(month, month.atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli(), written, currency));
+        segmentMonth = month;
+        openSegment();
+    }
+
+    private long[] writtenTotals(String projectKey) {
+        return written.computeIfAbsent(projectKey, key -> new long[3]);
+    }
+
+    private void readSegment(YearMonth month, Consumer<ExpenseChange> consumer) {
+        File file = segmentFile(month);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(openSegment(month), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                try {
+                    consumer.accept(gson.fromJson(line, ExpenseChange.class));
+                } catch (JsonParseException e) {
+                    // a line torn by a crash mid-append; appending resumes on a fresh line
+                    log.warn("Ignoring an incomplete entry in {}", file);
+                }
+            }
+        } catch (FileNotFoundException e) {
+            // deleted by the retention policy while we were listing
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read " + file, e);
+        }
+    }
+
+    // the plain segment while it's there; sealing deletes it only once the gzipped copy is complete
+    private InputStream openSegment(YearMonth month) throws IOException {
+        try {
+            return new FileInputStream(segmentFile(month));
+        } catch (FileNotFoundException e) {
+            return new GZIPInputStream(new FileInputStream(sealedSegmentFile(month)));
+        }
+    }
+
+    private void openSegment() {
+        File file = segmentFile(segmentMonth);
+        try {
+            boolean tornLine = file.length() > 0 && !endsWithNewline(file);
+            segmentStream = new FileOutputStream(file, true);
+            segmentWriter = new BufferedWriter(new OutputStreamWriter(segmentStream, StandardCharsets.UTF_8));
+            if (tornLine) {
+                segmentWriter.write('\n');
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open " + file, e);
+        }
+    }
+
+    private void closeSegment() {
+        if (segmentWriter == null) {
+            return;
+        }
+        try {
+            segmentWriter.close();
+        } catch (IOException e) {
+            log.warn("Failed to close budget history segment", e);
+        }
+        segmentWriter = null;
+        segmentStream = null;
+    }
+
+    private void seal(YearMonth month) {
+        File source = segmentFile(month);
+        if (!source.exists()) {
+            return;
+        }
+        File target = sealedSegmentFile(month);
+        File temp = new File(directory, target.getName() + ".tmp");
+        try {
+            try (InputStream in = new FileInputStream(source);
+                 OutputStream out = new GZIPOutputStream(new FileOutputStream(temp))) {
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = in.read(buffer)) > 0) {
+                    out.write(buffer, 0, read);
+                }
+            }
+            Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            source.delete();
+        } catch (IOException e) {
+            // the plain segment stays and is read instead
+            log.warn("Failed to compress {}", source, e);
+        }
+    }
+
+    private Checkpoint readCheckpoint(YearMonth month) {
+        File file = checkpointFile(month);
+        try (Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+            return gson.fromJson(reader, Checkpoint.class);
+        } catch (IOException | JsonParseException e) {
+            throw new IllegalStateException("Corrupt budget history checkpoint " + file, e);
+        }
+    }
+
+    private void writeCheckpoint(Checkpoint checkpoint) {
+        File target = checkpointFile(YearMonth.parse(checkpoint.month));
+        File temp = new File(directory, target.getName() + ".tmp");
+        try {
+            try (FileOutputStream out = new FileOutputStream(temp)) {
+                Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+                gson.toJson(checkpoint, writer);
+                writer.flush();
+                out.getChannel().force(false);
+            }
+            Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write checkpoint " + target, e);
+        }
+    }
+
+    private static boolean endsWithNewline(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            raf.seek(file.length() - 1);
+            return raf.read() == '\n';
+        }
+    }
+
+    private List<YearMonth> months(Pattern pattern) {
+        TreeSet<YearMonth> result = new TreeSet<>();
+        String[] names = directory.list();
+        if (names != null) {
+            for (String name : names) {
+                Matcher matcher = pattern.matcher(name);
+                if (matcher.matches()) {
+                    result.add(YearMonth.parse(matcher.group(1)));
+                }
+            }
+        }
+        return new ArrayList<>(result);
+    }
+
+    static YearMonth monthOf(long timestamp) {
+        return YearMonth.from(Instant.ofEpochMilli(timestamp).atZone(ZoneOffset.UTC));
+    }
+
+    private File segmentFile(YearMonth month) {
+        return new File(directory, "changes-" + month + ".log");
+    }
+
+    private File sealedSegmentFile(YearMonth month) {
+        return new File(directory, "changes-" + month + ".log.gz");
+    }
+
+    private File checkpointFile(YearMonth month) {
+        return new File(directory, "checkpoint-" + month + ".json");
+    }
+
+    // every project's totals at the start of a month, or at the start of the history
+    static final class Checkpoint {
+        String month;
+        long timestamp;
+        Map<String, Totals> projects = new TreeMap<>();
+
+        static Checkpoint of(YearMonth month, long timestamp, Map<String, long[]> totals, Currency currency) {
+            Checkpoint checkpoint = new Checkpoint();
+            checkpoint.month = month.toString();
+            checkpoint.timestamp = timestamp;
+            for (Map.Entry<String, long[]> entry : totals.entrySet()) {
+                long[] values = entry.getValue();
+                Totals project = new Totals();
+                project.totalBudget = Money.toAmount(values[ProjectTimeline.BUDGET], currency);
+                project.totalExpenses = Money.toAmount(values[ProjectTimeline.EXPENSES], currency);
+                project.expenseCount = (int) values[ProjectTimeline.COUNT];
+                checkpoint.projects.put(entry.getKey(), project);
+            }
+            return checkpoint;
+        }
+
+        Map<String, long[]> toTotals(Currency currency) {
+            Map<String, long[]> totals = new HashMap<>();
+            for (Map.Entry<String, Totals> entry : projects.entrySet()) {
+                Totals project = entry.getValue();
+                long[] values = new long[3];
+                values[ProjectTimeline.BUDGET] = Money.toMinorUnits(project.totalBudget, currency);
+                values[ProjectTimeline.EXPENSES] = Money.toMinorUnits(project.totalExpenses, currency);
+                values[ProjectTimeline.COUNT] = project.expenseCount;
+                totals.put(entry.getKey(), values);
+            }
+            return totals;
+        }
+    }
+
+    static final class Totals {
+        double totalBudget;
+        double totalExpenses;
+        int expenseCount;
+    }
+}
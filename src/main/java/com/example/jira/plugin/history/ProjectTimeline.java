@@ -0,0 +1,142 @@
+package com.example.jira.plugin.history;
+
+import java.util.Arrays;
+
+// one project's totals over time, for point-in-time queries. each change is kept as what it
+// did to the totals, and every CHECKPOINT_INTERVAL changes the totals themselves are kept as a
+// checkpoint, so the totals at any moment are the nearest checkpoint before it plus at most
+// CHECKPOINT_INTERVAL deltas, however long the history is. changes that leave the totals as
+// they were, like a new description, take no space here.
+//
+// totals are {budget, expenses, count}, amounts in minor units
+final class ProjectTimeline {
+    static final int BUDGET = 0;
+    static final int EXPENSES = 1;
+    static final int COUNT = 2;
+    static final int CHECKPOINT_INTERVAL = 128;
+
+    private long[] times = new long[8];
+    private long[] budgetDeltas = new long[8];
+    private long[] expenseDeltas = new long[8];
+    private int[] countDeltas = new int[8];
+    private int size;
+    // checkpoint k, at [3k, 3k + 3), holds the totals before change k * CHECKPOINT_INTERVAL
+    private long[] checkpoints = new long[3];
+    private int checkpointCount;
+    private long[] current;
+
+    ProjectTimeline(long[] base) {
+        resetTo(base);
+    }
+
+    synchronized long[] current() {
+        return current.clone();
+    }
+
+    // the totals after the change at `time`. times never go backwards within a project, a clock
+    // that steps back is recorded as no time passing
+    synchronized void record(long time, long[] totals) {
+        long budgetDelta = totals[BUDGET] - current[BUDGET];
+        long expenseDelta = totals[EXPENSES] - current[EXPENSES];
+        int countDelta = (int) (totals[COUNT] - current[COUNT]);
+        if (budgetDelta == 0 && expenseDelta == 0 && countDelta == 0) {
+            return;
+        }
+        if (size == checkpointCount * CHECKPOINT_INTERVAL) {
+            addCheckpoint(current);
+        }
+        if (size == times.length) {
+            int capacity = size * 2;
+            times = Arrays.copyOf(times, capacity);
+            budgetDeltas = Arrays.copyOf(budgetDeltas, capacity);
+            expenseDeltas = Arrays.copyOf(expenseDeltas, capacity);
+            countDeltas = Arrays.copyOf(countDeltas, capacity);
+        }
+        times[size] = size > 0 ? Math.max(time, times[size - 1]) : time;
+        budgetDeltas[size] = budgetDelta;
+        expenseDeltas[size] = expenseDelta;
+        countDeltas[size] = countDelta;
+        size++;
+        current = totals.clone();
+    }
+
+    // the totals after every change at or before `time`
+    synchronized long[] totalsAt(long time) {
+        return totalsBefore(changesUpTo(time));
+    }
+
+    // folds the changes before `time` into the base checkpoint and forgets them
+    synchronized void compactBefore(long time) {
+        int dropped = changesUpTo(time - 1);
+        if (dropped == 0) {
+            return;
+        }
+        long[] base = totalsBefore(dropped);
+        int remaining = size - dropped;
+        int capacity = Math.max(8, remaining);
+        long[] remainingTimes = Arrays.copyOfRange(times, dropped, dropped + capacity);
+        long[] remainingBudgetDeltas = Arrays.copyOfRange(budgetDeltas, dropped, dropped + capacity);
+        long[] remainingExpenseDeltas = Arrays.copyOfRange(expenseDeltas, dropped, dropped + capacity);
+        int[] remainingCountDeltas = Arrays.copyOfRange(countDeltas, dropped, dropped + capacity);
+
+        resetTo(base);
+        long[] totals = base.clone();
+        for (int i = 0; i < remaining; i++) {
+            totals[BUDGET] += remainingBudgetDeltas[i];
+            totals[EXPENSES] += remainingExpenseDeltas[i];
+            totals[COUNT] += remainingCountDeltas[i];
+            record(remainingTimes[i], totals);
+        }
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    private void resetTo(long[] base) {
+        times = new long[8];
+        budgetDeltas = new long[8];
+        expenseDeltas = new long[8];
+        countDeltas = new int[8];
+        size = 0;
+        checkpoints = new long[3];
+        checkpointCount = 0;
+        addCheckpoint(base);
+        current = base.clone();
+    }
+
+    // the totals with the first `end` changes applied: the nearest checkpoint, then the deltas after it
+    private long[] totalsBefore(int end) {
+        int checkpoint = Math.min(end / CHECKPOINT_INTERVAL, checkpointCount - 1);
+        long[] totals = Arrays.copyOfRange(checkpoints, checkpoint * 3, checkpoint * 3 + 3);
+        for (int i = checkpoint * CHECKPOINT_INTERVAL; i < end; i++) {
+            totals[BUDGET] += budgetDeltas[i];
+            totals[EXPENSES] += expenseDeltas[i];
+            totals[COUNT] += countDeltas[i];
+        }
+        return totals;
+    }
+
+    // how many changes happened at or before `time`
+    private int changesUpTo(long time) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (times[middle] <= time) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private void addCheckpoint(long[] totals) {
+        if ((checkpointCount + 1) * 3 > checkpoints.length) {
+            checkpoints = Arrays.copyOf(checkpoints, checkpoints.length * 2);
+        }
+        System.arraycopy(totals, 0, checkpoints, checkpointCount * 3, 3);
+        checkpointCount++;
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.jira.plugin.history;
+
+import com.example.jira.plugin.model.Money;
+
+import java.util.Currency;
+
+// a project's totals as they stood at some point in its history
+public final class ProjectTotals {
+    private final Currency currency;
+    private final long totalBudget;
+    private final long totalExpenses;
+    private final int expenseCount;
+
+    ProjectTotals(Currency currency, long[] totals) {
+        this.currency = currency;
+        this.totalBudget = totals[ProjectTimeline.BUDGET];
+        this.totalExpenses = totals[ProjectTimeline.EXPENSES];
+        this.expenseCount = (int) totals[ProjectTimeline.COUNT];
+    }
+
+    public double getTotalBudget() {
+        return Money.toAmount(totalBudget, currency);
+    }
+
+    public double getTotalExpenses() {
+        return Money.toAmount(totalExpenses, currency);
+    }
+
+    public double getRemainingBudget() {
+        return Money.toAmount(totalBudget - totalExpenses, currency);
+    }
+
+    public int getExpenseCount() {
+        return expenseCount;
+    }
+}
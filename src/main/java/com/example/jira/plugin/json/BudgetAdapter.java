@@ -0,0 +1,114 @@
+package com.example.jira.plugin.json;
+
+import com.example.jira.plugin.model.Budget;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+// fields in declaration order, as reflective Gson wrote them. a missing id on read keeps the
+// fresh one from the Budget constructor, an explicit null clears it
+final class BudgetAdapter extends TypeAdapter<Budget> {
+    private final IssueAdapter issueAdapter = new IssueAdapter();
+
+    @Override
+    public void write(JsonWriter out, Budget budget) throws IOException {
+        out.beginObject();
+        BudgetJson.writeString(out, "id", budget.getId());
+        BudgetJson.writeString(out, "projectKey", budget.getProjectKey());
+        BudgetJson.writeDouble(out, "totalBudget", budget.getTotalBudget());
+        BudgetJson.writeDouble(out, "remainingBudget", budget.getRemainingBudget());
+        BudgetJson.writeString(out, "budgetName", budget.getBudgetName());
+        BudgetJson.writeString(out, "budgetCategory", budget.getBudgetCategory());
+        List<Budget.Issue> selectedIssues = budget.getSelectedIssues();
+        if (selectedIssues != null) {
+            out.name("selectedIssues").beginArray();
+            for (Budget.Issue issue : selectedIssues) {
+                if (issue != null) {
+                    issueAdapter.write(out, issue);
+                } else {
+                    out.nullValue();
+                }
+            }
+            out.endArray();
+        }
+        BudgetJson.writeString(out, "description", budget.getDescription());
+        BudgetJson.writeDouble(out, "amount", budget.getAmount());
+        BudgetJson.writeString(out, "epicKey", budget.getEpicKey());
+        BudgetJson.writeString(out, "issueKey", budget.getIssueKey());
+        BudgetJson.writeString(out, "date", budget.getDate());
+        out.endObject();
+    }
+
+    @Override
+    public Budget read(JsonReader in) throws IOException {
+        Budget budget = new Budget();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "id":
+                    budget.setId(BudgetJson.nextString(in));
+                    break;
+                case "projectKey":
+                    budget.setProjectKey(BudgetJson.nextString(in));
+                    break;
+                case "totalBudget":
+                    if (!BudgetJson.nextNull(in)) {
+                        budget.setTotalBudget(in.nextDouble());
+                    }
+                    break;
+                case "remainingBudget":
+                    if (!BudgetJson.nextNull(in)) {
+                        budget.setRemainingBudget(in.nextDouble());
+                    }
+                    break;
+                case "budgetName":
+                    budget.setBudgetName(BudgetJson.nextString(in));
+                    break;
+                case "budgetCategory":
+                    budget.setBudgetCategory(BudgetJson.nextString(in));
+                    break;
+                case "selectedIssues":
+                    budget.setSelectedIssues(readIssues(in));
+                    break;
+                case "description":
+                    budget.setDescription(BudgetJson.nextString(in));
+                    break;
+                case "amount":
+                    if (!BudgetJson.nextNull(in)) {
+                        budget.setAmount(in.nextDouble());
+                    }
+                    break;
+                case "epicKey":
+                    budget.setEpicKey(BudgetJson.nextString(in));
+                    break;
+                case "issueKey":
+                    budget.setIssueKey(BudgetJson.nextString(in));
+                    break;
+                case "date":
+                    budget.setDate(BudgetJson.nextString(in));
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return budget;
+    }
+
+    private List<Budget.Issue> readIssues(JsonReader in) throws IOException {
+        if (BudgetJson.nextNull(in)) {
+            return null;
+        }
+        List<Budget.Issue> issues = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            issues.add(BudgetJson.nextNull(in) ? null : issueAdapter.read(in));
+        }
+        in.endArray();
+        return issues;
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.jira.plugin.json;
+
+import com.example.jira.plugin.model.Budget;
+import com.example.jira.plugin.model.CumulativePoint;
+import com.example.jira.plugin.model.NamedAmount;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+
+// the one Gson the plugin shares. a Gson is thread-safe and caches the adapters it builds, so
+// an instance per resource only repeated that work. Budget, its issues and the chart rows go
+// through the hand-written streaming adapters in this package instead of reflection: same
+// field names and order, nulls left out, numbers written as reflective Gson wrote them
+public final class BudgetJson {
+    private static final Gson GSON = new GsonBuilder()
+            .registerTypeAdapter(Budget.class, new BudgetAdapter().nullSafe())
+            .registerTypeAdapter(Budget.Issue.class, new IssueAdapter().nullSafe())
+            .registerTypeAdapter(NamedAmount.class, new NamedAmountAdapter().nullSafe())
+            .registerTypeAdapter(CumulativePoint.class, new CumulativePointAdapter().nullSafe())
+            .create();
+
+    private BudgetJson() {}
+
+    public static Gson gson() {
+        return GSON;
+    }
+
+    // writes the rows as a JSON array one at a time, so memory use doesn't grow with their number.
+    // the same bytes as gson().toJson on a list of them
+    public static void writeBudgets(Iterable<Budget> budgets, OutputStream output) throws IOException {
+        JsonWriter writer = new JsonWriter(new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8)));
+        writer.beginArray();
+        for (Budget budget : budgets) {
+            GSON.toJson(budget, Budget.class, writer);
+        }
+        writer.endArray();
+        writer.flush();
+    }
+
+    static void writeString(JsonWriter out, String name, String value) throws IOException {
+        if (value != null) {
+            out.name(name).value(value);
+        }
+    }
+
+    static void writeDouble(JsonWriter out, String name, double value) throws IOException {
+        // reflective Gson refuses these too, JSON has no way to write them
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            throw new IllegalArgumentException(value + " is not a valid JSON number");
+        }
+        out.name(name).value(value);
+    }
+
+    // consumes a null and returns true, or leaves anything else to be read
+    static boolean nextNull(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return true;
+        }
+        return false;
+    }
+
+    // like Gson's own string adapter, numbers and booleans are taken as their text
+    static String nextString(JsonReader in) throws IOException {
+        switch (in.peek()) {
+            case NULL:
+                in.nextNull();
+                return null;
+            case BOOLEAN:
+                return Boolean.toString(in.nextBoolean());
+            default:
+                return in.nextString();
+        }
+    }
+}
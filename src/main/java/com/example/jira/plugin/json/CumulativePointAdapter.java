@@ -0,0 +1,55 @@
+package com.example.jira.plugin.json;
+
+import com.example.jira.plugin.model.CumulativePoint;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+final class CumulativePointAdapter extends TypeAdapter<CumulativePoint> {
+    @Override
+    public void write(JsonWriter out, CumulativePoint point) throws IOException {
+        out.beginObject();
+        BudgetJson.writeString(out, "date", point.getDate());
+        BudgetJson.writeDouble(out, "amount", point.getAmount());
+        BudgetJson.writeDouble(out, "bucketAmount", point.getBucketAmount());
+        out.name("count").value(point.getCount());
+        out.endObject();
+    }
+
+    @Override
+    public CumulativePoint read(JsonReader in) throws IOException {
+        String date = null;
+        double amount = 0;
+        double bucketAmount = 0;
+        int count = 0;
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "date":
+                    date = BudgetJson.nextString(in);
+                    break;
+                case "amount":
+                    if (!BudgetJson.nextNull(in)) {
+                        amount = in.nextDouble();
+                    }
+                    break;
+                case "bucketAmount":
+                    if (!BudgetJson.nextNull(in)) {
+                        bucketAmount = in.nextDouble();
+                    }
+                    break;
+                case "count":
+                    if (!BudgetJson.nextNull(in)) {
+                        count = in.nextInt();
+                    }
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return new CumulativePoint(date, amount, bucketAmount, count);
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.jira.plugin.json;
+
+import com.example.jira.plugin.model.Budget;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+final class IssueAdapter extends TypeAdapter<Budget.Issue> {
+    @Override
+    public void write(JsonWriter out, Budget.Issue issue) throws IOException {
+        out.beginObject();
+        BudgetJson.writeString(out, "key", issue.getKey());
+        BudgetJson.writeString(out, "summary", issue.getSummary());
+        BudgetJson.writeString(out, "type", issue.getType());
+        out.endObject();
+    }
+
+    @Override
+    public Budget.Issue read(JsonReader in) throws IOException {
+        Budget.Issue issue = new Budget.Issue();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "key":
+                    issue.setKey(BudgetJson.nextString(in));
+                    break;
+                case "summary":
+                    issue.setSummary(BudgetJson.nextString(in));
+                    break;
+                case "type":
+                    issue.setType(BudgetJson.nextString(in));
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return issue;
+    }
+}
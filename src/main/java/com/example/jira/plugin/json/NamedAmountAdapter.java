@@ -0,0 +1,41 @@
+package com.example.jira.plugin.json;
+
+import com.example.jira.plugin.model.NamedAmount;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+final class NamedAmountAdapter extends TypeAdapter<NamedAmount> {
+    @Override
+    public void write(JsonWriter out, NamedAmount slice) throws IOException {
+        out.beginObject();
+        BudgetJson.writeString(out, "name", slice.getName());
+        BudgetJson.writeDouble(out, "value", slice.getValue());
+        out.endObject();
+    }
+
+    @Override
+    public NamedAmount read(JsonReader in) throws IOException {
+        String name = null;
+        double value = 0;
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "name":
+                    name = BudgetJson.nextString(in);
+                    break;
+                case "value":
+                    if (!BudgetJson.nextNull(in)) {
+                        value = in.nextDouble();
+                    }
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return new NamedAmount(name, value);
+    }
+}
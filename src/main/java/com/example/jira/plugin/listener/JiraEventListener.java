@@ -0,0 +1,94 @@
+package com.example.jira.plugin.listener;
+
+import com.atlassian.crowd.event.group.GroupMembershipCreatedEvent;
+import com.atlassian.crowd.event.group.GroupMembershipDeletedEvent;
+import com.atlassian.crowd.event.user.UserDeletedEvent;
+import com.atlassian.crowd.event.user.UserUpdatedEvent;
+import com.atlassian.event.api.EventListener;
+import com.atlassian.event.api.EventPublisher;
+import com.atlassian.jira.event.issue.IssueEvent;
+import com.atlassian.jira.event.role.ProjectRoleUpdatedEvent;
+import com.atlassian.jira.event.type.EventType;
+import com.atlassian.jira.issue.Issue;
+import com.atlassian.plugin.spring.scanner.annotation.imports.ComponentImport;
+import com.example.jira.plugin.service.AlertThresholdServiceSingleton;
+import com.example.jira.plugin.service.BudgetServiceSingleton;
+import com.example.jira.plugin.suggest.IssueSuggestions;
+import com.example.jira.plugin.suggest.JiraIssueSource;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+
+// keeps the plugin's caches of Jira data in step with changes made in Jira
+@Named
+public class JiraEventListener implements InitializingBean, DisposableBean {
+    private final EventPublisher eventPublisher;
+
+    @Inject
+    public JiraEventListener(@ComponentImport EventPublisher eventPublisher) {
+        this.eventPublisher = eventPublisher;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        eventPublisher.register(this);
+    }
+
+    @Override
+    public void destroy() {
+        eventPublisher.unregister(this);
+    }
+
+    @EventListener
+    public void onIssueEvent(IssueEvent event) {
+        Issue issue = event.getIssue();
+        if (issue == null || issue.getProjectObject() == null) {
+            return;
+        }
+        String projectKey = issue.getProjectObject().getKey();
+        BudgetServiceSingleton.getIssueHierarchy().issueChanged(issue.getKey(), projectKey);
+
+        IssueSuggestions suggestions = BudgetServiceSingleton.getIssueSuggestions();
+        if (EventType.ISSUE_DELETED_ID.equals(event.getEventTypeId())) {
+            suggestions.issueDeleted(projectKey, issue.getId());
+        } else if (EventType.ISSUE_MOVED_ID.equals(event.getEventTypeId())) {
+            suggestions.issueMoved(projectKey, JiraIssueSource.indexed(issue));
+        } else {
+            suggestions.issueChanged(projectKey, JiraIssueSource.indexed(issue));
+        }
+    }
+
+    // users or groups were added to or removed from a role in one project
+    @EventListener
+    public void onProjectRoleUpdated(ProjectRoleUpdatedEvent event) {
+        if (event.getProject() != null) {
+            AlertThresholdServiceSingleton.getRecipients().projectRolesChanged(event.getProject().getKey());
+        } else {
+            AlertThresholdServiceSingleton.getRecipients().invalidateAll();
+        }
+    }
+
+    // a changed email address or a removed user could be in any project's recipients
+    @EventListener
+    public void onUserUpdated(UserUpdatedEvent event) {
+        AlertThresholdServiceSingleton.getRecipients().invalidateAll();
+    }
+
+    @EventListener
+    public void onUserDeleted(UserDeletedEvent event) {
+        AlertThresholdServiceSingleton.getRecipients().invalidateAll();
+    }
+
+    // roles can hold groups, so group membership decides role membership too
+    @EventListener
+    public void onGroupMembershipCreated(GroupMembershipCreatedEvent event) {
+        AlertThresholdServiceSingleton.getRecipients().invalidateAll();
+    }
+
+    @EventListener
+    public void onGroupMembershipDeleted(GroupMembershipDeletedEvent event) {
+        AlertThresholdServiceSingleton.getRecipients().invalidateAll();
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.jira.plugin.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+// the plugin's counters, latency histograms and gauges, read by /budget/metrics and JMX.
+// hot paths keep the LongAdder or LatencyHistogram they got from here in a field, so
+// recording never goes through the name lookup
+public final class BudgetMetrics {
+    private static final BudgetMetrics INSTANCE = new BudgetMetrics();
+
+    private final ConcurrentMap<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Supplier<?>> gauges = new ConcurrentHashMap<>();
+
+    private BudgetMetrics() {}
+
+    public static BudgetMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    public LongAdder counter(String name) {
+        return counters.computeIfAbsent(name, k -> new LongAdder());
+    }
+
+    public LatencyHistogram histogram(String name) {
+        return histograms.computeIfAbsent(name, k -> new LatencyHistogram());
+    }
+
+    // read on every snapshot; a number, or a map of names to numbers
+    public void gauge(String name, Supplier<?> value) {
+        gauges.put(name, value);
+    }
+
+    public void removeGauge(String name) {
+        gauges.remove(name);
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> counterValues = new TreeMap<>();
+        for (Map.Entry<String, LongAdder> counter : counters.entrySet()) {
+            counterValues.put(counter.getKey(), counter.getValue().sum());
+        }
+        Map<String, Object> histogramValues = new TreeMap<>();
+        for (Map.Entry<String, LatencyHistogram> histogram : histograms.entrySet()) {
+            histogramValues.put(histogram.getKey(), histogram.getValue().snapshot());
+        }
+        Map<String, Object> gaugeValues = new TreeMap<>();
+        for (Map.Entry<String, Supplier<?>> gauge : gauges.entrySet()) {
+            gaugeValues.put(gauge.getKey(), read(gauge.getValue()));
+        }
+
+        Map<String, Object> snapshot = new TreeMap<>();
+        snapshot.put("counters", counterValues);
+        snapshot.put("histograms", histogramValues);
+        snapshot.put("gauges", gaugeValues);
+        return snapshot;
+    }
+
+    // every number as one dotted name, e.g. "alerts.evaluation.p99Ms" or "store.expenses.PROJ"
+    Map<String, Number> flatten() {
+        Map<String, Number> values = new TreeMap<>();
+        for (Map.Entry<String, LongAdder> counter : counters.entrySet()) {
+            values.put(counter.getKey(), counter.getValue().sum());
+        }
+        for (Map.Entry<String, LatencyHistogram> histogram : histograms.entrySet()) {
+            flatten(histogram.getKey(), histogram.getValue().snapshot(), values);
+        }
+        for (Map.Entry<String, Supplier<?>> gauge : gauges.entrySet()) {
+            flatten(gauge.getKey(), read(gauge.getValue()), values);
+        }
+        return values;
+    }
+
+    private static void flatten(String name, Object value, Map<String, Number> values) {
+        if (value instanceof Number) {
+            values.put(name, (Number) value);
+        } else if (value instanceof Map) {
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                flatten(name + "." + entry.getKey(), entry.getValue(), values);
+            }
+        }
+    }
+
+    private static Object read(Supplier<?> gauge) {
+        try {
+            return gauge.get();
+        } catch (RuntimeException e) {
+            return "unavailable: " + e.getMessage();
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.jira.plugin.model;
+
+// outcome of one row of a bulk import
+public class BulkImportResult {
+    public static final String CREATED = "created";
+    public static final String REJECTED = "rejected";
+
+    // 1-based position of the row in the request
+    private final int row;
+    private final String status;
+    private final String id;
+    private final String error;
+
+    private BulkImportResult(int row, String status, String id, String error) {
+        this.row = row;
+        this.status = status;
+        this.id = id;
+        this.error = error;
+    }
+
+    public static BulkImportResult created(int row, String id) {
+        return new BulkImportResult(row, CREATED, id, null);
+    }
+
+    public static BulkImportResult rejected(int row, String error) {
+        return new BulkImportResult(row, REJECTED, null, error);
+    }
+
+    public int getRow() {
+        return row;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getError() {
+        return error;
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.jira.plugin.model;
+
+// one bucket of the cumulative expense chart
+public final class CumulativePoint {
+    // first day of the bucket, yyyy-MM-dd
+    private final String date;
+    // expenses dated up to the end of the bucket
+    private final double amount;
+    // expenses dated inside the bucket
+    private final double bucketAmount;
+    private final int count;
+
+    public CumulativePoint(String date, double amount, double bucketAmount, int count) {
+        this.date = date;
+        this.amount = amount;
+        this.bucketAmount = bucketAmount;
+        this.count = count;
+    }
+
+    public String getDate() {
+        return date;
+    }
+
+    public double getAmount() {
+        return amount;
+    }
+
+    public double getBucketAmount() {
+        return bucketAmount;
+    }
+
+    public int getCount() {
+        return count;
+    }
+}
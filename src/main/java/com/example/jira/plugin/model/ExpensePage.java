@@ -0,0 +1,23 @@
+package com.example.jira.plugin.model;
+
+import java.util.List;
+
+// one page of a keyset-paginated expense listing
+public class ExpensePage {
+    private final List<Budget> items;
+    // pass back as ?cursor= to get the next page, null on the last page
+    private final String nextCursor;
+
+    public ExpensePage(List<Budget> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<Budget> getItems() {
+        return items;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.jira.plugin.model;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Currency;
+
+// an amount as a whole number of minor units (cents for USD) of one currency. adding these
+// up is exact and doesn't depend on the order, which doubles can't promise. the REST API
+// keeps sending plain decimal numbers, they're converted when an expense is stored
+public final class Money implements Comparable<Money> {
+    // expenses carry no currency of their own, the whole plugin uses this one
+    public static final Currency DEFAULT_CURRENCY =
+            Currency.getInstance(System.getProperty("budget.tracker.currency", "USD"));
+
+    private static final long[] POWERS_OF_TEN = {1L, 10L, 100L, 1_000L, 10_000L};
+    // below this a double holds every whole number exactly
+    private static final double EXACT_LIMIT = 1L << 52;
+
+    private final long minorUnits;
+    private final Currency currency;
+
+    private Money(long minorUnits, Currency currency) {
+        this.minorUnits = minorUnits;
+        this.currency = currency;
+    }
+
+    public static Money of(double amount, Currency currency) {
+        return new Money(toMinorUnits(amount, currency), currency);
+    }
+
+    public static Money ofMinorUnits(long minorUnits, Currency currency) {
+        return new Money(minorUnits, currency);
+    }
+
+    // rounds half-even to the currency's minor unit
+    public static long toMinorUnits(double amount, Currency currency) {
+        if (Double.isNaN(amount) || Double.isInfinite(amount)) {
+            throw new IllegalArgumentException("Amount must be a number: " + amount);
+        }
+        long factor = factor(currency);
+        double scaled = amount * factor;
+        if (Math.abs(scaled) < EXACT_LIMIT) {
+            // the common case: the amount already has no more decimals than the currency
+            long rounded = Math.round(scaled);
+            if ((double) rounded / factor == amount) {
+                return rounded;
+            }
+        }
+        try {
+            return BigDecimal.valueOf(amount)
+                    .setScale(fractionDigits(currency), RoundingMode.HALF_EVEN)
+                    .movePointRight(fractionDigits(currency))
+                    .longValueExact();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Amount out of range: " + amount, e);
+        }
+    }
+
+    // the double closest to the decimal amount, i.e. what parsing its decimal string gives
+    public static double toAmount(long minorUnits, Currency currency) {
+        long factor = factor(currency);
+        if (Math.abs(minorUnits) < EXACT_LIMIT) {
+            return (double) minorUnits / factor;
+        }
+        return BigDecimal.valueOf(minorUnits, fractionDigits(currency)).doubleValue();
+    }
+
+    public static boolean isRepresentable(double amount, Currency currency) {
+        try {
+            toMinorUnits(amount, currency);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    public long getMinorUnits() {
+        return minorUnits;
+    }
+
+    public Currency getCurrency() {
+        return currency;
+    }
+
+    public double toDouble() {
+        return toAmount(minorUnits, currency);
+    }
+
+    public Money plus(Money other) {
+        requireSameCurrency(other);
+        return new Money(Math.addExact(minorUnits, other.minorUnits), currency);
+    }
+
+    public Money minus(Money other) {
+        requireSameCurrency(other);
+        return new Money(Math.subtractExact(minorUnits, other.minorUnits), currency);
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        requireSameCurrency(other);
+        return Long.compare(minorUnits, other.minorUnits);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Money)) {
+            return false;
+        }
+        Money other = (Money) o;
+        return minorUnits == other.minorUnits && currency.equals(other.currency);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Long.hashCode(minorUnits) + currency.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return BigDecimal.valueOf(minorUnits, fractionDigits(currency)).toPlainString() + " " + currency.getCurrencyCode();
+    }
+
+    private void requireSameCurrency(Money other) {
+        if (!currency.equals(other.currency)) {
+            throw new IllegalArgumentException("Cannot combine " + currency + " with " + other.currency);
+        }
+    }
+
+    // pseudo-currencies report -1, treat them as having no minor unit
+    private static int fractionDigits(Currency currency) {
+        return Math.max(0, currency.getDefaultFractionDigits());
+    }
+
+    private static long factor(Currency currency) {
+        return POWERS_OF_TEN[fractionDigits(currency)];
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.jira.plugin.model;
+
+// one slice of a breakdown chart: the expenses of a category or a phase
+public final class NamedAmount {
+    private final String name;
+    private final double value;
+
+    public NamedAmount(String name, double value) {
+        this.name = name;
+        this.value = value;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public double getValue() {
+        return value;
+    }
+}
@@ -0,0 +1,273 @@
+package com.example.jira.plugin.persistence;
+
+import com.atlassian.activeobjects.external.ActiveObjects;
+import com.example.jira.plugin.json.BudgetJson;
+import com.example.jira.plugin.model.Budget;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import net.java.ao.Query;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Type;
+import java.util.*;
+import java.util.function.Supplier;
+
+// Active Objects backed storage. every batch runs in one transaction, and only the last
+// mutation per expense/project in a batch is sent to the database. rows are looked up and
+// deleted IN_CHUNK ids per statement, and new rows are inserted in bulk, so a batch costs a
+// few statements plus one update per changed existing row rather than a lookup per mutation
+public class ActiveObjectsExpenseRepository implements ExpenseRepository {
+    private static final Logger log = LoggerFactory.getLogger(ActiveObjectsExpenseRepository.class);
+    private static final Type ISSUE_LIST_TYPE = new TypeToken<List<Budget.Issue>>() {}.getType();
+    // well under Oracle's 1000 expressions per IN list and SQL Server's 2100 parameters
+    private static final int IN_CHUNK = 500;
+
+    private final ActiveObjects ao;
+    private final Gson gson = BudgetJson.gson();
+
+    public ActiveObjectsExpenseRepository(ActiveObjects ao) {
+        this.ao = ao;
+    }
+
+    @Override
+    public ExpenseSnapshot load() {
+        return ao.executeInTransaction(() -> {
+            ExpenseSnapshot snapshot = new ExpenseSnapshot();
+            for (ExpenseEntity entity : ao.find(ExpenseEntity.class)) {
+                Budget budget = toBudget(entity);
+                snapshot.getExpenses().put(budget.getId(), budget);
+            }
+            for (ProjectBudgetEntity entity : ao.find(ProjectBudgetEntity.class)) {
+                snapshot.getProjectBudgets().put(entity.getProjectKey(), entity.getTotalBudget());
+            }
+            return snapshot;
+        });
+    }
+
+    @Override
+    public void write(List<ExpenseMutation> batch) {
+        // later writes to the same row make the earlier ones redundant
+        Map<String, ExpenseMutation> expenseWrites = new LinkedHashMap<>();
+        Map<String, ExpenseMutation> budgetWrites = new LinkedHashMap<>();
+        for (ExpenseMutation mutation : batch) {
+            if (mutation.getType() == ExpenseMutation.Type.SET_PROJECT_BUDGET) {
+                budgetWrites.put(mutation.getProjectKey(), mutation);
+            } else {
+                expenseWrites.remove(mutation.getId());
+                expenseWrites.put(mutation.getId(), mutation);
+            }
+        }
+
+        List<String> deletes = new ArrayList<>();
+        Map<String, Budget> saves = new LinkedHashMap<>();
+        for (ExpenseMutation mutation : expenseWrites.values()) {
+            if (mutation.getType() == ExpenseMutation.Type.DELETE_EXPENSE) {
+                deletes.add(mutation.getId());
+            } else {
+                saves.put(mutation.getId(), mutation.getExpense());
+            }
+        }
+
+        ao.executeInTransaction(() -> {
+            for (List<String> ids : chunks(deletes)) {
+                ao.deleteWithSQL(ExpenseEntity.class, "EXPENSE_ID IN (" + placeholders(ids.size()) + ")", ids.toArray());
+            }
+            saveExpenses(saves);
+            saveProjectBudgets(budgetWrites);
+            return null;
+        });
+    }
+
+    @Override
+    public void compact(Supplier<ExpenseSnapshot> currentState) {
+        // the tables already are the snapshot
+    }
+
+    // compares every row with the store and fixes the ones that differ, are missing or shouldn't be there.
+    // this reads the whole tables, so it only runs after writes were dropped
+    @Override
+    public void reconcile(Supplier<ExpenseSnapshot> currentState) {
+        ExpenseSnapshot state = currentState.get();
+        int fixed = ao.executeInTransaction(() -> reconcileExpenses(state.getExpenses()) + reconcileProjectBudgets(state.getProjectBudgets()));
+        log.warn("Reconciled budget storage with the current state, {} rows fixed", fixed);
+    }
+
+    @Override
+    public void close() {
+    }
+
+    private int reconcileExpenses(Map<String, Budget> expenses) {
+        Map<String, Budget> missing = new LinkedHashMap<>(expenses);
+        List<ExpenseEntity> stale = new ArrayList<>();
+        int fixed = 0;
+        for (ExpenseEntity entity : ao.find(ExpenseEntity.class)) {
+            Budget budget = missing.remove(entity.getExpenseId());
+            if (budget == null) {
+                // deleted from the store, or a second row with the same id
+                stale.add(entity);
+            } else if (!gson.toJson(toBudget(entity)).equals(gson.toJson(budget))) {
+                copy(budget, entity);
+                fixed++;
+            }
+        }
+        if (!stale.isEmpty()) {
+            ao.delete(stale.toArray(new ExpenseEntity[0]));
+        }
+        List<Map<String, Object>> created = new ArrayList<>();
+        for (Budget budget : missing.values()) {
+            created.add(columnsOf(budget));
+        }
+        if (!created.isEmpty()) {
+            ao.create(ExpenseEntity.class, created);
+        }
+        return fixed + stale.size() + created.size();
+    }
+
+    private int reconcileProjectBudgets(Map<String, Double> projectBudgets) {
+        Map<String, Double> missing = new LinkedHashMap<>(projectBudgets);
+        List<ProjectBudgetEntity> stale = new ArrayList<>();
+        int fixed = 0;
+        for (ProjectBudgetEntity entity : ao.find(ProjectBudgetEntity.class)) {
+            Double totalBudget = missing.remove(entity.getProjectKey());
+            if (totalBudget == null) {
+                stale.add(entity);
+            } else if (totalBudget != entity.getTotalBudget()) {
+                entity.setTotalBudget(totalBudget);
+                entity.save();
+                fixed++;
+            }
+        }
+        if (!stale.isEmpty()) {
+            ao.delete(stale.toArray(new ProjectBudgetEntity[0]));
+        }
+        List<Map<String, Object>> created = new ArrayList<>();
+        for (Map.Entry<String, Double> entry : missing.entrySet()) {
+            created.add(projectBudgetColumns(entry.getKey(), entry.getValue()));
+        }
+        if (!created.isEmpty()) {
+            ao.create(ProjectBudgetEntity.class, created);
+        }
+        return fixed + stale.size() + created.size();
+    }
+
+    private void saveExpenses(Map<String, Budget> budgets) {
+        List<Map<String, Object>> created = new ArrayList<>();
+        for (List<String> ids : chunks(budgets.keySet())) {
+            Map<String, ExpenseEntity> existing = new HashMap<>();
+            for (ExpenseEntity entity : ao.find(ExpenseEntity.class,
+                    Query.select().where("EXPENSE_ID IN (" + placeholders(ids.size()) + ")", ids.toArray()))) {
+                existing.put(entity.getExpenseId(), entity);
+            }
+            for (String id : ids) {
+                Budget budget = budgets.get(id);
+                ExpenseEntity entity = existing.get(id);
+                if (entity == null) {
+                    created.add(columnsOf(budget));
+                    continue;
+                }
+                copy(budget, entity);
+            }
+        }
+        if (!created.isEmpty()) {
+            ao.create(ExpenseEntity.class, created);
+        }
+    }
+
+    private void copy(Budget budget, ExpenseEntity entity) {
+        entity.setProjectKey(budget.getProjectKey());
+        entity.setBudgetName(budget.getBudgetName());
+        entity.setBudgetCategory(budget.getBudgetCategory());
+        entity.setDescription(budget.getDescription());
+        entity.setAmount(budget.getAmount());
+        entity.setExpenseDate(budget.getDate());
+        entity.setIssueKey(budget.getIssueKey());
+        entity.setEpicKey(budget.getEpicKey());
+        entity.setSelectedIssues(selectedIssuesJson(budget));
+        entity.save();
+    }
+
+    private void saveProjectBudgets(Map<String, ExpenseMutation> budgetWrites) {
+        List<Map<String, Object>> created = new ArrayList<>();
+        for (List<String> projectKeys : chunks(budgetWrites.keySet())) {
+            Map<String, ProjectBudgetEntity> existing = new HashMap<>();
+            for (ProjectBudgetEntity entity : ao.find(ProjectBudgetEntity.class,
+                    Query.select().where("PROJECT_KEY IN (" + placeholders(projectKeys.size()) + ")", projectKeys.toArray()))) {
+                existing.put(entity.getProjectKey(), entity);
+            }
+            for (String projectKey : projectKeys) {
+                double totalBudget = budgetWrites.get(projectKey).getTotalBudget();
+                ProjectBudgetEntity entity = existing.get(projectKey);
+                if (entity == null) {
+                    created.add(projectBudgetColumns(projectKey, totalBudget));
+                    continue;
+                }
+                entity.setTotalBudget(totalBudget);
+                entity.save();
+            }
+        }
+        if (!created.isEmpty()) {
+            ao.create(ProjectBudgetEntity.class, created);
+        }
+    }
+
+    private Map<String, Object> columnsOf(Budget budget) {
+        Map<String, Object> columns = new HashMap<>();
+        columns.put("EXPENSE_ID", budget.getId());
+        columns.put("PROJECT_KEY", budget.getProjectKey());
+        columns.put("BUDGET_NAME", budget.getBudgetName());
+        columns.put("BUDGET_CATEGORY", budget.getBudgetCategory());
+        columns.put("DESCRIPTION", budget.getDescription());
+        columns.put("AMOUNT", budget.getAmount());
+        columns.put("EXPENSE_DATE", budget.getDate());
+        columns.put("ISSUE_KEY", budget.getIssueKey());
+        columns.put("EPIC_KEY", budget.getEpicKey());
+        columns.put("SELECTED_ISSUES", selectedIssuesJson(budget));
+        return columns;
+    }
+
+    private static Map<String, Object> projectBudgetColumns(String projectKey, double totalBudget) {
+        Map<String, Object> columns = new HashMap<>();
+        columns.put("PROJECT_KEY", projectKey);
+        columns.put("TOTAL_BUDGET", totalBudget);
+        return columns;
+    }
+
+    private String selectedIssuesJson(Budget budget) {
+        return budget.getSelectedIssues() != null ? gson.toJson(budget.getSelectedIssues(), ISSUE_LIST_TYPE) : null;
+    }
+
+    private static List<List<String>> chunks(Collection<String> values) {
+        List<String> list = new ArrayList<>(values);
+        List<List<String>> chunks = new ArrayList<>();
+        for (int from = 0; from < list.size(); from += IN_CHUNK) {
+            chunks.add(list.subList(from, Math.min(from + IN_CHUNK, list.size())));
+        }
+        return chunks;
+    }
+
+    private static String placeholders(int count) {
+        StringBuilder sql = new StringBuilder(count * 2);
+        for (int i = 0; i < count; i++) {
+            sql.append(i == 0 ? "?" : ",?");
+        }
+        return sql.toString();
+    }
+
+    private Budget toBudget(ExpenseEntity entity) {
+        Budget budget = new Budget();
+        budget.setId(entity.getExpenseId());
+        budget.setProjectKey(entity.getProjectKey());
+        budget.setBudgetName(entity.getBudgetName());
+        budget.setBudgetCategory(entity.getBudgetCategory());
+        budget.setDescription(entity.getDescription());
+        budget.setAmount(entity.getAmount());
+        budget.setDate(entity.getExpenseDate());
+        budget.setIssueKey(entity.getIssueKey());
+        budget.setEpicKey(entity.getEpicKey());
+        if (entity.getSelectedIssues() != null) {
+            budget.setSelectedIssues(gson.<List<Budget.Issue>>fromJson(entity.getSelectedIssues(), ISSUE_LIST_TYPE));
+        }
+        return budget;
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.jira.plugin.persistence;
+
+import com.atlassian.activeobjects.external.ActiveObjects;
+import com.atlassian.plugin.spring.scanner.annotation.imports.ComponentImport;
+import com.example.jira.plugin.metrics.BudgetMetricsMBean;
+import com.example.jira.plugin.service.AlertThresholdServiceSingleton;
+import com.example.jira.plugin.service.BudgetServiceSingleton;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+
+// picks the storage backend when the plugin is enabled and flushes it when it's disabled.
+// -Dbudget.tracker.storage=ao stores budgets in Active Objects tables, anything else uses
+// the embedded file store
+@Named
+public class BudgetStorageLifecycle implements InitializingBean, DisposableBean {
+    private static final String STORAGE_PROPERTY = "budget.tracker.storage";
+
+    private final ActiveObjects ao;
+
+    @Inject
+    public BudgetStorageLifecycle(@ComponentImport ActiveObjects ao) {
+        this.ao = ao;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        if ("ao".equalsIgnoreCase(System.getProperty(STORAGE_PROPERTY))) {
+            BudgetServiceSingleton.useRepository(new ActiveObjectsExpenseRepository(ao));
+        }
+        BudgetMetricsMBean.register();
+    }
+
+    @Override
+    public void destroy() {
+        BudgetMetricsMBean.unregister();
+        BudgetServiceSingleton.shutdown();
+        // after the budget service, whose last alert evaluations may still queue mail
+        AlertThresholdServiceSingleton.shutdown();
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.jira.plugin.persistence;
+
+import net.java.ao.Entity;
+import net.java.ao.schema.Indexed;
+import net.java.ao.schema.StringLength;
+import net.java.ao.schema.Table;
+
+@Table("EXPENSE")
+public interface ExpenseEntity extends Entity {
+    @Indexed
+    String getExpenseId();
+    void setExpenseId(String expenseId);
+
+    @Indexed
+    String getProjectKey();
+    void setProjectKey(String projectKey);
+
+    String getBudgetName();
+    void setBudgetName(String budgetName);
+
+    String getBudgetCategory();
+    void setBudgetCategory(String budgetCategory);
+
+    @StringLength(StringLength.UNLIMITED)
+    String getDescription();
+    void setDescription(String description);
+
+    double getAmount();
+    void setAmount(double amount);
+
+    String getExpenseDate();
+    void setExpenseDate(String expenseDate);
+
+    String getIssueKey();
+    void setIssueKey(String issueKey);
+
+    String getEpicKey();
+    void setEpicKey(String epicKey);
+
+    // selectedIssues as a JSON array
+    @StringLength(StringLength.UNLIMITED)
+    String getSelectedIssues();
+    void setSelectedIssues(String selectedIssues);
+}
@@ -0,0 +1,82 @@
+package com.example.jira.plugin.persistence;
+
+import com.example.jira.plugin.model.Budget;
+
+// one journaled write. mutations carry whole rows rather than deltas, so replaying a
+// suffix of the log over a newer snapshot still ends in the right state
+public class ExpenseMutation {
+    public enum Type {
+        SAVE_EXPENSE,
+        DELETE_EXPENSE,
+        SET_PROJECT_BUDGET
+    }
+
+    private Type type;
+    private Budget expense;
+    private String id;
+    private String projectKey;
+    private double totalBudget;
+
+    // for gson
+    ExpenseMutation() {
+    }
+
+    public static ExpenseMutation saveExpense(Budget expense) {
+        ExpenseMutation mutation = new ExpenseMutation();
+        mutation.type = Type.SAVE_EXPENSE;
+        mutation.expense = expense;
+        mutation.id = expense.getId();
+        mutation.projectKey = expense.getProjectKey();
+        return mutation;
+    }
+
+    public static ExpenseMutation deleteExpense(Budget expense) {
+        ExpenseMutation mutation = new ExpenseMutation();
+        mutation.type = Type.DELETE_EXPENSE;
+        mutation.id = expense.getId();
+        mutation.projectKey = expense.getProjectKey();
+        return mutation;
+    }
+
+    public static ExpenseMutation setProjectBudget(String projectKey, double totalBudget) {
+        ExpenseMutation mutation = new ExpenseMutation();
+        mutation.type = Type.SET_PROJECT_BUDGET;
+        mutation.projectKey = projectKey;
+        mutation.totalBudget = totalBudget;
+        return mutation;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public Budget getExpense() {
+        return expense;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getProjectKey() {
+        return projectKey;
+    }
+
+    public double getTotalBudget() {
+        return totalBudget;
+    }
+
+    public void applyTo(ExpenseSnapshot snapshot) {
+        switch (type) {
+            case SAVE_EXPENSE:
+                snapshot.getExpenses().put(id, expense);
+                break;
+            case DELETE_EXPENSE:
+                snapshot.getExpenses().remove(id);
+                break;
+            case SET_PROJECT_BUDGET:
+                snapshot.getProjectBudgets().put(projectKey, totalBudget);
+                break;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.jira.plugin.persistence;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+// storage SPI behind BudgetService. writes arrive in batches from WriteBehindWriter
+// and each batch should be committed as a unit (one fsync, one transaction)
+public interface ExpenseRepository {
+    // reads the persisted state at startup
+    ExpenseSnapshot load();
+
+    void write(List<ExpenseMutation> batch);
+
+    // called every few thousand writes so the repository can fold its log into a snapshot.
+    // currentState is only read once the repository is ready to take it
+    void compact(Supplier<ExpenseSnapshot> currentState);
+
+    // called after writes were dropped: whatever is persisted has to be brought in line with currentState
+    void reconcile(Supplier<ExpenseSnapshot> currentState);
+
+    void close();
+}
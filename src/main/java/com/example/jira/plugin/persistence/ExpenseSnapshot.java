@@ -0,0 +1,20 @@
+package com.example.jira.plugin.persistence;
+
+import com.example.jira.plugin.model.Budget;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// full persisted state: every expense row by id plus the total budget of each project
+public class ExpenseSnapshot {
+    private final Map<String, Budget> expenses = new LinkedHashMap<>();
+    private final Map<String, Double> projectBudgets = new LinkedHashMap<>();
+
+    public Map<String, Budget> getExpenses() {
+        return expenses;
+    }
+
+    public Map<String, Double> getProjectBudgets() {
+        return projectBudgets;
+    }
+}
@@ -0,0 +1,271 @@
+package com.example.jira.plugin.persistence;
+
+import com.example.jira.plugin.json.BudgetJson;
+import com.example.jira.plugin.model.Budget;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// embedded store: an append-only log of JSON lines plus periodic snapshots.
+//
+// snapshot-N.json holds everything written before expenses-N.log was opened, so
+// startup reads the newest snapshot and replays only the logs from generation N on.
+// each batch is appended and fsynced once
+public class FileExpenseRepository implements ExpenseRepository {
+    private static final Logger log = LoggerFactory.getLogger(FileExpenseRepository.class);
+    private static final Pattern SNAPSHOT_FILE = Pattern.compile("snapshot-(\\d+)\\.json");
+    private static final Pattern LOG_FILE = Pattern.compile("expenses-(\\d+)\\.log");
+
+    private final File directory;
+    private final Gson gson = BudgetJson.gson();
+    private long generation;
+    private FileOutputStream logStream;
+    private Writer logWriter;
+
+    public FileExpenseRepository(File directory) {
+        this.directory = directory;
+    }
+
+    @Override
+    public synchronized ExpenseSnapshot load() {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IllegalStateException("Cannot create budget data directory " + directory);
+        }
+
+        long snapshotGeneration = -1;
+        for (long candidate : generations(SNAPSHOT_FILE)) {
+            snapshotGeneration = Math.max(snapshotGeneration, candidate);
+        }
+
+        ExpenseSnapshot snapshot = snapshotGeneration >= 0
+                ? readSnapshot(snapshotFile(snapshotGeneration))
+                : new ExpenseSnapshot();
+
+        generation = Math.max(snapshotGeneration, 0);
+        for (long logGeneration : generations(LOG_FILE)) {
+            if (logGeneration >= snapshotGeneration) {
+                replayLog(logFile(logGeneration), snapshot);
+                generation = Math.max(generation, logGeneration);
+            }
+        }
+
+        openLog();
+        return snapshot;
+    }
+
+    @Override
+    public synchronized void write(List<ExpenseMutation> batch) {
+        try {
+            for (ExpenseMutation mutation : batch) {
+                logWriter.write(gson.toJson(mutation));
+                logWriter.write('\n');
+            }
+            logWriter.flush();
+            // one fsync per batch
+            logStream.getChannel().force(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to append to " + logFile(generation), e);
+        }
+    }
+
+    @Override
+    public synchronized void compact(Supplier<ExpenseSnapshot> currentState) {
+        // start a new log first, so every write in the old logs is already part of the state we read next
+        closeLog();
+        generation++;
+        openLog();
+
+        File target = snapshotFile(generation);
+        File temp = new File(directory, target.getName() + ".tmp");
+        try {
+            writeSnapshot(currentState.get(), temp);
+            Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write snapshot " + target, e);
+        }
+
+        for (long old : generations(SNAPSHOT_FILE)) {
+            if (old < generation) {
+                snapshotFile(old).delete();
+            }
+        }
+        for (long old : generations(LOG_FILE)) {
+            if (old < generation) {
+                logFile(old).delete();
+            }
+        }
+    }
+
+    // a snapshot of the current state covers everything the logs missed
+    @Override
+    public void reconcile(Supplier<ExpenseSnapshot> currentState) {
+        compact(currentState);
+    }
+
+    @Override
+    public synchronized void close() {
+        closeLog();
+    }
+
+    private ExpenseSnapshot readSnapshot(File file) {
+        ExpenseSnapshot snapshot = new ExpenseSnapshot();
+        try (JsonReader reader = new JsonReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if ("expenses".equals(name)) {
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        Budget budget = gson.fromJson(reader, Budget.class);
+                        snapshot.getExpenses().put(budget.getId(), budget);
+                    }
+                    reader.endArray();
+                } else if ("projectBudgets".equals(name)) {
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        snapshot.getProjectBudgets().put(reader.nextName(), reader.nextDouble());
+                    }
+                    reader.endObject();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        } catch (IOException | IllegalStateException | JsonParseException e) {
+            throw new IllegalStateException("Corrupt budget snapshot " + file, e);
+        }
+        return snapshot;
+    }
+
+    private void writeSnapshot(ExpenseSnapshot snapshot, File file) throws IOException {
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            JsonWriter writer = new JsonWriter(new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8)));
+            writer.beginObject();
+            writer.name("expenses").beginArray();
+            for (Budget budget : snapshot.getExpenses().values()) {
+                gson.toJson(budget, Budget.class, writer);
+            }
+            writer.endArray();
+            writer.name("projectBudgets").beginObject();
+            for (Map.Entry<String, Double> entry : snapshot.getProjectBudgets().entrySet()) {
+                writer.name(entry.getKey()).value(entry.getValue());
+            }
+            writer.endObject();
+            writer.endObject();
+            writer.flush();
+            out.getChannel().force(false);
+        }
+    }
+
+    private void replayLog(File file, ExpenseSnapshot snapshot) {
+        try {
+            // a line torn by a crash mid-append is cut off, so the next append starts on a line of its own
+            long complete = endOfLastLine(file);
+            if (complete < file.length()) {
+                log.warn("Dropping an incomplete entry at the end of {}", file);
+                try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                    raf.setLength(complete);
+                    raf.getChannel().force(false);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to repair " + file, e);
+        }
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                try {
+                    gson.fromJson(line, ExpenseMutation.class).applyTo(snapshot);
+                } catch (JsonParseException e) {
+                    // only a log written before torn lines were cut off can have one mid-file;
+                    // the lines after it are intact
+                    log.warn("Ignoring an incomplete entry in {}", file);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to replay " + file, e);
+        }
+    }
+
+    // the length of the file up to and including its last newline
+    private static long endOfLastLine(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            byte[] buffer = new byte[8192];
+            long end = raf.length();
+            while (end > 0) {
+                int length = (int) Math.min(buffer.length, end);
+                raf.seek(end - length);
+                raf.readFully(buffer, 0, length);
+                for (int i = length - 1; i >= 0; i--) {
+                    if (buffer[i] == '\n') {
+                        return end - length + i + 1;
+                    }
+                }
+                end -= length;
+            }
+            return 0;
+        }
+    }
+
+    private void openLog() {
+        try {
+            logStream = new FileOutputStream(logFile(generation), true);
+            logWriter = new BufferedWriter(new OutputStreamWriter(logStream, StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open " + logFile(generation), e);
+        }
+    }
+
+    private void closeLog() {
+        if (logWriter == null) {
+            return;
+        }
+        try {
+            logWriter.close();
+        } catch (IOException e) {
+            log.warn("Failed to close budget log", e);
+        }
+        logWriter = null;
+        logStream = null;
+    }
+
+    private List<Long> generations(Pattern pattern) {
+        List<Long> result = new ArrayList<>();
+        String[] names = directory.list();
+        if (names != null) {
+            for (String name : names) {
+                Matcher matcher = pattern.matcher(name);
+                if (matcher.matches()) {
+                    result.add(Long.parseLong(matcher.group(1)));
+                }
+            }
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    private File snapshotFile(long generation) {
+        return new File(directory, "snapshot-" + generation + ".json");
+    }
+
+    private File logFile(long generation) {
+        return new File(directory, "expenses-" + generation + ".log");
+    }
+}
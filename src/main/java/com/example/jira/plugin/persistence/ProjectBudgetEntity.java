@@ -0,0 +1,15 @@
+package com.example.jira.plugin.persistence;
+
+import net.java.ao.Entity;
+import net.java.ao.schema.Indexed;
+import net.java.ao.schema.Table;
+
+@Table("PROJECT_BUDGET")
+public interface ProjectBudgetEntity extends Entity {
+    @Indexed
+    String getProjectKey();
+    void setProjectKey(String projectKey);
+
+    double getTotalBudget();
+    void setTotalBudget(double totalBudget);
+}
@@ -0,0 +1,201 @@
+package com.example.jira.plugin.persistence;
+
+import com.example.jira.plugin.json.BudgetJson;
+import com.example.jira.plugin.model.Budget;
+import com.example.jira.plugin.store.ExpenseStoreListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+// journals store writes to an ExpenseRepository on a background thread. whatever queued
+// up while the previous batch was being written goes out as the next batch, so a burst of
+// expense entries costs one commit instead of one per entry
+public class WriteBehindWriter implements ExpenseStoreListener {
+    private static final Logger log = LoggerFactory.getLogger(WriteBehindWriter.class);
+    private static final int QUEUE_CAPACITY = 100_000;
+    private static final int MAX_BATCH_SIZE = 1_000;
+    private static final int COMPACT_EVERY = 10_000;
+    private static final long RETRY_DELAY_MILLIS = 1_000;
+    // a batch the repository still refuses after this many tries is logged and dropped, so
+    // one bad row or a long outage can't stall every later write behind it
+    private static final int MAX_ATTEMPTS = 30;
+    private static final long CLOSE_TIMEOUT_MILLIS = 10_000;
+
+    private final ExpenseRepository repository;
+    private final Supplier<ExpenseSnapshot> currentState;
+    private final BlockingQueue<ExpenseMutation> queue = new LinkedBlockingQueue<>(QUEUE_CAPACITY);
+    private final Thread thread;
+    private final Object progress = new Object();
+    private volatile boolean running = true;
+    // set when changes were dropped, so the repository is reconciled with the store's current state
+    private volatile boolean reconcileDue;
+    private long enqueued;
+    private long written;
+    private long writtenSinceCompaction;
+
+    public WriteBehindWriter(ExpenseRepository repository, Supplier<ExpenseSnapshot> currentState) {
+        this.repository = repository;
+        this.currentState = currentState;
+        this.thread = new Thread(this::run, "budget-tracker-write-behind");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    @Override
+    public void expenseSaved(Budget oldBudget, Budget newBudget) {
+        enqueue(ExpenseMutation.saveExpense(newBudget));
+    }
+
+    @Override
+    public void expenseRemoved(Budget budget) {
+        enqueue(ExpenseMutation.deleteExpense(budget));
+    }
+
+    @Override
+    public void projectBudgetSet(String projectKey, double totalBudget) {
+        enqueue(ExpenseMutation.setProjectBudget(projectKey, totalBudget));
+    }
+
+    // blocks until everything enqueued before the call has been written (or dropped), or the
+    // timeout passes. false if it timed out
+    public boolean flush(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (progress) {
+            long target = enqueued;
+            while (written < target && thread.isAlive()) {
+                long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remaining <= 0) {
+                    return false;
+                }
+                progress.wait(Math.min(remaining, 100));
+            }
+            return true;
+        }
+    }
+
+    // waits a bounded time for the queue to drain, then gives every batch still queued one
+    // last attempt, so disabling the plugin can't hang on a repository that keeps failing
+    public void close() {
+        try {
+            if (!flush(CLOSE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                log.warn("Budget storage is behind, closing with {} changes still queued", queue.size());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        running = false;
+        thread.interrupt();
+        try {
+            thread.join(RETRY_DELAY_MILLIS * 5);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (thread.isAlive()) {
+            log.error("Budget storage writer did not stop, {} changes may not be saved", queue.size());
+        }
+        repository.close();
+    }
+
+    private void enqueue(ExpenseMutation mutation) {
+        // the store calls us under the project lock, so the queue keeps per-project write order.
+        // a full queue means the repository is far behind; waiting for room would stall every
+        // writer to the project while it holds that lock, so the change is dropped instead
+        if (!queue.offer(mutation)) {
+            dropped(Collections.singletonList(mutation), "the write-behind queue is full", null);
+            return;
+        }
+        synchronized (progress) {
+            enqueued++;
+        }
+    }
+
+    // the changes are logged as the journal would have held them, so they can be replayed by hand.
+    // the repository gets them back when it's next reconciled with the store
+    private void dropped(List<ExpenseMutation> mutations, String reason, Exception cause) {
+        reconcileDue = true;
+        log.error("Dropping {} budget changes, {}: {}", mutations.size(), reason, BudgetJson.gson().toJson(mutations), cause);
+    }
+
+    private void run() {
+        List<ExpenseMutation> batch = new ArrayList<>(MAX_BATCH_SIZE);
+        while (running || !queue.isEmpty()) {
+            try {
+                ExpenseMutation first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    if (reconcileDue) {
+                        reconcile();
+                    }
+                    continue;
+                }
+                batch.add(first);
+            } catch (InterruptedException e) {
+                if (running) {
+                    continue;
+                }
+            }
+            queue.drainTo(batch, MAX_BATCH_SIZE - batch.size());
+            if (batch.isEmpty()) {
+                continue;
+            }
+
+            writeWithRetry(batch);
+            synchronized (progress) {
+                written += batch.size();
+                progress.notifyAll();
+            }
+            writtenSinceCompaction += batch.size();
+            batch.clear();
+
+            if (reconcileDue) {
+                reconcile();
+            } else if (writtenSinceCompaction >= COMPACT_EVERY) {
+                writtenSinceCompaction = 0;
+                try {
+                    repository.compact(currentState);
+                } catch (RuntimeException e) {
+                    log.error("Failed to compact budget storage", e);
+                }
+            }
+        }
+    }
+
+    // cleared first, so a drop while the store's state is being read triggers another round
+    private void reconcile() {
+        reconcileDue = false;
+        writtenSinceCompaction = 0;
+        try {
+            repository.reconcile(currentState);
+        } catch (RuntimeException e) {
+            reconcileDue = true;
+            log.error("Failed to reconcile budget storage with the current state", e);
+        }
+    }
+
+    private void writeWithRetry(List<ExpenseMutation> batch) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                repository.write(batch);
+                return;
+            } catch (RuntimeException e) {
+                if (attempt >= MAX_ATTEMPTS || !running) {
+                    dropped(batch, "the repository failed " + attempt + " times", e);
+                    return;
+                }
+                log.warn("Failed to write {} budget changes, retrying (attempt {} of {})",
+                        batch.size(), attempt, MAX_ATTEMPTS, e);
+                try {
+                    Thread.sleep(RETRY_DELAY_MILLIS);
+                } catch (InterruptedException interrupted) {
+                    // close() interrupts; the next attempt is the last one
+                }
+            }
+        }
+    }
+}
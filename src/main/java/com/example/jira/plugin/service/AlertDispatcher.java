@@ -0,0 +1,134 @@
+package com.example.jira.plugin.service;
+
+import com.example.jira.plugin.metrics.BudgetMetrics;
+import com.example.jira.plugin.metrics.LatencyHistogram;
+import com.example.jira.plugin.model.Budget;
+import com.example.jira.plugin.store.ExpenseStoreListener;
+import com.example.jira.plugin.stream.BudgetEventHub;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// evaluates alert thresholds off the request thread. a write only marks its project as
+// pending; one evaluation per project runs after a short window, however many writes
+// landed in it, so the pending work is bounded by the number of projects.
+// everything runs on a single thread, so a project is never evaluated twice at once
+public class AlertDispatcher implements ExpenseStoreListener {
+    private static final Logger log = LoggerFactory.getLogger(AlertDispatcher.class);
+    private static final LatencyHistogram evaluationLatency = BudgetMetrics.getInstance().histogram("alerts.evaluation");
+    private static final LongAdder evaluationFailures = BudgetMetrics.getInstance().counter("alerts.failures");
+    private static final long DEFAULT_WINDOW_MILLIS = 500;
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 5;
+
+    private final BudgetService budgetService;
+    private final AlertThresholdService alertThresholdService;
+    private final BudgetEventHub eventHub;
+    private final long windowMillis;
+    private final Set<String> pendingProjects = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "budget-tracker-alerts");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public AlertDispatcher(BudgetService budgetService, AlertThresholdService alertThresholdService, BudgetEventHub eventHub) {
+        this(budgetService, alertThresholdService, eventHub, DEFAULT_WINDOW_MILLIS);
+    }
+
+    public AlertDispatcher(BudgetService budgetService, AlertThresholdService alertThresholdService, BudgetEventHub eventHub,
+                           long windowMillis) {
+        this.budgetService = budgetService;
+        this.alertThresholdService = alertThresholdService;
+        this.eventHub = eventHub;
+        this.windowMillis = windowMillis;
+    }
+
+    @Override
+    public void expenseSaved(Budget oldBudget, Budget newBudget) {
+        projectChanged(newBudget.getProjectKey());
+        if (oldBudget != null && !oldBudget.getProjectKey().equals(newBudget.getProjectKey())) {
+            projectChanged(oldBudget.getProjectKey());
+        }
+    }
+
+    @Override
+    public void expenseRemoved(Budget budget) {
+        projectChanged(budget.getProjectKey());
+    }
+
+    @Override
+    public void expensesAdded(String projectKey, List<Budget> budgets) {
+        projectChanged(projectKey);
+    }
+
+    @Override
+    public void projectBudgetSet(String projectKey, double totalBudget) {
+        projectChanged(projectKey);
+    }
+
+    // the projects' spend at startup was alerted for before the restart, so it's only recorded.
+    // must run before the first write reaches the dispatcher
+    public void markAlerted(Collection<String> projectKeys) {
+        for (String projectKey : projectKeys) {
+            double totalBudget = budgetService.getTotalBudget(projectKey);
+            if (totalBudget > 0.0) {
+                alertThresholdService.markAlerted(projectKey, totalBudget, budgetService.getTotalExpenses(projectKey));
+            }
+        }
+    }
+
+    // runs the evaluations that are still waiting for their window, then stops the thread
+    public void close() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // called under the store's project lock, so it only records the project, and never throws
+    private void projectChanged(String projectKey) {
+        if (pendingProjects.add(projectKey) && !executor.isShutdown()) {
+            try {
+                executor.schedule(() -> evaluate(projectKey), windowMillis, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // shut down since the check above; the alert goes with it
+                pendingProjects.remove(projectKey);
+                log.debug("Dropping the budget alert check for {}, alerts are shut down", projectKey);
+            }
+        }
+    }
+
+    private void evaluate(String projectKey) {
+        // cleared before reading the totals, so a write from here on schedules a new evaluation
+        pendingProjects.remove(projectKey);
+        long start = System.nanoTime();
+        try {
+            double totalBudget = budgetService.getTotalBudget(projectKey);
+            if (totalBudget <= 0.0) {
+                // no budget set yet, nothing to measure the spend against
+                return;
+            }
+            double totalExpenses = budgetService.getTotalExpenses(projectKey);
+            List<Integer> crossed = alertThresholdService.checkThresholdsAndAlert(projectKey, totalBudget, totalExpenses);
+            if (!crossed.isEmpty()) {
+                eventHub.thresholdsCrossed(projectKey, crossed, totalExpenses / totalBudget * 100);
+            }
+        } catch (RuntimeException e) {
+            evaluationFailures.increment();
+            log.error("Failed to evaluate budget alerts for {}", projectKey, e);
+        } finally {
+            evaluationLatency.recordSince(start);
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.jira.plugin.service;
+
+import java.util.List;
+
+// who gets a project's budget alerts
+public interface AlertRecipients {
+    // the email addresses of the project's members in the alert role, empty if there are none
+    List<String> getEmailAddresses(String projectKey);
+}
@@ -6,5 +6,15 @@ public interface AlertThresholdService {
     List<Integer> getThresholds();
     void addThreshold(int threshold);
     void removeThreshold(int threshold);
-    void checkThresholdsAndAlert(String projectKey, double totalBudget, double currentExpenses);
+    // null when the project uses the global thresholds
+    List<Integer> getProjectThresholds(String projectKey);
+    void setProjectThresholds(String projectKey, List<Integer> thresholds);
+    void clearProjectThresholds(String projectKey);
+    // the project role whose members are sent the alerts
+    String getRecipientRole();
+    void setRecipientRole(String roleName);
+    // returns the levels newly crossed, each of which was alerted
+    List<Integer> checkThresholdsAndAlert(String projectKey, double totalBudget, double currentExpenses);
+    // records the levels the spend has reached as already alerted, without sending anything
+    void markAlerted(String projectKey, double totalBudget, double currentExpenses);
 }
\ No newline at end of file
@@ -1,85 +1,131 @@
 package com.example.jira.plugin.service;
 
-import com.atlassian.jira.component.ComponentAccessor;
-import com.atlassian.jira.project.Project;
-import com.atlassian.jira.project.ProjectManager;
-import com.atlassian.jira.security.roles.ProjectRoleManager;
-import com.atlassian.jira.security.roles.ProjectRole;
-import com.atlassian.jira.user.ApplicationUser;
-
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
-import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 public class AlertThresholdServiceImpl implements AlertThresholdService {
-    private static final List<Integer> thresholds = new ArrayList<>();
+    private static final String RECIPIENT_ROLE_PROPERTY = "budget.tracker.alerts.role";
+    private static final String DEFAULT_RECIPIENT_ROLE = "Project Manager";
+    // global levels, used by every project without its own
+    private static volatile ThresholdLevels thresholds = ThresholdLevels.EMPTY;
+    private static final ConcurrentMap<String, ThresholdLevels> projectThresholds = new ConcurrentHashMap<>();
+    // the project role whose members get the alerts
+    private static volatile String recipientRole = System.getProperty(RECIPIENT_ROLE_PROPERTY, DEFAULT_RECIPIENT_ROLE);
     private final EmailService emailService = new EmailService();
-    private int highestThresholdCrossed = 0;
+    private final AlertRecipients recipients;
+    // project key -> highest level that project has been alerted for and is still at or above
+    private final ConcurrentMap<String, Integer> highestThresholdCrossed = new ConcurrentHashMap<>();
+
+    public AlertThresholdServiceImpl(AlertRecipients recipients) {
+        this.recipients = recipients;
+    }
+
+    static String getRecipientRoleName() {
+        return recipientRole;
+    }
 
     @Override
     public List<Integer> getThresholds() {
-        return new ArrayList<>(thresholds);
+        return thresholds.toList();
     }
 
     @Override
     public void addThreshold(int threshold) {
-        if (!thresholds.contains(threshold)) {
-            thresholds.add(threshold);
-            thresholds.sort(Collections.reverseOrder());
+        synchronized (AlertThresholdServiceImpl.class) {
+            thresholds = thresholds.with(threshold);
         }
     }
 
     @Override
     public void removeThreshold(int threshold) {
-        thresholds.remove(Integer.valueOf(threshold));
+        synchronized (AlertThresholdServiceImpl.class) {
+            thresholds = thresholds.without(threshold);
+        }
     }
 
     @Override
-    public void checkThresholdsAndAlert(String projectKey, double totalBudget, double currentExpenses) {
-        double percentageSpent = (currentExpenses / totalBudget) * 100;
+    public List<Integer> getProjectThresholds(String projectKey) {
+        ThresholdLevels levels = projectThresholds.get(projectKey);
+        return levels != null ? levels.toList() : null;
+    }
 
-        // sort the thresholds in descending order (in case they were not sorted already)
-        thresholds.sort(Collections.reverseOrder());
+    @Override
+    public void setProjectThresholds(String projectKey, List<Integer> levels) {
+        projectThresholds.put(projectKey, ThresholdLevels.of(levels));
+    }
 
-        for (int threshold : thresholds) {
+    @Override
+    public void clearProjectThresholds(String projectKey) {
+        projectThresholds.remove(projectKey);
+    }
 
-            if (percentageSpent >= threshold && threshold > highestThresholdCrossed) {
-                sendAlertToProjectManagers(projectKey, threshold, percentageSpent, totalBudget, currentExpenses);
-                highestThresholdCrossed = threshold;
-            }
+    @Override
+    public String getRecipientRole() {
+        return recipientRole;
+    }
+
+    @Override
+    public void setRecipientRole(String roleName) {
+        recipientRole = roleName;
+        // only after the new name is visible, so a lookup can't cache the old role's members again
+        if (recipients instanceof CachingAlertRecipients) {
+            ((CachingAlertRecipients) recipients).invalidateAll();
         }
     }
 
-    private void sendAlertToProjectManagers(String projectKey, int threshold, double percentageSpent, double totalBudget, double currentExpenses) {
-        ProjectManager projectManager = ComponentAccessor.getProjectManager();
-        ProjectRoleManager projectRoleManager = ComponentAccessor.getComponentOfType(ProjectRoleManager.class);
-        Project project = projectManager.getProjectObjByKey(projectKey);
+    // sends any alert mail still waiting for its digest window
+    public void shutdown() {
+        emailService.close();
+    }
 
-        if (project == null) {
-            System.out.println("Project not found: " + projectKey);
-            return;
+    @Override
+    public List<Integer> checkThresholdsAndAlert(String projectKey, double totalBudget, double currentExpenses) {
+        double percentageSpent = (currentExpenses / totalBudget) * 100;
+        ThresholdLevels levels = projectThresholds.getOrDefault(projectKey, thresholds);
+
+        // the crossed level follows the spend down too, so a project that drops below a
+        // level after an update or delete is alerted again when it climbs back over it
+        List<Integer> crossedThresholds = new ArrayList<>();
+        highestThresholdCrossed.compute(projectKey, (key, alerted) -> {
+            int previous = alerted != null ? alerted : 0;
+            crossedThresholds.addAll(levels.reachedAbove(previous, percentageSpent));
+            int highest = levels.highestReached(percentageSpent);
+            return highest > 0 ? highest : null;
+        });
+
+        // mail is queued outside the lock so a slow role lookup doesn't block other writers
+        for (int threshold : crossedThresholds) {
+            sendAlertToRecipients(projectKey, threshold, percentageSpent, totalBudget, currentExpenses);
         }
+        return crossedThresholds;
+    }
+
+    @Override
+    public void markAlerted(String projectKey, double totalBudget, double currentExpenses) {
+        double percentageSpent = (currentExpenses / totalBudget) * 100;
+        ThresholdLevels levels = projectThresholds.getOrDefault(projectKey, thresholds);
+        highestThresholdCrossed.compute(projectKey, (key, alerted) -> {
+            int highest = levels.highestReached(percentageSpent);
+            return highest > 0 ? highest : null;
+        });
+    }
 
-        ProjectRole managerRole = projectRoleManager.getProjectRole("Project Manager");
-        if (managerRole == null) {
-            System.out.println("Project Manager role not found");
+    private void sendAlertToRecipients(String projectKey, int threshold, double percentageSpent, double totalBudget, double currentExpenses) {
+        List<String> emailAddresses = recipients.getEmailAddresses(projectKey);
+        if (emailAddresses.isEmpty()) {
             return;
         }
 
-        Set<ApplicationUser> projectManagers = projectRoleManager.getProjectRoleActors(managerRole, project).getApplicationUsers();
-
-        for (ApplicationUser manager : projectManagers) {
-            String emailAddress = manager.getEmailAddress();
-            if (emailAddress != null && !emailAddress.isEmpty()) {
-                String subject = "Budget Alert for Project " + projectKey;
-                String body = String.format("Alert: Project %s has reached %d%% of its budget.\n\n" +
-                                "Total Budget: $%.2f\n" +
-                                "Current Expenses: $%.2f\n" +
-                                "Percentage Spent: %.2f%%",
-                        projectKey, threshold, totalBudget, currentExpenses, percentageSpent);
-                emailService.sendEmail(emailAddress, subject, body);
-            }
+        String subject = "Budget Alert for Project " + projectKey;
+        String body = String.format("Alert: Project %s has reached %d%% of its budget.\n\n" +
+                        "Total Budget: $%.2f\n" +
+                        "Current Expenses: $%.2f\n" +
+                        "Percentage Spent: %.2f%%",
+                projectKey, threshold, totalBudget, currentExpenses, percentageSpent);
+        for (String emailAddress : emailAddresses) {
+            emailService.sendEmail(emailAddress, subject, body);
         }
     }
 }
@@ -1,11 +1,30 @@
 package com.example.jira.plugin.service;
+
+import com.example.jira.plugin.metrics.BudgetMetrics;
+
 public class AlertThresholdServiceSingleton {
     private static AlertThresholdService instance;
+    private static final CachingAlertRecipients recipients =
+            new CachingAlertRecipients(new JiraAlertRecipients(AlertThresholdServiceImpl::getRecipientRoleName));
     private AlertThresholdServiceSingleton() {}
     public static synchronized AlertThresholdService getInstance() {
         if ( instance == null) {
-            instance = new AlertThresholdServiceImpl();
+            instance = new AlertThresholdServiceImpl(recipients);
+            BudgetMetrics.getInstance().gauge("alerts.recipients", recipients::getStats);
         }
         return instance;
     }
+    // outlives service restarts; the Jira event listener invalidates it
+    public static CachingAlertRecipients getRecipients() {
+        return recipients;
+    }
+    public static synchronized void shutdown() {
+        if (instance instanceof AlertThresholdServiceImpl) {
+            ((AlertThresholdServiceImpl) instance).shutdown();
+        }
+        if (instance != null) {
+            BudgetMetrics.getInstance().removeGauge("alerts.recipients");
+        }
+        instance = null;
+    }
 }
\ No newline at end of file
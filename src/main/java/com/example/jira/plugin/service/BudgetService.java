@@ -1,23 +1,52 @@
-package com.example.jira.plugin.service;
-
-import com.atlassian.jira.issue.Issue;
-import com.example.jira.plugin.model.Budget;
-import java.util.List;
-import java.util.Map;
-
-public interface BudgetService {
-    List<Budget> getAllBudgets();
-    List<Budget> getProjectExpenses(String projectKey);
-    Budget createBudget(Budget budget);
-    double getRemainingBudget(String projectKey);
-    void setProjectBudget(String projectKey, double totalBudget);
-    Map<String, Object> getBudgetOverview(String projectKey);
-    List<Map<String, Object>> getExpensesByCategory(String projectKey);
-    List<Map<String, Object>> getExpensesByPhase(String projectKey);
-    List<Map<String, Object>> getCumulativeExpenses(String projectKey);
-    List<Budget> getExpensesForIssue(String issueKey);
-    double getTotalBudget(String projectKey);
-    double getTotalExpenses(String projectKey);
-    void deleteBudget(String id);
-    Budget updateBudget(Budget budget);
+package com.example.jira.plugin.service;
+
+import com.atlassian.jira.issue.Issue;
+import com.example.jira.plugin.hierarchy.IssueHierarchy;
+import com.example.jira.plugin.history.ExpenseChange;
+import com.example.jira.plugin.model.Budget;
+import com.example.jira.plugin.model.CumulativePoint;
+import com.example.jira.plugin.model.NamedAmount;
+import com.example.jira.plugin.store.ExpenseQuery;
+import com.example.jira.plugin.store.TimeBucket;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+public interface BudgetService {
+    List<Budget> getAllBudgets();
+    List<Budget> getProjectExpenses(String projectKey);
+    // lazily walks the matching rows of one project, or of all projects when projectKey is null,
+    // ordered by date and id. nothing is copied, so results can be streamed or paged
+    Iterable<Budget> queryExpenses(String projectKey, ExpenseQuery query);
+    Iterable<Budget> queryExpensesForIssue(String issueKey, ExpenseQuery query);
+    Budget createBudget(Budget budget);
+    // inserts all rows as one batch and checks thresholds once per affected project
+    List<Budget> createBudgets(List<Budget> budgets);
+    double getRemainingBudget(String projectKey);
+    void setProjectBudget(String projectKey, double totalBudget);
+    Map<String, Object> getBudgetOverview(String projectKey);
+    // the overview as it stood at asOf (epoch millis, inclusive). throws IllegalArgumentException
+    // for times before the history that's kept
+    Map<String, Object> getBudgetOverviewAt(String projectKey, long asOf);
+    // who changed the project's expenses and budget, when, and from what, oldest first
+    List<ExpenseChange> getExpenseHistory(String projectKey, long from, long to, int limit);
+    List<NamedAmount> getExpensesByCategory(String projectKey);
+    default List<NamedAmount> getExpensesByPhase(String projectKey) {
+        return getExpensesByPhase(projectKey, epic -> true);
+    }
+    // only the epics the caller may see; the hierarchy itself isn't filtered by user
+    List<NamedAmount> getExpensesByPhase(String projectKey, Predicate<IssueHierarchy.Epic> visible);
+    // one point per bucket with expenses; from and to are inclusive yyyy-MM-dd dates, either may be null
+    List<CumulativePoint> getCumulativeExpenses(String projectKey, TimeBucket granularity, String fromDate, String toDate);
+    // totals over all projects plus the topK furthest over budget, largest overrun first
+    Map<String, Object> getPortfolio(int topK);
+    List<Budget> getExpensesForIssue(String issueKey);
+    // changes with every write to the project's expenses or budget
+    long getProjectVersion(String projectKey);
+    double getTotalBudget(String projectKey);
+    double getTotalExpenses(String projectKey);
+    void deleteBudget(String id);
+    Budget updateBudget(Budget budget);
+    // verifies the running aggregates against the raw rows and rebuilds them if they differ
+    boolean checkAggregates();
 }
\ No newline at end of file
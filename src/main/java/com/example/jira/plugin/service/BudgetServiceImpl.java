@@ -1,302 +1,371 @@
-package com.example.jira.plugin.service;
-
-import com.atlassian.jira.user.ApplicationUser;
-import com.atlassian.jira.component.ComponentAccessor;
-import com.atlassian.jira.issue.Issue;
-import com.atlassian.jira.jql.parser.JqlQueryParser;
-import com.atlassian.jira.web.bean.PagerFilter;
-import com.atlassian.query.Query;
-import com.atlassian.jira.issue.search.SearchResults;
-import com.atlassian.jira.bc.issue.search.SearchService;
-import com.example.jira.plugin.model.Budget;
-import java.util.*;
-import java.util.stream.Collectors;
-
-
-public class BudgetServiceImpl implements BudgetService {
-    private List<Budget> budgets = new ArrayList<>();
-    private Map<String, Double> projectTotalBudgets = new HashMap<>();
-    private Map<String, Double> projectRemainingBudgets = new HashMap<>();
-    private AlertThresholdService alertThresholdService = new AlertThresholdServiceImpl();
-
-    @Override
-    public List<Budget> getAllBudgets() {
-        return new ArrayList<>(budgets);
-    }
-
-    @Override
-    public List<Budget> getProjectExpenses(String projectKey) {
-        return budgets.stream()
-                .filter(budget -> budget.getProjectKey().equals(projectKey))
-                .collect(Collectors.toList());
-    }
-
-    @Override
-    public Budget createBudget(Budget budget) {
-        budgets.add(budget);
-        updateRemainingBudget(budget.getProjectKey(), budget.getAmount());
-        // checking thresholds and send alerts
-        double totalBudget = projectTotalBudgets.getOrDefault(budget.getProjectKey(), 0.0);
-        double totalExpenses = budgets.stream()
-                .filter(b -> b.getProjectKey().equals(budget.getProjectKey()))
-                .mapToDouble(Budget::getAmount)
-                .sum();
-        alertThresholdService.checkThresholdsAndAlert(budget.getProjectKey(), totalBudget, totalExpenses);
-        return budget;
-    }
-
-    @Override
-    public void deleteBudget(String id) {
-        Budget budgetToRemove = budgets.stream()
-                .filter(b -> b.getId().equals(id))
-                .findFirst()
-                .orElseThrow(() -> new IllegalArgumentException("Budget not found"));
-
-        budgets.remove(budgetToRemove);
-        updateRemainingBudget(budgetToRemove.getProjectKey(), -budgetToRemove.getAmount());
-
-        // checking thresholds and send alerts
-        double totalBudget = projectTotalBudgets.getOrDefault(budgetToRemove.getProjectKey(), 0.0);
-        double totalExpenses = budgets.stream()
-                .filter(b -> b.getProjectKey().equals(budgetToRemove.getProjectKey()))
-                .mapToDouble(Budget::getAmount)
-                .sum();
-        alertThresholdService.checkThresholdsAndAlert(budgetToRemove.getProjectKey(), totalBudget, totalExpenses);
-    }
-
-    @Override
-    public Budget updateBudget(Budget updatedBudget) {
-        for (int i = 0; i < budgets.size(); i++) {
-            if (budgets.get(i).getId().equals(updatedBudget.getId())) {
-                Budget oldBudget = budgets.get(i);
-                budgets.set(i, updatedBudget);
-
-                double budgetDifference = updatedBudget.getAmount() - oldBudget.getAmount();
-                updateRemainingBudget(updatedBudget.getProjectKey(), budgetDifference);
-
-                // checking thresholds and send alerts
-                double totalBudget = projectTotalBudgets.getOrDefault(updatedBudget.getProjectKey(), 0.0);
-                double totalExpenses = budgets.stream()
-                        .filter(b -> b.getProjectKey().equals(updatedBudget.getProjectKey()))
-                        .mapToDouble(Budget::getAmount)
-                        .sum();
-                alertThresholdService.checkThresholdsAndAlert(updatedBudget.getProjectKey(), totalBudget, totalExpenses);
-
-                return updatedBudget;
-            }
-        }
-        return null;
-    }
-
-    @Override
-    public double getRemainingBudget(String projectKey) {
-        return projectRemainingBudgets.getOrDefault(projectKey, 0.0);
-    }
-
-    @Override
-    public void setProjectBudget(String projectKey, double totalBudget) {
-        projectTotalBudgets.put(projectKey, totalBudget);
-        projectRemainingBudgets.put(projectKey, totalBudget);
-    }
-
-    @Override
-    public Map<String, Object> getBudgetOverview(String projectKey) {
-        double totalBudget = projectTotalBudgets.getOrDefault(projectKey, 0.0);
-        double totalExpenses = budgets.stream()
-                .filter(b -> b.getProjectKey().equals(projectKey))
-                .mapToDouble(Budget::getAmount)
-                .sum();
-        double remainingBudget = projectRemainingBudgets.getOrDefault(projectKey, 0.0);
-
-        Map<String, Object> overview = new HashMap<>();
-        overview.put("totalBudget", totalBudget);
-        overview.put("totalExpenses", totalExpenses);
-        overview.put("remainingBudget", remainingBudget);
-
-        return overview;
-    }
-
-    @Override
-    public List<Map<String, Object>> getExpensesByCategory(String projectKey) {
-        Map<String, Double> categoryExpenses = budgets.stream()
-                .filter(b -> b.getProjectKey().equals(projectKey))
-                .collect(Collectors.groupingBy(
-                        Budget::getBudgetCategory,
-                        Collectors.summingDouble(Budget::getAmount)
-                ));
-
-        return categoryExpenses.entrySet().stream()
-                .map(entry -> {
-                    Map<String, Object> category = new HashMap<>();
-                    category.put("name", entry.getKey());
-                    category.put("value", entry.getValue());
-                    return category;
-                })
-                .collect(Collectors.toList());
-    }
-
-    @Override
-    public List<Map<String, Object>> getExpensesByPhase(String projectKey) {
-        // fetching all epics for the project
-        List<Issue> epics = getEpicsForProject(projectKey);
-
-        Map<String, Double> epicExpenses = new HashMap<>();
-
-        for (Issue epic : epics) {
-            double epicTotal = 0.0;
-
-            // then fetching all issues linked to this epic
-            List<Issue> epicIssues = getIssuesForEpic(epic.getKey());
-
-            Set<String> epicIssueKeys = new HashSet<>();
-            epicIssueKeys.add(epic.getKey());
-            epicIssueKeys.addAll(epicIssues.stream().map(Issue::getKey).collect(Collectors.toSet()));
-
-            epicTotal = budgets.stream()
-                    .filter(b -> b.getProjectKey().equals(projectKey) &&
-                            b.getSelectedIssues().stream()
-                                    .anyMatch(issue -> epicIssueKeys.contains(issue.getKey())))
-                    .mapToDouble(Budget::getAmount)
-                    .sum();
-
-            epicExpenses.put(epic.getSummary(), epicTotal);
-        }
-
-        return epicExpenses.entrySet().stream()
-                .map(entry -> {
-                    Map<String, Object> epicData = new HashMap<>();
-                    epicData.put("name", entry.getKey());
-                    epicData.put("value", entry.getValue());
-                    return epicData;
-                })
-                .collect(Collectors.toList());
-    }
-
-    private List<Issue> getEpicsForProject(String projectKey) {
-        JqlQueryParser jqlQueryParser = ComponentAccessor.getComponent(JqlQueryParser.class);
-        SearchService searchService = ComponentAccessor.getComponent(SearchService.class);
-        ApplicationUser user = ComponentAccessor.getJiraAuthenticationContext().getLoggedInUser();
-
-        try {
-            String jqlQuery = String.format("project = %s AND issuetype = Epic", projectKey);
-            Query query = jqlQueryParser.parseQuery(jqlQuery);
-
-            SearchService.ParseResult parseResult = searchService.parseQuery(user, query.getQueryString());
-
-            if (parseResult.isValid()) {
-                SearchResults<Issue> searchResult = searchService.search(user, parseResult.getQuery(), PagerFilter.getUnlimitedFilter());
-                return searchResult.getResults();
-            } else {
-                return new ArrayList<>();
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
-            return new ArrayList<>();
-        }
-    }
-
-    private List<Issue> getIssuesForEpic(String epicKey) {
-        JqlQueryParser jqlQueryParser = ComponentAccessor.getComponent(JqlQueryParser.class);
-        SearchService searchService = ComponentAccessor.getComponent(SearchService.class);
-        ApplicationUser user = ComponentAccessor.getJiraAuthenticationContext().getLoggedInUser();
-
-        try {
-            String jqlQuery = String.format("'Epic Link' = %s", epicKey);
-            Query query = jqlQueryParser.parseQuery(jqlQuery);
-
-            SearchService.ParseResult parseResult = searchService.parseQuery(user, query.getQueryString());
-
-            if (parseResult.isValid()) {
-                SearchResults<Issue> searchResult = searchService.search(user, parseResult.getQuery(), PagerFilter.getUnlimitedFilter());
-                return searchResult.getResults();
-            } else {
-                return new ArrayList<>();
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
-            return new ArrayList<>();
-        }
-    }
-
-    @Override
-    public List<Map<String, Object>> getCumulativeExpenses(String projectKey) {
-        List<Budget> projectBudgets = budgets.stream()
-                .filter(b -> b.getProjectKey().equals(projectKey))
-                .sorted(Comparator.comparing(Budget::getDate))
-                .collect(Collectors.toList());
-
-        double cumulativeTotal = 0.0;
-        List<Map<String, Object>> cumulativeExpenses = new ArrayList<>();
-
-        for (Budget budget : projectBudgets) {
-            cumulativeTotal += budget.getAmount();
-            Map<String, Object> point = new HashMap<>();
-            point.put("date", budget.getDate());
-            point.put("amount", cumulativeTotal);
-            cumulativeExpenses.add(point);
-        }
-
-        return cumulativeExpenses;
-    }
-
-    @Override
-    public List<Budget> getExpensesForIssue(String issueKey) {
-        System.out.println("getExpensesForIssue called for key: " + issueKey);
-
-        // checking if the issue is an epic
-        boolean isEpic = isEpic(issueKey);
-        Set<String> relatedIssueKeys = new HashSet<>();
-        relatedIssueKeys.add(issueKey);
-
-        if (isEpic) {
-            // if its an epic then get all related issues
-            relatedIssueKeys.addAll(getIssuesForEpic(issueKey).stream().map(Issue::getKey).collect(Collectors.toSet()));
-        }
-
-        List<Budget> result = budgets.stream()
-                .filter(budget -> budget.getSelectedIssues().stream()
-                        .anyMatch(issue -> relatedIssueKeys.contains(issue.getKey())))
-                .collect(Collectors.toList());
-
-        System.out.println("Found " + result.size() + " matching budgets");
-        return result;
-    }
-
-    private boolean isEpic(String issueKey) {
-        JqlQueryParser jqlQueryParser = ComponentAccessor.getComponent(JqlQueryParser.class);
-        SearchService searchService = ComponentAccessor.getComponent(SearchService.class);
-        ApplicationUser user = ComponentAccessor.getJiraAuthenticationContext().getLoggedInUser();
-
-        try {
-            String jqlQuery = String.format("key = %s AND issuetype = Epic", issueKey);
-            Query query = jqlQueryParser.parseQuery(jqlQuery);
-            SearchService.ParseResult parseResult = searchService.parseQuery(user, query.getQueryString());
-
-            if (parseResult.isValid()) {
-                SearchResults<Issue> searchResult = searchService.search(user, parseResult.getQuery(), PagerFilter.getUnlimitedFilter());
-                return !searchResult.getResults().isEmpty();
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-        return false;
-    }
-
-    @Override
-    public double getTotalBudget(String projectKey) {
-        return projectTotalBudgets.getOrDefault(projectKey, 0.0);
-    }
-
-    @Override
-    public double getTotalExpenses(String projectKey) {
-        return budgets.stream()
-                .filter(b -> b.getProjectKey().equals(projectKey))
-                .mapToDouble(Budget::getAmount)
-                .sum();
-    }
-
-    private void updateRemainingBudget(String projectKey, double amount) {
-        double remaining = projectRemainingBudgets.getOrDefault(projectKey, 0.0);
-        projectRemainingBudgets.put(projectKey, remaining - amount);
-    }
-}
+package com.example.jira.plugin.service;
+
+import com.example.jira.plugin.hierarchy.IssueHierarchy;
+import com.example.jira.plugin.hierarchy.JqlIssueHierarchy;
+import com.example.jira.plugin.history.ExpenseChange;
+import com.example.jira.plugin.history.ExpenseHistory;
+import com.example.jira.plugin.history.ProjectTotals;
+import com.example.jira.plugin.model.Budget;
+import com.example.jira.plugin.model.CumulativePoint;
+import com.example.jira.plugin.model.Money;
+import com.example.jira.plugin.model.NamedAmount;
+import com.example.jira.plugin.persistence.ExpenseRepository;
+import com.example.jira.plugin.persistence.ExpenseSnapshot;
+import com.example.jira.plugin.persistence.WriteBehindWriter;
+import com.example.jira.plugin.store.ExpenseQuery;
+import com.example.jira.plugin.store.ExpenseStore;
+import com.example.jira.plugin.store.PortfolioSummary;
+import com.example.jira.plugin.store.ProjectAggregates;
+import com.example.jira.plugin.store.TimeBucket;
+import com.example.jira.plugin.store.TimeSeriesPoint;
+import com.example.jira.plugin.stream.BudgetEventHub;
+import java.io.File;
+import java.time.Instant;
+import java.util.*;
+import java.util.function.Predicate;
+
+
+// thread-safe: all mutable state lives in ExpenseStore, which stripes its write locks by project
+public class BudgetServiceImpl implements BudgetService {
+    private final ExpenseStore expenseStore = new ExpenseStore();
+    private final IssueHierarchy issueHierarchy;
+    private final BudgetEventHub eventHub = new BudgetEventHub(expenseStore);
+    private final ExpenseHistory history;
+    private final AlertDispatcher alertDispatcher;
+    private final WriteBehindWriter writer;
+
+    // in-memory only, nothing survives a restart
+    public BudgetServiceImpl() {
+        this(new JqlIssueHierarchy());
+    }
+
+    public BudgetServiceImpl(IssueHierarchy issueHierarchy) {
+        this.issueHierarchy = issueHierarchy;
+        this.history = new ExpenseHistory(expenseStore, null, () -> null);
+        expenseStore.addListener(history);
+        this.alertDispatcher = startAlertDispatcher();
+        this.writer = null;
+    }
+
+    // the change history is kept in memory only
+    public BudgetServiceImpl(ExpenseRepository repository, IssueHierarchy issueHierarchy) {
+        this(repository, null, issueHierarchy);
+    }
+
+    // loads the persisted state, then journals every change to the repository in the background.
+    // the change history goes to historyDirectory, with the Jira user who made each change
+    public BudgetServiceImpl(ExpenseRepository repository, File historyDirectory, IssueHierarchy issueHierarchy) {
+        this.issueHierarchy = issueHierarchy;
+        ExpenseSnapshot snapshot = repository.load();
+        for (Budget budget : snapshot.getExpenses().values()) {
+            expenseStore.add(budget);
+        }
+        for (Map.Entry<String, Double> projectBudget : snapshot.getProjectBudgets().entrySet()) {
+            expenseStore.setTotalBudget(projectBudget.getKey(), projectBudget.getValue());
+        }
+        this.writer = new WriteBehindWriter(repository, this::currentState);
+        expenseStore.addListener(writer);
+        this.history = historyDirectory != null
+                ? new ExpenseHistory(expenseStore, historyDirectory, ExpenseHistory::currentJiraUser)
+                : new ExpenseHistory(expenseStore, null, () -> null);
+        expenseStore.addListener(history);
+        // attached after loading, so restoring the stored rows doesn't re-send old alerts, and
+        // told which levels the loaded spend has reached, so the next write doesn't either
+        this.alertDispatcher = startAlertDispatcher();
+        alertDispatcher.markAlerted(expenseStore.getProjectKeys());
+    }
+
+    // writes out anything still queued and closes the repository
+    public void shutdown() {
+        expenseStore.removeListener(eventHub);
+        eventHub.close();
+        expenseStore.removeListener(alertDispatcher);
+        alertDispatcher.close();
+        expenseStore.removeListener(history);
+        history.close();
+        if (writer != null) {
+            expenseStore.removeListener(writer);
+            writer.close();
+        }
+    }
+
+    // live updates for the dashboards streaming a project
+    public BudgetEventHub getEventHub() {
+        return eventHub;
+    }
+
+    // threshold checks follow every write to the store, without the request thread waiting on them.
+    // streams are told about writes first, alerts go out after the dispatcher's window
+    private AlertDispatcher startAlertDispatcher() {
+        expenseStore.addListener(eventHub);
+        AlertDispatcher dispatcher = new AlertDispatcher(this, AlertThresholdServiceSingleton.getInstance(), eventHub);
+        expenseStore.addListener(dispatcher);
+        return dispatcher;
+    }
+
+    private ExpenseSnapshot currentState() {
+        ExpenseSnapshot snapshot = new ExpenseSnapshot();
+        for (Budget budget : expenseStore.getAll()) {
+            snapshot.getExpenses().put(budget.getId(), budget);
+        }
+        for (String projectKey : expenseStore.getProjectKeys()) {
+            ProjectAggregates aggregates = expenseStore.getAggregates(projectKey);
+            if (aggregates != null && aggregates.getTotalBudget() != 0.0) {
+                snapshot.getProjectBudgets().put(projectKey, aggregates.getTotalBudget());
+            }
+        }
+        return snapshot;
+    }
+
+    @Override
+    public List<Budget> getAllBudgets() {
+        return expenseStore.getAll();
+    }
+
+    @Override
+    public List<Budget> getProjectExpenses(String projectKey) {
+        return expenseStore.getProjectExpenses(projectKey);
+    }
+
+    @Override
+    public Iterable<Budget> queryExpenses(String projectKey, ExpenseQuery query) {
+        return expenseStore.query(projectKey, query);
+    }
+
+    @Override
+    public Iterable<Budget> queryExpensesForIssue(String issueKey, ExpenseQuery query) {
+        return expenseStore.queryIssues(relatedIssueKeys(issueKey), query);
+    }
+
+    @Override
+    public Budget createBudget(Budget budget) {
+        expenseStore.add(budget);
+        return budget;
+    }
+
+    @Override
+    public List<Budget> createBudgets(List<Budget> budgets) {
+        expenseStore.addAll(budgets);
+        return budgets;
+    }
+
+    @Override
+    public void deleteBudget(String id) {
+        Budget budgetToRemove = expenseStore.remove(id);
+        if (budgetToRemove == null) {
+            throw new IllegalArgumentException("Budget not found");
+        }
+    }
+
+    @Override
+    public Budget updateBudget(Budget updatedBudget) {
+        Budget oldBudget = expenseStore.replace(updatedBudget);
+        if (oldBudget == null) {
+            return null;
+        }
+        return updatedBudget;
+    }
+
+    @Override
+    public double getRemainingBudget(String projectKey) {
+        ProjectAggregates aggregates = expenseStore.getAggregates(projectKey);
+        return aggregates != null ? aggregates.getRemainingBudget() : 0.0;
+    }
+
+    @Override
+    public void setProjectBudget(String projectKey, double totalBudget) {
+        expenseStore.setTotalBudget(projectKey, totalBudget);
+    }
+
+    @Override
+    public Map<String, Object> getBudgetOverview(String projectKey) {
+        ProjectAggregates aggregates = expenseStore.getAggregates(projectKey);
+
+        Map<String, Object> overview = new HashMap<>();
+        overview.put("totalBudget", aggregates != null ? aggregates.getTotalBudget() : 0.0);
+        overview.put("totalExpenses", aggregates != null ? aggregates.getTotalExpenses() : 0.0);
+        overview.put("remainingBudget", aggregates != null ? aggregates.getRemainingBudget() : 0.0);
+
+        return overview;
+    }
+
+    @Override
+    public Map<String, Object> getBudgetOverviewAt(String projectKey, long asOf) {
+        ProjectTotals totals = history.getTotalsAt(projectKey, asOf);
+
+        Map<String, Object> overview = new HashMap<>();
+        overview.put("totalBudget", totals.getTotalBudget());
+        overview.put("totalExpenses", totals.getTotalExpenses());
+        overview.put("remainingBudget", totals.getRemainingBudget());
+        overview.put("asOf", Instant.ofEpochMilli(asOf).toString());
+
+        return overview;
+    }
+
+    @Override
+    public List<ExpenseChange> getExpenseHistory(String projectKey, long from, long to, int limit) {
+        return history.getChanges(projectKey, from, to, limit);
+    }
+
+    @Override
+    public List<NamedAmount> getExpensesByCategory(String projectKey) {
+        ProjectAggregates aggregates = expenseStore.getAggregates(projectKey);
+        if (aggregates == null) {
+            return new ArrayList<>();
+        }
+
+        List<NamedAmount> categoryExpenses = new ArrayList<>(aggregates.getCategoryTotals().size());
+        for (Map.Entry<String, ProjectAggregates.CategoryTotal> entry : aggregates.getCategoryTotals().entrySet()) {
+            categoryExpenses.add(new NamedAmount(entry.getKey(), entry.getValue().getSum()));
+        }
+        return categoryExpenses;
+    }
+
+    @Override
+    public List<NamedAmount> getExpensesByPhase(String projectKey, Predicate<IssueHierarchy.Epic> visible) {
+        // fetching all epics for the project, then all their children in one batched lookup
+        List<IssueHierarchy.Epic> epics = new ArrayList<>();
+        for (IssueHierarchy.Epic epic : issueHierarchy.getEpics(projectKey)) {
+            if (visible.test(epic)) {
+                epics.add(epic);
+            }
+        }
+        List<String> epicKeys = new ArrayList<>(epics.size());
+        for (IssueHierarchy.Epic epic : epics) {
+            epicKeys.add(epic.getKey());
+        }
+        Map<String, Set<String>> childKeys = issueHierarchy.getChildKeys(epicKeys);
+
+        // every issue an expense can be linked to, mapped to the epic it rolls up to (an epic rolls up to itself)
+        Map<String, Integer> epicByIssue = new HashMap<>();
+        for (int epic = 0; epic < epics.size(); epic++) {
+            Set<String> children = childKeys.get(epicKeys.get(epic));
+            if (children != null) {
+                for (String childKey : children) {
+                    epicByIssue.put(childKey, epic);
+                }
+            }
+        }
+        for (int epic = 0; epic < epics.size(); epic++) {
+            epicByIssue.put(epicKeys.get(epic), epic);
+        }
+
+        // one pass over the project's expenses; an expense linked to several issues
+        // of the same epic still only counts once towards it
+        Money[] epicTotals = expenseStore.sumByIssueGroup(projectKey, epicByIssue, epics.size());
+
+        // one slice per epic summary; epics that share a summary show the last one's total
+        Map<String, Integer> sliceBySummary = new HashMap<>();
+        List<NamedAmount> phaseExpenses = new ArrayList<>(epics.size());
+        for (int epic = 0; epic < epics.size(); epic++) {
+            String summary = epics.get(epic).getSummary();
+            NamedAmount slice = new NamedAmount(summary, epicTotals[epic].toDouble());
+            Integer existing = sliceBySummary.putIfAbsent(summary, phaseExpenses.size());
+            if (existing == null) {
+                phaseExpenses.add(slice);
+            } else {
+                phaseExpenses.set(existing, slice);
+            }
+        }
+        return phaseExpenses;
+    }
+
+    @Override
+    public List<CumulativePoint> getCumulativeExpenses(String projectKey, TimeBucket granularity, String fromDate, String toDate) {
+        List<TimeSeriesPoint> series = expenseStore.getCumulativeSeries(projectKey, granularity, fromDate, toDate);
+        List<CumulativePoint> cumulativeExpenses = new ArrayList<>(series.size());
+
+        for (TimeSeriesPoint seriesPoint : series) {
+            cumulativeExpenses.add(new CumulativePoint(seriesPoint.getDate(), seriesPoint.getCumulative().toDouble(),
+                    seriesPoint.getAmount().toDouble(), seriesPoint.getCount()));
+        }
+
+        return cumulativeExpenses;
+    }
+
+    @Override
+    public Map<String, Object> getPortfolio(int topK) {
+        PortfolioSummary summary = expenseStore.getPortfolio(topK);
+
+        List<Map<String, Object>> topOverruns = new ArrayList<>(summary.getTopOverruns().size());
+        for (PortfolioSummary.ProjectOverrun overrun : summary.getTopOverruns()) {
+            Map<String, Object> project = new LinkedHashMap<>();
+            project.put("projectKey", overrun.getProjectKey());
+            project.put("totalBudget", overrun.getAggregates().getTotalBudget());
+            project.put("totalExpenses", overrun.getAggregates().getTotalExpenses());
+            project.put("remainingBudget", overrun.getAggregates().getRemainingBudget());
+            project.put("percentUsed", overrun.getPercentUsed());
+            project.put("overrun", overrun.getOverrun());
+            topOverruns.add(project);
+        }
+
+        Map<String, Object> portfolio = new LinkedHashMap<>();
+        portfolio.put("projectCount", summary.getProjectCount());
+        portfolio.put("totalBudget", summary.getTotalBudget());
+        portfolio.put("totalExpenses", summary.getTotalExpenses());
+        portfolio.put("remainingBudget", summary.getRemainingBudget());
+        portfolio.put("percentUsed", summary.getPercentUsed());
+        portfolio.put("overBudgetCount", summary.getOverBudgetCount());
+        portfolio.put("topOverruns", topOverruns);
+        return portfolio;
+    }
+
+    @Override
+    public List<Budget> getExpensesForIssue(String issueKey) {
+        List<Budget> result = new ArrayList<>();
+        for (Budget budget : expenseStore.queryIssues(relatedIssueKeys(issueKey), new ExpenseQuery())) {
+            result.add(budget);
+        }
+        return result;
+    }
+
+    private Set<String> relatedIssueKeys(String issueKey) {
+        // checking if the issue is an epic
+        if (!issueHierarchy.isEpic(issueKey)) {
+            return Collections.singleton(issueKey);
+        }
+
+        // if its an epic then get all related issues
+        Set<String> relatedIssueKeys = new HashSet<>(issueHierarchy.getChildKeys(issueKey));
+        relatedIssueKeys.add(issueKey);
+        return relatedIssueKeys;
+    }
+
+    @Override
+    public long getProjectVersion(String projectKey) {
+        return expenseStore.getVersion(projectKey);
+    }
+
+    @Override
+    public double getTotalBudget(String projectKey) {
+        ProjectAggregates aggregates = expenseStore.getAggregates(projectKey);
+        return aggregates != null ? aggregates.getTotalBudget() : 0.0;
+    }
+
+    @Override
+    public double getTotalExpenses(String projectKey) {
+        ProjectAggregates aggregates = expenseStore.getAggregates(projectKey);
+        return aggregates != null ? aggregates.getTotalExpenses() : 0.0;
+    }
+
+    @Override
+    public boolean checkAggregates() {
+        if (expenseStore.verifyAggregates()) {
+            return true;
+        }
+        expenseStore.rebuildAggregates();
+        return false;
+    }
+
+    // expenses held in memory per project, for the store size gauge
+    public Map<String, Integer> getExpenseCounts() {
+        Map<String, Integer> counts = new TreeMap<>();
+        for (String projectKey : expenseStore.getProjectKeys()) {
+            ProjectAggregates aggregates = expenseStore.getAggregates(projectKey);
+            if (aggregates != null) {
+                counts.put(projectKey, aggregates.getExpenseCount());
+            }
+        }
+        return counts;
+    }
+}
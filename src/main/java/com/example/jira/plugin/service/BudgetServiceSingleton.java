@@ -0,0 +1,79 @@
+package com.example.jira.plugin.service;
+
+import com.atlassian.jira.component.ComponentAccessor;
+import com.atlassian.jira.config.util.JiraHome;
+import com.example.jira.plugin.hierarchy.CachingIssueHierarchy;
+import com.example.jira.plugin.hierarchy.JqlIssueHierarchy;
+import com.example.jira.plugin.metrics.BudgetMetrics;
+import com.example.jira.plugin.persistence.ExpenseRepository;
+import com.example.jira.plugin.persistence.FileExpenseRepository;
+import com.example.jira.plugin.stream.BudgetEventHub;
+import com.example.jira.plugin.suggest.IssueSuggestions;
+import com.example.jira.plugin.suggest.JiraIssueSource;
+
+import java.io.File;
+
+// one BudgetService per plugin, shared by every REST resource instance
+public class BudgetServiceSingleton {
+    private static BudgetServiceImpl instance;
+    private static ExpenseRepository repository;
+    private static final CachingIssueHierarchy issueHierarchy = new CachingIssueHierarchy(new JqlIssueHierarchy());
+    private static final IssueSuggestions issueSuggestions = new IssueSuggestions(new JiraIssueSource());
+    private BudgetServiceSingleton() {}
+
+    public static synchronized BudgetService getInstance() {
+        if (instance == null) {
+            BudgetServiceImpl service = new BudgetServiceImpl(repository != null ? repository : defaultRepository(),
+                    new File(dataDirectory(), "history"), issueHierarchy);
+            BudgetMetrics.getInstance().gauge("store.expenses", service::getExpenseCounts);
+            BudgetMetrics.getInstance().gauge("hierarchy.cache", issueHierarchy::getStats);
+            BudgetMetrics.getInstance().gauge("suggest.indexes", issueSuggestions::getStats);
+            instance = service;
+        }
+        return instance;
+    }
+
+    public static synchronized BudgetEventHub getEventHub() {
+        getInstance();
+        return instance.getEventHub();
+    }
+
+    // has to run before the first getInstance(), i.e. while the plugin is enabling
+    public static synchronized void useRepository(ExpenseRepository expenseRepository) {
+        if (instance != null) {
+            throw new IllegalStateException("Budget service already started");
+        }
+        repository = expenseRepository;
+    }
+
+    // outlives service restarts; the issue event listener invalidates it
+    public static CachingIssueHierarchy getIssueHierarchy() {
+        return issueHierarchy;
+    }
+
+    // likewise, kept current by the issue event listener
+    public static IssueSuggestions getIssueSuggestions() {
+        return issueSuggestions;
+    }
+
+    public static synchronized void shutdown() {
+        if (instance != null) {
+            BudgetMetrics.getInstance().removeGauge("store.expenses");
+            BudgetMetrics.getInstance().removeGauge("hierarchy.cache");
+            BudgetMetrics.getInstance().removeGauge("suggest.indexes");
+            instance.shutdown();
+            instance = null;
+        }
+        repository = null;
+    }
+
+    // embedded file store under <jira-home>/data/budget-tracker
+    private static ExpenseRepository defaultRepository() {
+        return new FileExpenseRepository(dataDirectory());
+    }
+
+    // the change history lives here too, whichever repository holds the expenses
+    private static File dataDirectory() {
+        return new File(ComponentAccessor.getComponent(JiraHome.class).getDataDirectory(), "budget-tracker");
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.jira.plugin.service;
+
+import com.example.jira.plugin.cache.ExpiringLruCache;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// keeps each project's alert recipients in memory, so a bulk change that crosses thresholds in
+// many projects doesn't go to the permission system once per alert. project role and user
+// events invalidate it, the TTL catches whatever no event reports
+public class CachingAlertRecipients implements AlertRecipients {
+    private static final int DEFAULT_MAX_PROJECTS = 10_000;
+    private static final long DEFAULT_TTL_MINUTES = 15;
+
+    private final AlertRecipients delegate;
+    private final ExpiringLruCache<String, List<String>> byProject;
+
+    public CachingAlertRecipients(AlertRecipients delegate) {
+        this(delegate, DEFAULT_MAX_PROJECTS, TimeUnit.MINUTES.toMillis(DEFAULT_TTL_MINUTES));
+    }
+
+    public CachingAlertRecipients(AlertRecipients delegate, int maxProjects, long ttlMillis) {
+        this.delegate = delegate;
+        this.byProject = new ExpiringLruCache<>(maxProjects, TimeUnit.MILLISECONDS.toNanos(ttlMillis));
+    }
+
+    @Override
+    public List<String> getEmailAddresses(String projectKey) {
+        return byProject.get(projectKey,
+                key -> Collections.unmodifiableList(new ArrayList<>(delegate.getEmailAddresses(key))));
+    }
+
+    // the project's role members changed
+    public void projectRolesChanged(String projectKey) {
+        byProject.invalidate(projectKey);
+    }
+
+    // a user or group changed, or the alert role itself did
+    public void invalidateAll() {
+        byProject.clear();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("hits", byProject.hits());
+        stats.put("misses", byProject.misses());
+        stats.put("size", byProject.size());
+        return stats;
+    }
+}
@@ -1,39 +1,137 @@
-package com.example.jira.plugin.service;
-
-import com.atlassian.jira.component.ComponentAccessor;
-import com.atlassian.mail.Email;
-import com.atlassian.mail.queue.SingleMailQueueItem;
-import com.atlassian.mail.server.SMTPMailServer;
-
-public class EmailService {
-    public void sendEmail(String to, String subject, String body) {
-        try {
-            System.out.println("Preparing to send email to: " + to);
-            System.out.println("Subject: " + subject);
-            System.out.println("Body: " + body);
-
-            Email email = new Email(to);
-            email.setSubject(subject);
-            email.setBody(body);
-
-            SMTPMailServer mailServer = ComponentAccessor.getMailServerManager().getDefaultSMTPMailServer();
-            if (mailServer == null) {
-                throw new RuntimeException("No default SMTP mail server configured.");
-            }
-
-            String fromAddress = mailServer.getDefaultFrom();
-            email.setFrom(fromAddress);
-
-            System.out.println("From: " + fromAddress);
-
-            // jira mail queue, might switch to direct sending
-            SingleMailQueueItem item = new SingleMailQueueItem(email);
-            ComponentAccessor.getMailQueue().addItem(item);
-
-            System.out.println("Email queued successfully for: " + to);
-        } catch (Exception e) {
-            System.out.println("Failed to queue email: " + e.getMessage());
-            e.printStackTrace();
-        }
-    }
-}
+package com.example.jira.plugin.service;
+
+import com.example.jira.plugin.metrics.BudgetMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+// sends alert mail. in digest mode (the default) alerts are held for a window, then each
+// recipient gets one message covering all of theirs and the messages go out as one
+// batch; -Dbudget.tracker.mail.digestSeconds=0 sends every alert right away
+public class EmailService {
+    private static final Logger log = LoggerFactory.getLogger(EmailService.class);
+    private static final LongAdder alertsQueued = BudgetMetrics.getInstance().counter("mail.alertsQueued");
+    private static final LongAdder messagesSent = BudgetMetrics.getInstance().counter("mail.messagesSent");
+    private static final LongAdder sendFailures = BudgetMetrics.getInstance().counter("mail.failures");
+    private static final String DIGEST_PROPERTY = "budget.tracker.mail.digestSeconds";
+    private static final long DEFAULT_DIGEST_SECONDS = 60;
+    private static final String SINK_PROPERTY = "budget.tracker.mail";
+
+    private final MailSink mailSink;
+    private final long digestMillis;
+    private final ConcurrentMap<String, List<MailMessage>> pendingByRecipient = new ConcurrentHashMap<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private ScheduledExecutorService executor;
+
+    public EmailService() {
+        this("memory".equalsIgnoreCase(System.getProperty(SINK_PROPERTY)) ? new InMemoryMailSink() : new JiraMailSink(),
+                TimeUnit.SECONDS.toMillis(Long.getLong(DIGEST_PROPERTY, DEFAULT_DIGEST_SECONDS)));
+    }
+
+    public EmailService(MailSink mailSink, long digestMillis) {
+        this.mailSink = mailSink;
+        this.digestMillis = digestMillis;
+    }
+
+    public MailSink getMailSink() {
+        return mailSink;
+    }
+
+    public void sendEmail(String to, String subject, String body) {
+        MailMessage message = new MailMessage(to, subject, body);
+        alertsQueued.increment();
+        if (digestMillis <= 0) {
+            submit(Collections.singletonList(message));
+            return;
+        }
+
+        pendingByRecipient.compute(to, (recipient, pending) -> {
+            List<MailMessage> messages = pending != null ? pending : new ArrayList<>();
+            messages.add(message);
+            return messages;
+        });
+        // the first alert after a flush starts the next window
+        if (flushScheduled.compareAndSet(false, true)) {
+            schedule(() -> {
+                flushScheduled.set(false);
+                flushAll();
+            });
+        }
+    }
+
+    // sends everything still held back, then stops the digest thread
+    public void close() {
+        ScheduledExecutorService running;
+        synchronized (this) {
+            running = executor;
+            executor = null;
+        }
+        if (running != null) {
+            running.shutdownNow();
+        }
+        flushScheduled.set(false);
+        flushAll();
+    }
+
+    public void flushAll() {
+        List<MailMessage> digests = new ArrayList<>();
+        for (String recipient : new ArrayList<>(pendingByRecipient.keySet())) {
+            MailMessage digest = takeDigest(recipient);
+            if (digest != null) {
+                digests.add(digest);
+            }
+        }
+        submit(digests);
+    }
+
+    private MailMessage takeDigest(String recipient) {
+        List<MailMessage> messages = pendingByRecipient.remove(recipient);
+        if (messages == null || messages.isEmpty()) {
+            return null;
+        }
+        if (messages.size() == 1) {
+            return messages.get(0);
+        }
+        StringBuilder body = new StringBuilder();
+        for (MailMessage message : messages) {
+            if (body.length() > 0) {
+                body.append("\n\n----------------------------------------\n\n");
+            }
+            body.append(message.getSubject()).append("\n\n").append(message.getBody());
+        }
+        return new MailMessage(recipient, "Budget Alerts: " + messages.size() + " notifications", body.toString());
+    }
+
+    private void submit(List<MailMessage> messages) {
+        if (messages.isEmpty()) {
+            return;
+        }
+        try {
+            mailSink.submit(messages);
+            messagesSent.add(messages.size());
+            log.debug("Queued {} budget alert email(s)", messages.size());
+        } catch (Exception e) {
+            sendFailures.add(messages.size());
+            log.error("Failed to queue {} budget alert email(s)", messages.size(), e);
+        }
+    }
+
+    private synchronized void schedule(Runnable flush) {
+        if (executor == null) {
+            executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "budget-tracker-mail");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        executor.schedule(flush, digestMillis, TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.jira.plugin.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// keeps every message instead of sending it; for exercising the alert and digest paths
+// without an SMTP server. -Dbudget.tracker.mail=memory switches the plugin over to it
+public class InMemoryMailSink implements MailSink {
+    private final List<MailMessage> messages = new ArrayList<>();
+    private int batches;
+
+    @Override
+    public synchronized void submit(List<MailMessage> batch) {
+        messages.addAll(batch);
+        batches++;
+    }
+
+    public synchronized List<MailMessage> getMessages() {
+        return new ArrayList<>(messages);
+    }
+
+    public synchronized int getBatchCount() {
+        return batches;
+    }
+
+    public synchronized void clear() {
+        messages.clear();
+        batches = 0;
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.jira.plugin.service;
+
+import com.atlassian.jira.component.ComponentAccessor;
+import com.atlassian.jira.project.Project;
+import com.atlassian.jira.security.roles.ProjectRole;
+import com.atlassian.jira.security.roles.ProjectRoleManager;
+import com.atlassian.jira.user.ApplicationUser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+
+// the members of a project role, straight from Jira's permission system. the role name is
+// read on every lookup, so changing the setting applies to the next alert
+public class JiraAlertRecipients implements AlertRecipients {
+    private static final Logger log = LoggerFactory.getLogger(JiraAlertRecipients.class);
+
+    private final Supplier<String> roleName;
+
+    public JiraAlertRecipients(Supplier<String> roleName) {
+        this.roleName = roleName;
+    }
+
+    @Override
+    public List<String> getEmailAddresses(String projectKey) {
+        Project project = ComponentAccessor.getProjectManager().getProjectObjByKey(projectKey);
+        if (project == null) {
+            log.warn("Project not found: {}", projectKey);
+            return Collections.emptyList();
+        }
+
+        ProjectRoleManager projectRoleManager = ComponentAccessor.getComponentOfType(ProjectRoleManager.class);
+        String name = roleName.get();
+        ProjectRole role = projectRoleManager.getProjectRole(name);
+        if (role == null) {
+            log.warn("{} role not found", name);
+            return Collections.emptyList();
+        }
+
+        List<String> emailAddresses = new ArrayList<>();
+        for (ApplicationUser user : projectRoleManager.getProjectRoleActors(role, project).getApplicationUsers()) {
+            String emailAddress = user.getEmailAddress();
+            if (emailAddress != null && !emailAddress.isEmpty()) {
+                emailAddresses.add(emailAddress);
+            }
+        }
+        return emailAddresses;
+    }
+}
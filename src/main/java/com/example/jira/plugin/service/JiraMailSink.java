@@ -0,0 +1,45 @@
+package com.example.jira.plugin.service;
+
+import com.atlassian.jira.component.ComponentAccessor;
+import com.atlassian.mail.Email;
+import com.atlassian.mail.queue.MailQueue;
+import com.atlassian.mail.queue.SingleMailQueueItem;
+import com.atlassian.mail.server.SMTPMailServer;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// queues messages on Jira's mail queue. the default SMTP server is looked up once and
+// reused for a few minutes instead of on every message
+public class JiraMailSink implements MailSink {
+    private static final long SERVER_CACHE_NANOS = TimeUnit.MINUTES.toNanos(5);
+
+    private SMTPMailServer mailServer;
+    private long mailServerLoadedAt;
+
+    @Override
+    public void submit(List<MailMessage> messages) {
+        String fromAddress = mailServer().getDefaultFrom();
+        MailQueue mailQueue = ComponentAccessor.getMailQueue();
+        for (MailMessage message : messages) {
+            Email email = new Email(message.getTo());
+            email.setSubject(message.getSubject());
+            email.setBody(message.getBody());
+            email.setFrom(fromAddress);
+
+            // jira mail queue, might switch to direct sending
+            mailQueue.addItem(new SingleMailQueueItem(email));
+        }
+    }
+
+    private synchronized SMTPMailServer mailServer() {
+        if (mailServer == null || System.nanoTime() - mailServerLoadedAt > SERVER_CACHE_NANOS) {
+            mailServer = ComponentAccessor.getMailServerManager().getDefaultSMTPMailServer();
+            mailServerLoadedAt = System.nanoTime();
+        }
+        if (mailServer == null) {
+            throw new RuntimeException("No default SMTP mail server configured.");
+        }
+        return mailServer;
+    }
+}
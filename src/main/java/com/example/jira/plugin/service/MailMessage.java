@@ -0,0 +1,25 @@
+package com.example.jira.plugin.service;
+
+public final class MailMessage {
+    private final String to;
+    private final String subject;
+    private final String body;
+
+    public MailMessage(String to, String subject, String body) {
+        this.to = to;
+        this.subject = subject;
+        this.body = body;
+    }
+
+    public String getTo() {
+        return to;
+    }
+
+    public String getSubject() {
+        return subject;
+    }
+
+    public String getBody() {
+        return body;
+    }
+}
@@ -0,0 +1,8 @@
+package com.example.jira.plugin.service;
+
+import java.util.List;
+
+// where EmailService hands off finished messages
+public interface MailSink {
+    void submit(List<MailMessage> messages);
+}
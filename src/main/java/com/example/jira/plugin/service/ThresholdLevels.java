@@ -0,0 +1,95 @@
+package com.example.jira.plugin.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// an immutable, ascending set of alert percentages. finding the levels a spend has
+// reached is a binary search, so checks never sort or scan the whole list
+final class ThresholdLevels {
+    static final ThresholdLevels EMPTY = new ThresholdLevels(new int[0]);
+
+    private final int[] levels;
+
+    private ThresholdLevels(int[] levels) {
+        this.levels = levels;
+    }
+
+    static ThresholdLevels of(List<Integer> thresholds) {
+        return new ThresholdLevels(thresholds.stream().mapToInt(Integer::intValue).distinct().sorted().toArray());
+    }
+
+    ThresholdLevels with(int threshold) {
+        int index = Arrays.binarySearch(levels, threshold);
+        if (index >= 0) {
+            return this;
+        }
+        int insertAt = -index - 1;
+        int[] updated = new int[levels.length + 1];
+        System.arraycopy(levels, 0, updated, 0, insertAt);
+        updated[insertAt] = threshold;
+        System.arraycopy(levels, insertAt, updated, insertAt + 1, levels.length - insertAt);
+        return new ThresholdLevels(updated);
+    }
+
+    ThresholdLevels without(int threshold) {
+        int index = Arrays.binarySearch(levels, threshold);
+        if (index < 0) {
+            return this;
+        }
+        int[] updated = new int[levels.length - 1];
+        System.arraycopy(levels, 0, updated, 0, index);
+        System.arraycopy(levels, index + 1, updated, index, levels.length - index - 1);
+        return new ThresholdLevels(updated);
+    }
+
+    boolean isEmpty() {
+        return levels.length == 0;
+    }
+
+    // the highest level at or below the percentage, or 0 if none is
+    int highestReached(double percentage) {
+        int count = countAtOrBelow(percentage);
+        return count > 0 ? levels[count - 1] : 0;
+    }
+
+    // levels above the one already alerted that the percentage has now reached, highest first
+    List<Integer> reachedAbove(int alreadyAlerted, double percentage) {
+        int from = countAtOrBelow(alreadyAlerted);
+        int to = countAtOrBelow(percentage);
+        List<Integer> reached = new ArrayList<>(Math.max(0, to - from));
+        for (int i = to - 1; i >= from; i--) {
+            reached.add(levels[i]);
+        }
+        return reached;
+    }
+
+    // highest first, the order the threshold endpoints have always returned
+    List<Integer> toList() {
+        List<Integer> thresholds = new ArrayList<>(levels.length);
+        for (int i = levels.length - 1; i >= 0; i--) {
+            thresholds.add(levels[i]);
+        }
+        return thresholds;
+    }
+
+    // number of levels <= percentage
+    private int countAtOrBelow(double percentage) {
+        if (Double.isNaN(percentage)) {
+            return 0;
+        }
+        // every level is an int, so level <= percentage exactly when level <= floor(percentage)
+        long bound = (long) Math.floor(Math.min(percentage, Integer.MAX_VALUE));
+        int low = 0;
+        int high = levels.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (levels[mid] <= bound) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
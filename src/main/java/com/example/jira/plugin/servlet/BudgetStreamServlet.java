@@ -0,0 +1,49 @@
+package com.example.jira.plugin.servlet;
+
+import com.atlassian.jira.component.ComponentAccessor;
+import com.example.jira.plugin.service.BudgetServiceSingleton;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+// GET /plugins/servlet/budget/stream/{projectKey}: a text/event-stream of the project's changes,
+// for EventSource. the request goes async and is handed to the BudgetEventHub, so an open
+// stream doesn't hold a request thread
+public class BudgetStreamServlet extends HttpServlet {
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        if (ComponentAccessor.getJiraAuthenticationContext().getLoggedInUser() == null) {
+            resp.sendError(HttpServletResponse.SC_UNAUTHORIZED);
+            return;
+        }
+
+        String pathInfo = req.getPathInfo();
+        String projectKey = pathInfo != null ? pathInfo.replaceAll("^/+|/+$", "") : "";
+        if (projectKey.isEmpty() || projectKey.contains("/")) {
+            resp.sendError(HttpServletResponse.SC_BAD_REQUEST, "Project key is required");
+            return;
+        }
+        if (!req.isAsyncSupported()) {
+            resp.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Streaming is not available, poll the REST resources instead");
+            return;
+        }
+
+        resp.setContentType("text/event-stream");
+        resp.setCharacterEncoding("UTF-8");
+        resp.setHeader("Cache-Control", "no-cache, no-transform");
+        // keeps reverse proxies like nginx from buffering the stream
+        resp.setHeader("X-Accel-Buffering", "no");
+
+        AsyncContext context = req.startAsync();
+        // the stream stays open until the client leaves or the plugin stops
+        context.setTimeout(0);
+        if (!BudgetServiceSingleton.getEventHub().subscribe(projectKey, context)) {
+            resp.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            context.complete();
+        }
+    }
+}
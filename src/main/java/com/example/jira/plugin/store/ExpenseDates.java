@@ -0,0 +1,108 @@
+package com.example.jira.plugin.store;
+
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+
+// expense dates as an epoch day plus milliseconds into that (UTC) day, and back. the
+// client sends either yyyy-MM-dd or an ISO instant with milliseconds; both are rebuilt
+// exactly from the numbers, any other spelling keeps its original string
+final class ExpenseDates {
+    static final int NO_DAY = Integer.MIN_VALUE;
+
+    static final byte FORMAT_NONE = 0;
+    static final byte FORMAT_DAY = 1;
+    static final byte FORMAT_INSTANT = 2;
+    static final byte FORMAT_RAW = 3;
+
+    private static final long MILLIS_PER_DAY = 86_400_000L;
+
+    private ExpenseDates() {}
+
+    // epoch day in the high 32 bits, millis of day in the low 32; NO_DAY if the date can't be read
+    static long parse(String date) {
+        if (date == null) {
+            return pack(NO_DAY, 0);
+        }
+        try {
+            if (date.length() == 10) {
+                return pack(Math.toIntExact(LocalDate.parse(date).toEpochDay()), 0);
+            }
+            return packInstant(date.endsWith("Z") ? Instant.parse(date) : OffsetDateTime.parse(date).toInstant());
+        } catch (DateTimeException | ArithmeticException e) {
+            // fall through to the date prefix
+        }
+        try {
+            return pack(Math.toIntExact(LocalDate.parse(date.substring(0, Math.min(10, date.length()))).toEpochDay()), 0);
+        } catch (DateTimeException | ArithmeticException e) {
+            return pack(NO_DAY, 0);
+        }
+    }
+
+    // parses a yyyy-MM-dd query bound
+    static int parseDay(String date) {
+        try {
+            return Math.toIntExact(LocalDate.parse(date).toEpochDay());
+        } catch (DateTimeException | ArithmeticException e) {
+            throw new IllegalArgumentException("Invalid date " + date);
+        }
+    }
+
+    static int epochDay(long packed) {
+        return (int) (packed >> 32);
+    }
+
+    static int millisOfDay(long packed) {
+        return (int) packed;
+    }
+
+    // which spelling rebuilds the original string exactly
+    static byte formatOf(String date, int epochDay, int millisOfDay) {
+        if (date == null) {
+            return FORMAT_NONE;
+        }
+        if (epochDay != NO_DAY) {
+            if (millisOfDay == 0 && date.equals(format(epochDay, millisOfDay, FORMAT_DAY))) {
+                return FORMAT_DAY;
+            }
+            if (date.equals(format(epochDay, millisOfDay, FORMAT_INSTANT))) {
+                return FORMAT_INSTANT;
+            }
+        }
+        return FORMAT_RAW;
+    }
+
+    static String format(int epochDay, int millisOfDay, byte format) {
+        if (format == FORMAT_NONE || format == FORMAT_RAW) {
+            return null;
+        }
+        String day = LocalDate.ofEpochDay(epochDay).toString();
+        if (format == FORMAT_DAY) {
+            return day;
+        }
+        StringBuilder instant = new StringBuilder(24).append(day).append('T');
+        appendPadded(instant, millisOfDay / 3_600_000, 2).append(':');
+        appendPadded(instant, millisOfDay / 60_000 % 60, 2).append(':');
+        appendPadded(instant, millisOfDay / 1_000 % 60, 2).append('.');
+        appendPadded(instant, millisOfDay % 1_000, 3).append('Z');
+        return instant.toString();
+    }
+
+    private static long packInstant(Instant instant) {
+        long millis = instant.toEpochMilli();
+        return pack(Math.toIntExact(Math.floorDiv(millis, MILLIS_PER_DAY)), (int) Math.floorMod(millis, MILLIS_PER_DAY));
+    }
+
+    private static long pack(int epochDay, int millisOfDay) {
+        return ((long) epochDay << 32) | (millisOfDay & 0xffffffffL);
+    }
+
+    private static StringBuilder appendPadded(StringBuilder builder, int value, int width) {
+        String digits = Integer.toString(value);
+        for (int i = digits.length(); i < width; i++) {
+            builder.append('0');
+        }
+        return builder.append(digits);
+    }
+}
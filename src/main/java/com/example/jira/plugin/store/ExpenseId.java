@@ -0,0 +1,67 @@
+package com.example.jira.plugin.store;
+
+import java.util.UUID;
+
+// an expense id as two longs. ids the plugin generates are canonical UUID strings and
+// fit exactly; anything else (imported ids) is kept as the original string
+final class ExpenseId implements Comparable<ExpenseId> {
+    private final long high;
+    private final long low;
+    private final String raw;
+
+    private ExpenseId(long high, long low, String raw) {
+        this.high = high;
+        this.low = low;
+        this.raw = raw;
+    }
+
+    static ExpenseId of(String id) {
+        if (id == null) {
+            throw new IllegalArgumentException("Expense id is required");
+        }
+        if (id.length() == 36 && id.charAt(8) == '-') {
+            try {
+                UUID uuid = UUID.fromString(id);
+                // fromString is lenient about case and padding, only take ids that print back the same
+                if (uuid.toString().equals(id)) {
+                    return new ExpenseId(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), null);
+                }
+            } catch (IllegalArgumentException e) {
+                // not a UUID after all
+            }
+        }
+        return new ExpenseId(0, 0, id);
+    }
+
+    @Override
+    public String toString() {
+        return raw != null ? raw : new UUID(high, low).toString();
+    }
+
+    // same order as comparing the id strings: canonical UUIDs are fixed-width lowercase hex
+    @Override
+    public int compareTo(ExpenseId other) {
+        if (raw == null && other.raw == null) {
+            int byHigh = Long.compareUnsigned(high, other.high);
+            return byHigh != 0 ? byHigh : Long.compareUnsigned(low, other.low);
+        }
+        return toString().compareTo(other.toString());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ExpenseId)) {
+            return false;
+        }
+        ExpenseId other = (ExpenseId) o;
+        return raw == null ? other.raw == null && high == other.high && low == other.low : raw.equals(other.raw);
+    }
+
+    @Override
+    public int hashCode() {
+        return raw != null ? raw.hashCode() : Long.hashCode(high * 31 + low);
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.jira.plugin.store;
+
+import com.example.jira.plugin.model.Budget;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+// sort key of the date indexes: expense day and time of day, then id to break ties.
+// rows without a readable date sort first
+public final class ExpenseKey implements Comparable<ExpenseKey> {
+    private static final char CURSOR_SEPARATOR = ':';
+
+    private final int epochDay;
+    private final int millisOfDay;
+    // null only in range bounds, where it sorts before every id on the same instant
+    private final ExpenseId id;
+
+    ExpenseKey(int epochDay, int millisOfDay, ExpenseId id) {
+        this.epochDay = epochDay;
+        this.millisOfDay = millisOfDay;
+        this.id = id;
+    }
+
+    public static ExpenseKey of(Budget budget) {
+        return of(budget.getDate(), ExpenseId.of(budget.getId()));
+    }
+
+    static ExpenseKey of(String date, ExpenseId id) {
+        long packed = ExpenseDates.parse(date);
+        return new ExpenseKey(ExpenseDates.epochDay(packed), ExpenseDates.millisOfDay(packed), id);
+    }
+
+    // the first key of a day, for date range bounds
+    static ExpenseKey startOfDay(int epochDay) {
+        return new ExpenseKey(epochDay, Integer.MIN_VALUE, null);
+    }
+
+    int getEpochDay() {
+        return epochDay;
+    }
+
+    int getMillisOfDay() {
+        return millisOfDay;
+    }
+
+    ExpenseId getId() {
+        return id;
+    }
+
+    // opaque token for keyset pagination
+    public String toCursor() {
+        String raw = epochDay + "" + CURSOR_SEPARATOR + millisOfDay + CURSOR_SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static ExpenseKey fromCursor(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split(String.valueOf(CURSOR_SEPARATOR), 3);
+            if (parts.length != 3) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            return new ExpenseKey(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]), ExpenseId.of(parts[2]));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+
+    @Override
+    public int compareTo(ExpenseKey other) {
+        if (epochDay != other.epochDay) {
+            return Integer.compare(epochDay, other.epochDay);
+        }
+        if (millisOfDay != other.millisOfDay) {
+            return Integer.compare(millisOfDay, other.millisOfDay);
+        }
+        if (id == null || other.id == null) {
+            return id == other.id ? 0 : id == null ? -1 : 1;
+        }
+        return id.compareTo(other.id);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ExpenseKey)) {
+            return false;
+        }
+        ExpenseKey other = (ExpenseKey) o;
+        return epochDay == other.epochDay && millisOfDay == other.millisOfDay
+                && (id == null ? other.id == null : id.equals(other.id));
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * epochDay + millisOfDay) + (id != null ? id.hashCode() : 0);
+    }
+}
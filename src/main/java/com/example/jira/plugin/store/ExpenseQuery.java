@@ -0,0 +1,93 @@
+package com.example.jira.plugin.store;
+
+import com.example.jira.plugin.model.Money;
+
+import java.util.Collections;
+import java.util.Currency;
+import java.util.NavigableMap;
+
+// filters and keyset position for the paged expense endpoints. category and date range
+// pick an index and a range of it, the amount range is checked on the rows in that range
+public class ExpenseQuery {
+    private String category;
+    private Integer fromDay;
+    private Integer toDay;
+    private Double minAmount;
+    private Double maxAmount;
+    private ExpenseKey after;
+    private boolean descending;
+
+    public String getCategory() {
+        return category;
+    }
+
+    public ExpenseQuery setCategory(String category) {
+        this.category = category;
+        return this;
+    }
+
+    // inclusive, yyyy-MM-dd
+    public ExpenseQuery setFromDate(String fromDate) {
+        this.fromDay = fromDate != null ? ExpenseDates.parseDay(fromDate) : null;
+        return this;
+    }
+
+    // inclusive, yyyy-MM-dd
+    public ExpenseQuery setToDate(String toDate) {
+        this.toDay = toDate != null ? ExpenseDates.parseDay(toDate) : null;
+        return this;
+    }
+
+    public ExpenseQuery setMinAmount(Double minAmount) {
+        this.minAmount = minAmount;
+        return this;
+    }
+
+    public ExpenseQuery setMaxAmount(Double maxAmount) {
+        this.maxAmount = maxAmount;
+        return this;
+    }
+
+    // continue after the row this cursor points at
+    public ExpenseQuery setCursor(String cursor) {
+        this.after = cursor != null ? ExpenseKey.fromCursor(cursor) : null;
+        return this;
+    }
+
+    public ExpenseQuery setDescending(boolean descending) {
+        this.descending = descending;
+        return this;
+    }
+
+    // lazily walks the matching part of a date-ordered index, starting after the cursor
+    Iterable<ExpenseRow> select(NavigableMap<ExpenseKey, ExpenseRow> index, Currency currency) {
+        NavigableMap<ExpenseKey, ExpenseRow> range = index;
+        if (fromDay != null && toDay != null) {
+            if (fromDay > toDay) {
+                return Collections.emptyList();
+            }
+            range = range.subMap(ExpenseKey.startOfDay(fromDay), true, ExpenseKey.startOfDay(toDay + 1), false);
+        } else if (fromDay != null) {
+            range = range.tailMap(ExpenseKey.startOfDay(fromDay), true);
+        } else if (toDay != null) {
+            // rows without a readable date sort first, keep them out of a date range
+            range = range.subMap(ExpenseKey.startOfDay(ExpenseDates.NO_DAY + 1), true, ExpenseKey.startOfDay(toDay + 1), false);
+        }
+        if (descending) {
+            range = range.descendingMap();
+        }
+        if (after != null) {
+            range = range.tailMap(after, false);
+        }
+        if (minAmount == null && maxAmount == null) {
+            return range.values();
+        }
+        NavigableMap<ExpenseKey, ExpenseRow> selected = range;
+        return () -> selected.values().stream().filter(row -> matchesAmount(Money.toAmount(row.amount, currency))).iterator();
+    }
+
+    private boolean matchesAmount(double amount) {
+        return (minAmount == null || amount >= minAmount)
+                && (maxAmount == null || amount <= maxAmount);
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.jira.plugin.store;
+
+import com.example.jira.plugin.model.Budget;
+import com.example.jira.plugin.model.Money;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Currency;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+
+// how ExpenseStore holds an expense: the few strings every row repeats (project, category,
+// issue type) as dictionary codes, the date and id as numbers (in the key), the amount in
+// minor units. issue keys and summaries are nearly unique per issue, so they stay plain
+// strings, shared with a live row linking the same issue where there is one, so the copies
+// go away with the rows. a dictionary of them would only grow. the per-row totalBudget/remainingBudget
+// echoes are dropped, the project aggregates own those numbers. converted back to a Budget
+// only when a caller reads it
+final class ExpenseRow {
+    final ExpenseKey key;
+    final int project;
+    final int category;
+    final String issueKey;
+    final String epicKey;
+    final byte dateFormat;
+    // only kept when the date isn't one of the spellings ExpenseDates rebuilds
+    final String rawDate;
+    // minor units, see Money
+    final long amount;
+    final String name;
+    final String description;
+    // linked issues as (key, summary) pairs, null when the budget had no selectedIssues list at all
+    final String[] issues;
+    // the linked issues' type codes, one per pair
+    final int[] issueTypes;
+
+    private ExpenseRow(ExpenseKey key, int project, int category, String issueKey, String epicKey, byte dateFormat,
+                       String rawDate, long amount, String name, String description, String[] issues, int[] issueTypes) {
+        this.key = key;
+        this.project = project;
+        this.category = category;
+        this.issueKey = issueKey;
+        this.epicKey = epicKey;
+        this.dateFormat = dateFormat;
+        this.rawDate = rawDate;
+        this.amount = amount;
+        this.name = name;
+        this.description = description;
+        this.issues = issues;
+        this.issueTypes = issueTypes;
+    }
+
+    static ExpenseRow encode(Budget budget, StringDictionary dictionary, Currency currency) {
+        return encode(budget, dictionary, currency, Collections.<String, NavigableMap<ExpenseKey, ExpenseRow>>emptyMap());
+    }
+
+    // rowsByIssue is the store's issue index, used to find strings to share
+    static ExpenseRow encode(Budget budget, StringDictionary dictionary, Currency currency,
+                             Map<String, ? extends NavigableMap<ExpenseKey, ExpenseRow>> rowsByIssue) {
+        ExpenseKey key = ExpenseKey.of(budget);
+        byte dateFormat = ExpenseDates.formatOf(budget.getDate(), key.getEpochDay(), key.getMillisOfDay());
+        String[] issues = null;
+        int[] issueTypes = null;
+        if (budget.getSelectedIssues() != null) {
+            issues = new String[budget.getSelectedIssues().size() * 2];
+            issueTypes = new int[budget.getSelectedIssues().size()];
+            int i = 0;
+            for (Budget.Issue issue : budget.getSelectedIssues()) {
+                issueTypes[i / 2] = dictionary.intern(issue.getType());
+                issues[i] = issue.getKey();
+                issues[i + 1] = issue.getSummary();
+                if (issue.getKey() != null) {
+                    shareIssueStrings(issues, i, rowsByIssue.get(issue.getKey()));
+                }
+                i += 2;
+            }
+        }
+        return new ExpenseRow(key,
+                dictionary.intern(budget.getProjectKey()),
+                dictionary.intern(budget.getBudgetCategory()),
+                budget.getIssueKey(),
+                budget.getEpicKey(),
+                dateFormat,
+                dateFormat == ExpenseDates.FORMAT_RAW ? budget.getDate() : null,
+                Money.toMinorUnits(budget.getAmount(), currency),
+                budget.getBudgetName(),
+                budget.getDescription(),
+                issues,
+                issueTypes);
+    }
+
+    Budget decode(StringDictionary dictionary, Currency currency) {
+        Budget budget = new Budget();
+        budget.setId(key.getId().toString());
+        budget.setProjectKey(dictionary.decode(project));
+        budget.setBudgetName(name);
+        budget.setBudgetCategory(dictionary.decode(category));
+        budget.setDescription(description);
+        budget.setAmount(Money.toAmount(amount, currency));
+        budget.setDate(dateFormat == ExpenseDates.FORMAT_RAW
+                ? rawDate
+                : ExpenseDates.format(key.getEpochDay(), key.getMillisOfDay(), dateFormat));
+        budget.setIssueKey(issueKey);
+        budget.setEpicKey(epicKey);
+        if (issues != null) {
+            List<Budget.Issue> selectedIssues = new ArrayList<>(issueTypes.length);
+            for (int i = 0; i < issues.length; i += 2) {
+                Budget.Issue issue = new Budget.Issue();
+                issue.setKey(issues[i]);
+                issue.setSummary(issues[i + 1]);
+                issue.setType(dictionary.decode(issueTypes[i / 2]));
+                selectedIssues.add(issue);
+            }
+            budget.setSelectedIssues(selectedIssues);
+        }
+        return budget;
+    }
+
+    // swaps the (key, summary) pair at i for the equal strings of a row already linking that
+    // issue. rows are read without locking, so one removed meanwhile just means no sharing
+    private static void shareIssueStrings(String[] issues, int i, NavigableMap<ExpenseKey, ExpenseRow> linked) {
+        Map.Entry<ExpenseKey, ExpenseRow> entry = linked != null ? linked.firstEntry() : null;
+        if (entry == null || entry.getValue().issues == null) {
+            return;
+        }
+        String[] shared = entry.getValue().issues;
+        for (int j = 0; j < shared.length; j += 2) {
+            if (issues[i].equals(shared[j])) {
+                issues[i] = shared[j];
+                if (issues[i + 1] != null && issues[i + 1].equals(shared[j + 1])) {
+                    issues[i + 1] = shared[j + 1];
+                }
+                return;
+            }
+        }
+    }
+
+    // distinct linked issue keys, without nulls
+    String[] linkedIssueKeys() {
+        if (issues == null || issues.length == 0) {
+            return new String[0];
+        }
+        String[] keys = new String[issues.length / 2];
+        int count = 0;
+        outer:
+        for (int i = 0; i < issues.length; i += 2) {
+            String issueKey = issues[i];
+            if (issueKey == null) {
+                continue;
+            }
+            for (int j = 0; j < count; j++) {
+                if (keys[j].equals(issueKey)) {
+                    continue outer;
+                }
+            }
+            keys[count++] = issueKey;
+        }
+        return count == keys.length ? keys : Arrays.copyOf(keys, count);
+    }
+}
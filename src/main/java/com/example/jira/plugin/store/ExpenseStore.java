@@ -0,0 +1,610 @@
+package com.example.jira.plugin.store;
+
+import com.example.jira.plugin.model.Budget;
+import com.example.jira.plugin.model.Money;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+// in-memory expense rows indexed by id and by project, so lookups by id are O(1)
+// and per-project queries only touch that project's rows. per-project aggregates
+// are updated on every write so totals and category sums are O(1) reads.
+//
+// rows are also kept ordered by (date, id) per project, per project and category, per
+// linked issue, per category and across all projects, which is what the paged endpoints
+// seek into.
+//
+// rows are held as compact ExpenseRows (see there) and turned back into Budgets on read.
+// amounts are stored and summed as whole minor units of the store's currency (see Money).
+// each project also keeps its totals per day, week and month for the burn-up chart.
+//
+// every write moves the project to a new version, which the dashboard endpoints use as
+// their ETag.
+//
+// thread safety: writers take a lock striped by project key, so writes to different
+// projects run in parallel. readers never lock, they see the concurrent maps and the
+// latest immutable ProjectAggregates snapshot
+public class ExpenseStore {
+    private static final int LOCK_STRIPES = 64;
+
+    private final Currency currency;
+    private final ProjectAggregates emptyAggregates;
+    private final StringDictionary dictionary = new StringDictionary();
+    private final ConcurrentMap<ExpenseId, ExpenseRow> expensesById = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, ConcurrentSkipListMap<ExpenseKey, ExpenseRow>> expensesByProject = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, ConcurrentMap<Integer, ConcurrentSkipListMap<ExpenseKey, ExpenseRow>>> expensesByCategory =
+            new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<ExpenseKey, ExpenseRow> expensesByDate = new ConcurrentSkipListMap<>();
+    // category code -> rows of that category in every project, for category queries across projects.
+    // like expensesByIssue it crosses projects, so it's only changed through compute()
+    private final ConcurrentMap<Integer, ConcurrentSkipListMap<ExpenseKey, ExpenseRow>> expensesByCategoryCode =
+            new ConcurrentHashMap<>();
+    // issue key -> rows linking that issue; unlike the others this crosses projects, so it's only changed through compute()
+    private final ConcurrentMap<String, ConcurrentSkipListMap<ExpenseKey, ExpenseRow>> expensesByIssue = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, ProjectAggregates> aggregatesByProject = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, ExpenseTimeSeries> timeSeriesByProject = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Long> versionsByProject = new ConcurrentHashMap<>();
+    // starts at the creation time in nanoseconds, so a restarted store doesn't hand out versions seen before
+    private final long initialVersion = TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis());
+    private final AtomicLong versionSequence = new AtomicLong(initialVersion);
+    private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+    private final List<ExpenseStoreListener> listeners = new CopyOnWriteArrayList<>();
+
+    public ExpenseStore() {
+        this(Money.DEFAULT_CURRENCY);
+    }
+
+    public ExpenseStore(Currency currency) {
+        this.currency = currency;
+        this.emptyAggregates = ProjectAggregates.empty(currency);
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    public Currency getCurrency() {
+        return currency;
+    }
+
+    public void addListener(ExpenseStoreListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(ExpenseStoreListener listener) {
+        listeners.remove(listener);
+    }
+
+    public Budget get(String id) {
+        if (id == null) {
+            return null;
+        }
+        ExpenseRow row = expensesById.get(ExpenseId.of(id));
+        return row != null ? row.decode(dictionary, currency) : null;
+    }
+
+    public List<Budget> getAll() {
+        List<Budget> budgets = new ArrayList<>(expensesById.size());
+        for (ExpenseRow row : expensesById.values()) {
+            budgets.add(row.decode(dictionary, currency));
+        }
+        return budgets;
+    }
+
+    // ordered by date, then id
+    public List<Budget> getProjectExpenses(String projectKey) {
+        Map<ExpenseKey, ExpenseRow> projectExpenses = expensesByProject.get(projectKey);
+        if (projectExpenses == null) {
+            return new ArrayList<>();
+        }
+        List<Budget> budgets = new ArrayList<>(projectExpenses.size());
+        for (ExpenseRow row : projectExpenses.values()) {
+            budgets.add(row.decode(dictionary, currency));
+        }
+        return budgets;
+    }
+
+    // rows of one project (or of all projects when projectKey is null) matching the query, in index order
+    public Iterable<Budget> query(String projectKey, ExpenseQuery query) {
+        String category = query.getCategory();
+        int categoryCode = dictionary.codeOf(category);
+        if (category != null && categoryCode == StringDictionary.NONE) {
+            // no row has ever had this category
+            return Collections.emptyList();
+        }
+        if (projectKey == null) {
+            NavigableMap<ExpenseKey, ExpenseRow> index = category == null ? expensesByDate : expensesByCategoryCode.get(categoryCode);
+            return index != null ? decoded(query.select(index, currency)) : Collections.<Budget>emptyList();
+        }
+
+        NavigableMap<ExpenseKey, ExpenseRow> index;
+        if (category == null) {
+            index = expensesByProject.get(projectKey);
+        } else {
+            Map<Integer, ConcurrentSkipListMap<ExpenseKey, ExpenseRow>> categories = expensesByCategory.get(projectKey);
+            index = categories != null ? categories.get(categoryCode) : null;
+        }
+        return index != null ? decoded(query.select(index, currency)) : Collections.<Budget>emptyList();
+    }
+
+    // rows linking any of the issues, matching the query. costs one lookup per issue plus
+    // the matching rows, however many expenses there are overall
+    public Iterable<Budget> queryIssues(Collection<String> issueKeys, ExpenseQuery query) {
+        String category = query.getCategory();
+        int categoryCode = dictionary.codeOf(category);
+        if (category != null && categoryCode == StringDictionary.NONE) {
+            return Collections.emptyList();
+        }
+
+        NavigableMap<ExpenseKey, ExpenseRow> linked;
+        if (issueKeys.size() == 1 && category == null) {
+            linked = expensesByIssue.get(issueKeys.iterator().next());
+        } else {
+            linked = new TreeMap<>();
+            for (String issueKey : issueKeys) {
+                NavigableMap<ExpenseKey, ExpenseRow> rows = expensesByIssue.get(issueKey);
+                if (rows == null) {
+                    continue;
+                }
+                for (Map.Entry<ExpenseKey, ExpenseRow> entry : rows.entrySet()) {
+                    if (category == null || entry.getValue().category == categoryCode) {
+                        linked.put(entry.getKey(), entry.getValue());
+                    }
+                }
+            }
+        }
+        return linked != null ? decoded(query.select(linked, currency)) : Collections.<Budget>emptyList();
+    }
+
+    // sums the project's expenses into groups of issues (e.g. an epic and its children) in
+    // one pass, without turning rows into Budgets. an expense linked to several issues of
+    // the same group counts once towards it
+    public Money[] sumByIssueGroup(String projectKey, Map<String, Integer> groupByIssueKey, int groupCount) {
+        long[] totals = new long[groupCount];
+        Map<ExpenseKey, ExpenseRow> projectExpenses = expensesByProject.get(projectKey);
+        if (projectExpenses == null) {
+            return toMoney(totals);
+        }
+        int[] lastCountedRow = new int[groupCount];
+        Arrays.fill(lastCountedRow, -1);
+        int rowNumber = 0;
+        for (ExpenseRow row : projectExpenses.values()) {
+            if (row.issues != null) {
+                for (int i = 0; i < row.issues.length; i += 2) {
+                    Integer group = row.issues[i] != null ? groupByIssueKey.get(row.issues[i]) : null;
+                    if (group != null && lastCountedRow[group] != rowNumber) {
+                        lastCountedRow[group] = rowNumber;
+                        totals[group] += row.amount;
+                    }
+                }
+            }
+            rowNumber++;
+        }
+        return toMoney(totals);
+    }
+
+    // running totals per bucket, one point for each bucket with expenses. from and to are
+    // inclusive yyyy-MM-dd dates and may be null; expenses without a readable date are left out
+    public List<TimeSeriesPoint> getCumulativeSeries(String projectKey, TimeBucket granularity, String fromDate, String toDate) {
+        Integer fromDay = fromDate != null ? ExpenseDates.parseDay(fromDate) : null;
+        Integer toDay = toDate != null ? ExpenseDates.parseDay(toDate) : null;
+        ExpenseTimeSeries series = timeSeriesByProject.get(projectKey);
+        return series != null ? series.cumulative(granularity, fromDay, toDay, currency) : new ArrayList<>();
+    }
+
+    // a different value after every change to the project's rows or budget. read it before
+    // reading the data it stands for, then a write in between can only make the tag older
+    public long getVersion(String projectKey) {
+        Long version = versionsByProject.get(projectKey);
+        return version != null ? version : initialVersion;
+    }
+
+    // totals over every project and the topK furthest over budget. the projects' aggregates are
+    // collected in one pass, then summed and ranked in parallel on the common fork/join pool.
+    // each project's numbers are consistent, the portfolio is not one atomic snapshot
+    public PortfolioSummary getPortfolio(int topK) {
+        if (topK < 0) {
+            throw new IllegalArgumentException("topK must not be negative: " + topK);
+        }
+        List<String> projectKeys = new ArrayList<>(aggregatesByProject.size());
+        List<ProjectAggregates> aggregates = new ArrayList<>(aggregatesByProject.size());
+        for (Map.Entry<String, ProjectAggregates> entry : aggregatesByProject.entrySet()) {
+            projectKeys.add(entry.getKey());
+            aggregates.add(entry.getValue());
+        }
+        PortfolioRollup rollup = new PortfolioRollup(projectKeys.toArray(new String[0]),
+                aggregates.toArray(new ProjectAggregates[0]), 0, projectKeys.size(), topK);
+        return new PortfolioSummary(currency, ForkJoinPool.commonPool().invoke(rollup));
+    }
+
+    public Set<String> getProjectKeys() {
+        return Collections.unmodifiableSet(aggregatesByProject.keySet());
+    }
+
+    // returns null if nothing is known about the project yet
+    public ProjectAggregates getAggregates(String projectKey) {
+        return aggregatesByProject.get(projectKey);
+    }
+
+    public void setTotalBudget(String projectKey, double totalBudget) {
+        requireProjectKey(projectKey);
+        long minorUnits = Money.toMinorUnits(totalBudget, currency);
+        ReentrantLock lock = lockFor(projectKey);
+        lock.lock();
+        try {
+            putAggregates(projectKey, aggregatesOf(projectKey).withTotalBudget(minorUnits));
+            for (ExpenseStoreListener listener : listeners) {
+                listener.projectBudgetSet(projectKey, Money.toAmount(minorUnits, currency));
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void add(Budget budget) {
+        requireId(budget.getId());
+        requireProjectKey(budget.getProjectKey());
+        ExpenseRow row = ExpenseRow.encode(budget, dictionary, currency, expensesByIssue);
+        ExpenseId id = row.key.getId();
+        while (true) {
+            ExpenseRow previous = expensesById.get(id);
+            ReentrantLock[] held = lockBoth(budget.getProjectKey(), previous != null ? projectOf(previous) : null);
+            try {
+                if (previous == null) {
+                    if (expensesById.putIfAbsent(id, row) != null) {
+                        continue;
+                    }
+                } else {
+                    if (!expensesById.replace(id, previous, row)) {
+                        continue;
+                    }
+                    removeFromProject(previous);
+                }
+                addToProject(row);
+                Budget previousBudget = previous != null ? previous.decode(dictionary, currency) : null;
+                for (ExpenseStoreListener listener : listeners) {
+                    listener.expenseSaved(previousBudget, budget);
+                }
+                return;
+            } finally {
+                unlock(held);
+            }
+        }
+    }
+
+    // inserts a batch of new rows taking each lock stripe once, updating each project's aggregates
+    // once and handing listeners each project's rows as one batch. rows whose id is already taken
+    // fall back to add()
+    public void addAll(Collection<Budget> budgets) {
+        Map<Integer, Map<String, List<Budget>>> byStripe = new TreeMap<>();
+        for (Budget budget : budgets) {
+            requireId(budget.getId());
+            requireProjectKey(budget.getProjectKey());
+            byStripe.computeIfAbsent(stripe(budget.getProjectKey()), k -> new LinkedHashMap<>())
+                    .computeIfAbsent(budget.getProjectKey(), k -> new ArrayList<>())
+                    .add(budget);
+        }
+
+        List<Budget> existing = new ArrayList<>();
+        for (Map.Entry<Integer, Map<String, List<Budget>>> stripe : byStripe.entrySet()) {
+            ReentrantLock lock = locks[stripe.getKey()];
+            lock.lock();
+            try {
+                for (Map.Entry<String, List<Budget>> entry : stripe.getValue().entrySet()) {
+                    addAllToProject(entry.getKey(), entry.getValue(), existing);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        for (Budget budget : existing) {
+            add(budget);
+        }
+    }
+
+    // the project's stripe lock must be held. rows whose id is taken go to existing
+    private void addAllToProject(String projectKey, List<Budget> budgets, List<Budget> existing) {
+        List<Budget> inserted = new ArrayList<>(budgets.size());
+        List<ExpenseRow> insertedRows = new ArrayList<>(budgets.size());
+        for (Budget budget : budgets) {
+            ExpenseRow row = ExpenseRow.encode(budget, dictionary, currency, expensesByIssue);
+            if (expensesById.putIfAbsent(row.key.getId(), row) != null) {
+                existing.add(budget);
+                continue;
+            }
+            indexRow(row);
+            inserted.add(budget);
+            insertedRows.add(row);
+        }
+        if (inserted.isEmpty()) {
+            return;
+        }
+        putAggregates(projectKey, aggregatesOf(projectKey).withExpensesAdded(insertedRows, dictionary));
+        List<Budget> batch = Collections.unmodifiableList(inserted);
+        for (ExpenseStoreListener listener : listeners) {
+            listener.expensesAdded(projectKey, batch);
+        }
+    }
+
+    // returns the replaced row, or null if there was no row with that id
+    public Budget replace(Budget budget) {
+        requireId(budget.getId());
+        requireProjectKey(budget.getProjectKey());
+        ExpenseRow row = ExpenseRow.encode(budget, dictionary, currency, expensesByIssue);
+        ExpenseId id = row.key.getId();
+        while (true) {
+            ExpenseRow oldRow = expensesById.get(id);
+            if (oldRow == null) {
+                return null;
+            }
+            ReentrantLock[] held = lockBoth(budget.getProjectKey(), projectOf(oldRow));
+            try {
+                if (!expensesById.replace(id, oldRow, row)) {
+                    continue;
+                }
+                removeFromProject(oldRow);
+                addToProject(row);
+                Budget oldBudget = oldRow.decode(dictionary, currency);
+                for (ExpenseStoreListener listener : listeners) {
+                    listener.expenseSaved(oldBudget, budget);
+                }
+                return oldBudget;
+            } finally {
+                unlock(held);
+            }
+        }
+    }
+
+    // returns the removed row, or null if there was no row with that id
+    public Budget remove(String id) {
+        if (id == null) {
+            return null;
+        }
+        ExpenseId expenseId = ExpenseId.of(id);
+        while (true) {
+            ExpenseRow row = expensesById.get(expenseId);
+            if (row == null) {
+                return null;
+            }
+            ReentrantLock lock = lockFor(projectOf(row));
+            lock.lock();
+            try {
+                if (!expensesById.remove(expenseId, row)) {
+                    continue;
+                }
+                removeFromProject(row);
+                Budget budget = row.decode(dictionary, currency);
+                for (ExpenseStoreListener listener : listeners) {
+                    listener.expenseRemoved(budget);
+                }
+                return budget;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    // self-check: recomputes every project's aggregates from its rows and compares
+    public boolean verifyAggregates() {
+        for (String projectKey : knownProjectKeys()) {
+            ReentrantLock lock = lockFor(projectKey);
+            lock.lock();
+            try {
+                ProjectAggregates actual = aggregatesByProject.get(projectKey);
+                if (actual == null) {
+                    if (expensesByProject.containsKey(projectKey)) {
+                        return false;
+                    }
+                    continue;
+                }
+                if (!recomputeAggregates(projectKey, actual).equals(actual)) {
+                    return false;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        return true;
+    }
+
+    // recomputes every project's aggregates from its rows, keeping the project budgets
+    public void rebuildAggregates() {
+        for (String projectKey : knownProjectKeys()) {
+            ReentrantLock lock = lockFor(projectKey);
+            lock.lock();
+            try {
+                putAggregates(projectKey, recomputeAggregates(projectKey, aggregatesOf(projectKey)));
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private Set<String> knownProjectKeys() {
+        Set<String> projectKeys = new HashSet<>(aggregatesByProject.keySet());
+        projectKeys.addAll(expensesByProject.keySet());
+        return projectKeys;
+    }
+
+    private ProjectAggregates recomputeAggregates(String projectKey, ProjectAggregates current) {
+        Map<ExpenseKey, ExpenseRow> projectExpenses = expensesByProject.get(projectKey);
+        return ProjectAggregates.fromRows(currency, current.totalBudgetMinorUnits(),
+                projectExpenses != null ? projectExpenses.values() : Collections.<ExpenseRow>emptyList(), dictionary);
+    }
+
+    private Money[] toMoney(long[] minorUnits) {
+        Money[] amounts = new Money[minorUnits.length];
+        for (int i = 0; i < minorUnits.length; i++) {
+            amounts[i] = Money.ofMinorUnits(minorUnits[i], currency);
+        }
+        return amounts;
+    }
+
+    private static void requireId(String id) {
+        if (id == null) {
+            throw new IllegalArgumentException("Expense id is required");
+        }
+    }
+
+    private static void requireProjectKey(String projectKey) {
+        if (projectKey == null) {
+            throw new IllegalArgumentException("Project key is required");
+        }
+    }
+
+    private Iterable<Budget> decoded(Iterable<ExpenseRow> rows) {
+        return () -> new Iterator<Budget>() {
+            private final Iterator<ExpenseRow> it = rows.iterator();
+
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public Budget next() {
+                return it.next().decode(dictionary, currency);
+            }
+        };
+    }
+
+    private String projectOf(ExpenseRow row) {
+        return dictionary.decode(row.project);
+    }
+
+    // the methods below must be called with the project's stripe lock held
+
+    private ProjectAggregates aggregatesOf(String projectKey) {
+        ProjectAggregates aggregates = aggregatesByProject.get(projectKey);
+        return aggregates != null ? aggregates : emptyAggregates;
+    }
+
+    private void putAggregates(String projectKey, ProjectAggregates aggregates) {
+        if (aggregates.isEmpty()) {
+            aggregatesByProject.remove(projectKey);
+        } else {
+            aggregatesByProject.put(projectKey, aggregates);
+        }
+        // every write ends here, after the rows are indexed
+        versionsByProject.put(projectKey, versionSequence.incrementAndGet());
+    }
+
+    private void addToProject(ExpenseRow row) {
+        String projectKey = projectOf(row);
+        indexRow(row);
+        putAggregates(projectKey, aggregatesOf(projectKey).withExpenseAdded(dictionary.decode(row.category), row.amount));
+    }
+
+    private void removeFromProject(ExpenseRow row) {
+        if (!unindexRow(row)) {
+            return;
+        }
+        String projectKey = projectOf(row);
+        putAggregates(projectKey, aggregatesOf(projectKey).withExpenseRemoved(dictionary.decode(row.category), row.amount));
+    }
+
+    private void indexRow(ExpenseRow row) {
+        ExpenseKey key = row.key;
+        String projectKey = projectOf(row);
+        expensesByProject.computeIfAbsent(projectKey, k -> new ConcurrentSkipListMap<>()).put(key, row);
+        expensesByCategory.computeIfAbsent(projectKey, k -> new ConcurrentHashMap<>())
+                .computeIfAbsent(row.category, k -> new ConcurrentSkipListMap<>())
+                .put(key, row);
+        expensesByDate.put(key, row);
+        expensesByCategoryCode.compute(row.category, (k, rows) -> {
+            ConcurrentSkipListMap<ExpenseKey, ExpenseRow> sameCategory = rows != null ? rows : new ConcurrentSkipListMap<>();
+            sameCategory.put(key, row);
+            return sameCategory;
+        });
+        if (key.getEpochDay() != ExpenseDates.NO_DAY) {
+            timeSeriesByProject.computeIfAbsent(projectKey, k -> new ExpenseTimeSeries()).add(key.getEpochDay(), row.amount);
+        }
+        for (String issueKey : row.linkedIssueKeys()) {
+            expensesByIssue.compute(issueKey, (k, rows) -> {
+                ConcurrentSkipListMap<ExpenseKey, ExpenseRow> linked = rows != null ? rows : new ConcurrentSkipListMap<>();
+                linked.put(key, row);
+                return linked;
+            });
+        }
+    }
+
+    // returns false if the row wasn't indexed
+    private boolean unindexRow(ExpenseRow row) {
+        ExpenseKey key = row.key;
+        String projectKey = projectOf(row);
+        Map<ExpenseKey, ExpenseRow> projectExpenses = expensesByProject.get(projectKey);
+        if (projectExpenses == null || projectExpenses.remove(key) == null) {
+            return false;
+        }
+        if (projectExpenses.isEmpty()) {
+            expensesByProject.remove(projectKey);
+        }
+
+        Map<Integer, ConcurrentSkipListMap<ExpenseKey, ExpenseRow>> categories = expensesByCategory.get(projectKey);
+        Map<ExpenseKey, ExpenseRow> categoryExpenses = categories.get(row.category);
+        categoryExpenses.remove(key);
+        if (categoryExpenses.isEmpty()) {
+            categories.remove(row.category);
+            if (categories.isEmpty()) {
+                expensesByCategory.remove(projectKey);
+            }
+        }
+
+        expensesByDate.remove(key);
+        expensesByCategoryCode.computeIfPresent(row.category, (k, rows) -> {
+            rows.remove(key);
+            return rows.isEmpty() ? null : rows;
+        });
+        ExpenseTimeSeries series = timeSeriesByProject.get(projectKey);
+        if (series != null && key.getEpochDay() != ExpenseDates.NO_DAY) {
+            series.remove(key.getEpochDay(), row.amount);
+            if (series.isEmpty()) {
+                timeSeriesByProject.remove(projectKey);
+            }
+        }
+        for (String issueKey : row.linkedIssueKeys()) {
+            expensesByIssue.computeIfPresent(issueKey, (k, rows) -> {
+                rows.remove(key);
+                return rows.isEmpty() ? null : rows;
+            });
+        }
+        return true;
+    }
+
+    private ReentrantLock lockFor(String projectKey) {
+        return locks[stripe(projectKey)];
+    }
+
+    private static int stripe(String projectKey) {
+        int hash = projectKey.hashCode();
+        return (hash ^ (hash >>> 16)) & (LOCK_STRIPES - 1);
+    }
+
+    // locks the stripes of both projects in stripe order so two cross-project moves can't deadlock
+    private ReentrantLock[] lockBoth(String projectKey, String otherProjectKey) {
+        int first = stripe(projectKey);
+        int second = otherProjectKey != null ? stripe(otherProjectKey) : first;
+        if (first == second) {
+            locks[first].lock();
+            return new ReentrantLock[]{locks[first]};
+        }
+        ReentrantLock lower = locks[Math.min(first, second)];
+        ReentrantLock upper = locks[Math.max(first, second)];
+        lower.lock();
+        upper.lock();
+        return new ReentrantLock[]{upper, lower};
+    }
+
+    private static void unlock(ReentrantLock[] held) {
+        for (ReentrantLock lock : held) {
+            lock.unlock();
+        }
+    }
+}
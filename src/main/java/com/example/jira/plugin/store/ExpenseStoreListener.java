@@ -0,0 +1,25 @@
+package com.example.jira.plugin.store;
+
+import com.example.jira.plugin.model.Budget;
+
+import java.util.List;
+
+// called by ExpenseStore after each write, while the project's stripe lock is still held,
+// so listeners see the writes to one project in the order they were applied. a listener that
+// waits holds up every writer to the project, so they hand work off without blocking
+public interface ExpenseStoreListener {
+    // oldBudget is null when the expense is new
+    void expenseSaved(Budget oldBudget, Budget newBudget);
+
+    void expenseRemoved(Budget budget);
+
+    // new expenses of one project inserted together by ExpenseStore.addAll, after the project's
+    // aggregates took all of them. listeners that can take the batch at once override this
+    default void expensesAdded(String projectKey, List<Budget> budgets) {
+        for (Budget budget : budgets) {
+            expenseSaved(null, budget);
+        }
+    }
+
+    void projectBudgetSet(String projectKey, double totalBudget);
+}
@@ -0,0 +1,87 @@
+package com.example.jira.plugin.store;
+
+import com.example.jira.plugin.model.Money;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+// one project's expense totals per day, week and month. ExpenseStore updates all three
+// on every write (under the project lock), so a burn-up chart costs one point per bucket
+// instead of a sort over every expense. readers don't lock
+final class ExpenseTimeSeries {
+    private final Map<TimeBucket, ConcurrentSkipListMap<Integer, Bucket>> buckets = new EnumMap<>(TimeBucket.class);
+
+    ExpenseTimeSeries() {
+        for (TimeBucket granularity : TimeBucket.values()) {
+            buckets.put(granularity, new ConcurrentSkipListMap<>());
+        }
+    }
+
+    void add(int epochDay, long amount) {
+        for (Map.Entry<TimeBucket, ConcurrentSkipListMap<Integer, Bucket>> entry : buckets.entrySet()) {
+            entry.getValue().compute(entry.getKey().start(epochDay),
+                    (start, bucket) -> bucket == null ? new Bucket(amount, 1) : new Bucket(bucket.sum + amount, bucket.count + 1));
+        }
+    }
+
+    void remove(int epochDay, long amount) {
+        for (Map.Entry<TimeBucket, ConcurrentSkipListMap<Integer, Bucket>> entry : buckets.entrySet()) {
+            entry.getValue().computeIfPresent(entry.getKey().start(epochDay),
+                    (start, bucket) -> bucket.count == 1 ? null : new Bucket(bucket.sum - amount, bucket.count - 1));
+        }
+    }
+
+    boolean isEmpty() {
+        return buckets.get(TimeBucket.DAY).isEmpty();
+    }
+
+    // non-empty buckets overlapping [fromDay, toDay], either end may be null
+    List<TimeSeriesPoint> cumulative(TimeBucket granularity, Integer fromDay, Integer toDay, Currency currency) {
+        if (fromDay != null && toDay != null && fromDay > toDay) {
+            return Collections.emptyList();
+        }
+        NavigableMap<Integer, Bucket> range = buckets.get(granularity);
+        long total = 0L;
+        if (fromDay != null) {
+            int firstBucket = granularity.start(fromDay);
+            range = range.tailMap(firstBucket, true);
+            total = totalBefore(firstBucket);
+        }
+        if (toDay != null) {
+            range = range.headMap(granularity.start(toDay), true);
+        }
+
+        List<TimeSeriesPoint> points = new ArrayList<>(range.size());
+        for (Map.Entry<Integer, Bucket> entry : range.entrySet()) {
+            Bucket bucket = entry.getValue();
+            total += bucket.sum;
+            points.add(new TimeSeriesPoint(LocalDate.ofEpochDay(entry.getKey()).toString(),
+                    Money.ofMinorUnits(bucket.sum, currency), Money.ofMinorUnits(total, currency), bucket.count));
+        }
+        return points;
+    }
+
+    // whole months before the day's month, then the days of that month before it
+    private long totalBefore(int epochDay) {
+        int monthStart = TimeBucket.MONTH.start(epochDay);
+        long total = 0L;
+        for (Bucket bucket : buckets.get(TimeBucket.MONTH).headMap(monthStart, false).values()) {
+            total += bucket.sum;
+        }
+        for (Bucket bucket : buckets.get(TimeBucket.DAY).subMap(monthStart, true, epochDay, false).values()) {
+            total += bucket.sum;
+        }
+        return total;
+    }
+
+    private static final class Bucket {
+        final long sum;
+        final int count;
+
+        Bucket(long sum, int count) {
+            this.sum = sum;
+            this.count = count;
+        }
+    }
+}
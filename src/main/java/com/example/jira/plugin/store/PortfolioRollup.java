@@ -0,0 +1,106 @@
+package com.example.jira.plugin.store;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.RecursiveTask;
+
+// sums the aggregates of a range of projects, splitting it in halves until a range is small
+// enough to add up directly. every range also keeps its topK largest overruns in a min-heap
+// of at most topK entries, so ranking costs O(projects log topK) instead of a full sort
+final class PortfolioRollup extends RecursiveTask<PortfolioRollup.Partial> {
+    private static final int PROJECTS_PER_TASK = 256;
+
+    // worst ranked first, so the heap's head is the one to evict
+    static final Comparator<PortfolioSummary.ProjectOverrun> WORST_FIRST =
+            Comparator.comparingLong(PortfolioSummary.ProjectOverrun::overrunMinorUnits)
+                    .thenComparing(PortfolioSummary.ProjectOverrun::getProjectKey, Comparator.reverseOrder());
+
+    private final String[] projectKeys;
+    private final ProjectAggregates[] aggregates;
+    private final int from;
+    private final int to;
+    private final int topK;
+
+    PortfolioRollup(String[] projectKeys, ProjectAggregates[] aggregates, int from, int to, int topK) {
+        this.projectKeys = projectKeys;
+        this.aggregates = aggregates;
+        this.from = from;
+        this.to = to;
+        this.topK = topK;
+    }
+
+    @Override
+    protected Partial compute() {
+        if (to - from <= PROJECTS_PER_TASK) {
+            Partial partial = new Partial(topK);
+            for (int i = from; i < to; i++) {
+                partial.add(projectKeys[i], aggregates[i]);
+            }
+            return partial;
+        }
+        int middle = (from + to) >>> 1;
+        PortfolioRollup left = new PortfolioRollup(projectKeys, aggregates, from, middle, topK);
+        PortfolioRollup right = new PortfolioRollup(projectKeys, aggregates, middle, to, topK);
+        left.fork();
+        Partial rightPartial = right.compute();
+        return left.join().merge(rightPartial);
+    }
+
+    static final class Partial {
+        private final int topK;
+        private final PriorityQueue<PortfolioSummary.ProjectOverrun> worst;
+        long totalBudget;
+        long totalExpenses;
+        int projectCount;
+        int overBudgetCount;
+
+        Partial(int topK) {
+            this.topK = topK;
+            this.worst = new PriorityQueue<>(Math.min(topK, 16) + 1, WORST_FIRST);
+        }
+
+        void add(String projectKey, ProjectAggregates projectAggregates) {
+            long budget = projectAggregates.totalBudgetMinorUnits();
+            long expenses = projectAggregates.totalExpensesMinorUnits();
+            totalBudget += budget;
+            totalExpenses += expenses;
+            projectCount++;
+            if (expenses > budget) {
+                overBudgetCount++;
+                offer(new PortfolioSummary.ProjectOverrun(projectKey, projectAggregates));
+            }
+        }
+
+        Partial merge(Partial other) {
+            totalBudget += other.totalBudget;
+            totalExpenses += other.totalExpenses;
+            projectCount += other.projectCount;
+            overBudgetCount += other.overBudgetCount;
+            for (PortfolioSummary.ProjectOverrun overrun : other.worst) {
+                offer(overrun);
+            }
+            return this;
+        }
+
+        // the ranking, largest overrun first
+        List<PortfolioSummary.ProjectOverrun> topOverruns() {
+            List<PortfolioSummary.ProjectOverrun> top = new ArrayList<>(worst);
+            top.sort(WORST_FIRST.reversed());
+            return top;
+        }
+
+        private void offer(PortfolioSummary.ProjectOverrun overrun) {
+            if (topK == 0) {
+                return;
+            }
+            if (worst.size() < topK) {
+                worst.add(overrun);
+            } else if (WORST_FIRST.compare(overrun, worst.peek()) > 0) {
+                worst.poll();
+                worst.add(overrun);
+            }
+        }
+    }
+}
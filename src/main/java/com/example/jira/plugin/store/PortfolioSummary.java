@@ -0,0 +1,93 @@
+package com.example.jira.plugin.store;
+
+import com.example.jira.plugin.model.Money;
+
+import java.util.Collections;
+import java.util.Currency;
+import java.util.List;
+
+// totals across every project, plus the projects furthest over their budget.
+// sums are exact minor units, like ProjectAggregates
+public final class PortfolioSummary {
+    private final Currency currency;
+    private final long totalBudget;
+    private final long totalExpenses;
+    private final int projectCount;
+    private final int overBudgetCount;
+    private final List<ProjectOverrun> topOverruns;
+
+    PortfolioSummary(Currency currency, PortfolioRollup.Partial partial) {
+        this.currency = currency;
+        this.totalBudget = partial.totalBudget;
+        this.totalExpenses = partial.totalExpenses;
+        this.projectCount = partial.projectCount;
+        this.overBudgetCount = partial.overBudgetCount;
+        this.topOverruns = Collections.unmodifiableList(partial.topOverruns());
+    }
+
+    public double getTotalBudget() {
+        return Money.toAmount(totalBudget, currency);
+    }
+
+    public double getTotalExpenses() {
+        return Money.toAmount(totalExpenses, currency);
+    }
+
+    public double getRemainingBudget() {
+        return Money.toAmount(totalBudget - totalExpenses, currency);
+    }
+
+    // null while there's no budget to measure against
+    public Double getPercentUsed() {
+        return percentUsed(totalBudget, totalExpenses);
+    }
+
+    public int getProjectCount() {
+        return projectCount;
+    }
+
+    public int getOverBudgetCount() {
+        return overBudgetCount;
+    }
+
+    // largest overrun first; ties go to the lower project key
+    public List<ProjectOverrun> getTopOverruns() {
+        return topOverruns;
+    }
+
+    private static Double percentUsed(long budget, long expenses) {
+        return budget != 0L ? (double) expenses / budget * 100 : null;
+    }
+
+    public static final class ProjectOverrun {
+        private final String projectKey;
+        private final ProjectAggregates aggregates;
+        private final long overrun;
+
+        ProjectOverrun(String projectKey, ProjectAggregates aggregates) {
+            this.projectKey = projectKey;
+            this.aggregates = aggregates;
+            this.overrun = aggregates.totalExpensesMinorUnits() - aggregates.totalBudgetMinorUnits();
+        }
+
+        public String getProjectKey() {
+            return projectKey;
+        }
+
+        public ProjectAggregates getAggregates() {
+            return aggregates;
+        }
+
+        public double getOverrun() {
+            return -aggregates.getRemainingBudget();
+        }
+
+        public Double getPercentUsed() {
+            return percentUsed(aggregates.totalBudgetMinorUnits(), aggregates.totalExpensesMinorUnits());
+        }
+
+        long overrunMinorUnits() {
+            return overrun;
+        }
+    }
+}
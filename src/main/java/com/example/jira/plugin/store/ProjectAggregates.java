@@ -0,0 +1,205 @@
+package com.example.jira.plugin.store;
+
+import com.example.jira.plugin.model.Money;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Currency;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// immutable running totals for one project. ExpenseStore swaps in a new instance on
+// every write, so readers always see a consistent snapshot without taking a lock.
+//
+// amounts are kept in minor units (see Money), so the totals after any sequence of
+// adds and removes equal a fresh sum over the rows, exactly
+public final class ProjectAggregates {
+    private final Currency currency;
+    private final long totalBudget;
+    private final long totalExpenses;
+    private final int expenseCount;
+    private final Map<String, CategoryTotal> categoryTotals;
+
+    private ProjectAggregates(Currency currency, long totalBudget, long totalExpenses, int expenseCount,
+                              Map<String, CategoryTotal> categoryTotals) {
+        this.currency = currency;
+        this.totalBudget = totalBudget;
+        this.totalExpenses = totalExpenses;
+        this.expenseCount = expenseCount;
+        this.categoryTotals = categoryTotals;
+    }
+
+    static ProjectAggregates empty(Currency currency) {
+        return new ProjectAggregates(currency, 0L, 0L, 0, Collections.emptyMap());
+    }
+
+    public double getTotalBudget() {
+        return Money.toAmount(totalBudget, currency);
+    }
+
+    public double getTotalExpenses() {
+        return Money.toAmount(totalExpenses, currency);
+    }
+
+    public double getRemainingBudget() {
+        return Money.toAmount(totalBudget - totalExpenses, currency);
+    }
+
+    public Money getTotalBudgetMoney() {
+        return Money.ofMinorUnits(totalBudget, currency);
+    }
+
+    public Money getTotalExpensesMoney() {
+        return Money.ofMinorUnits(totalExpenses, currency);
+    }
+
+    public Money getRemainingBudgetMoney() {
+        return Money.ofMinorUnits(totalBudget - totalExpenses, currency);
+    }
+
+    public int getExpenseCount() {
+        return expenseCount;
+    }
+
+    public Map<String, CategoryTotal> getCategoryTotals() {
+        return categoryTotals;
+    }
+
+    ProjectAggregates withTotalBudget(long totalBudget) {
+        return new ProjectAggregates(currency, totalBudget, totalExpenses, expenseCount, categoryTotals);
+    }
+
+    ProjectAggregates withExpenseAdded(String category, long amount) {
+        Map<String, CategoryTotal> categories = new LinkedHashMap<>(categoryTotals);
+        CategoryTotal categoryTotal = categories.get(category);
+        categories.put(category, categoryTotal == null
+                ? new CategoryTotal(currency, amount, 1)
+                : new CategoryTotal(currency, categoryTotal.sum + amount, categoryTotal.count + 1));
+        return new ProjectAggregates(currency, totalBudget, totalExpenses + amount, expenseCount + 1,
+                Collections.unmodifiableMap(categories));
+    }
+
+    // folds a whole batch into one new snapshot, copying the category table once
+    ProjectAggregates withExpensesAdded(Collection<ExpenseRow> rows, StringDictionary dictionary) {
+        Map<String, CategoryTotal> categories = new LinkedHashMap<>(categoryTotals);
+        long addedExpenses = 0L;
+        for (ExpenseRow row : rows) {
+            addedExpenses += row.amount;
+            String category = dictionary.decode(row.category);
+            CategoryTotal categoryTotal = categories.get(category);
+            categories.put(category, categoryTotal == null
+                    ? new CategoryTotal(currency, row.amount, 1)
+                    : new CategoryTotal(currency, categoryTotal.sum + row.amount, categoryTotal.count + 1));
+        }
+        return new ProjectAggregates(currency, totalBudget, totalExpenses + addedExpenses, expenseCount + rows.size(),
+                Collections.unmodifiableMap(categories));
+    }
+
+    ProjectAggregates withExpenseRemoved(String category, long amount) {
+        Map<String, CategoryTotal> categories = new LinkedHashMap<>(categoryTotals);
+        CategoryTotal categoryTotal = categories.get(category);
+        if (categoryTotal != null && categoryTotal.count == 1) {
+            // drop empty categories so the pie chart matches the rows
+            categories.remove(category);
+        } else if (categoryTotal != null) {
+            categories.put(category, new CategoryTotal(currency, categoryTotal.sum - amount, categoryTotal.count - 1));
+        }
+        return new ProjectAggregates(currency, totalBudget, totalExpenses - amount, expenseCount - 1,
+                Collections.unmodifiableMap(categories));
+    }
+
+    // recomputes the totals from scratch, used by the self-check and rebuild
+    static ProjectAggregates fromRows(Currency currency, long totalBudget, Iterable<ExpenseRow> rows,
+                                      StringDictionary dictionary) {
+        long totalExpenses = 0L;
+        int expenseCount = 0;
+        Map<String, long[]> sums = new LinkedHashMap<>();
+        for (ExpenseRow row : rows) {
+            totalExpenses += row.amount;
+            expenseCount++;
+            long[] sum = sums.computeIfAbsent(dictionary.decode(row.category), k -> new long[2]);
+            sum[0] += row.amount;
+            sum[1]++;
+        }
+        Map<String, CategoryTotal> categories = new LinkedHashMap<>();
+        for (Map.Entry<String, long[]> entry : sums.entrySet()) {
+            categories.put(entry.getKey(), new CategoryTotal(currency, entry.getValue()[0], (int) entry.getValue()[1]));
+        }
+        return new ProjectAggregates(currency, totalBudget, totalExpenses, expenseCount,
+                Collections.unmodifiableMap(categories));
+    }
+
+    boolean isEmpty() {
+        return expenseCount == 0 && totalBudget == 0L;
+    }
+
+    long totalBudgetMinorUnits() {
+        return totalBudget;
+    }
+
+    long totalExpensesMinorUnits() {
+        return totalExpenses;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ProjectAggregates)) {
+            return false;
+        }
+        ProjectAggregates other = (ProjectAggregates) o;
+        return totalBudget == other.totalBudget
+                && totalExpenses == other.totalExpenses
+                && expenseCount == other.expenseCount
+                && currency.equals(other.currency)
+                && categoryTotals.equals(other.categoryTotals);
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(totalExpenses) * 31 + expenseCount;
+    }
+
+    public static final class CategoryTotal {
+        private final Currency currency;
+        private final long sum;
+        private final int count;
+
+        CategoryTotal(Currency currency, long sum, int count) {
+            this.currency = currency;
+            this.sum = sum;
+            this.count = count;
+        }
+
+        public double getSum() {
+            return Money.toAmount(sum, currency);
+        }
+
+        public Money getSumMoney() {
+            return Money.ofMinorUnits(sum, currency);
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof CategoryTotal)) {
+                return false;
+            }
+            CategoryTotal other = (CategoryTotal) o;
+            return sum == other.sum && count == other.count;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(sum) * 31 + count;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.jira.plugin.store;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+// interns the few strings expense rows repeat (project keys, categories and issue types) as
+// int codes. codes are never reused, so a row's codes stay valid for as long as the row lives;
+// that also means it never shrinks, so nothing with per-issue cardinality belongs in here.
+// lookups and decoding don't lock; only a new string does
+final class StringDictionary {
+    static final int NONE = -1;
+
+    private final ConcurrentMap<String, Integer> codes = new ConcurrentHashMap<>();
+    private volatile String[] values = new String[1024];
+    private int size;
+
+    int intern(String value) {
+        if (value == null) {
+            return NONE;
+        }
+        Integer code = codes.get(value);
+        if (code != null) {
+            return code;
+        }
+        synchronized (this) {
+            code = codes.get(value);
+            if (code != null) {
+                return code;
+            }
+            String[] current = values;
+            if (size == current.length) {
+                current = Arrays.copyOf(current, current.length * 2);
+            }
+            current[size] = value;
+            // the array is published before the code, so whoever sees the code can decode it
+            values = current;
+            codes.put(value, size);
+            return size++;
+        }
+    }
+
+    // NONE if the string was never interned, without adding it
+    int codeOf(String value) {
+        if (value == null) {
+            return NONE;
+        }
+        Integer code = codes.get(value);
+        return code != null ? code : NONE;
+    }
+
+    String decode(int code) {
+        return code == NONE ? null : values[code];
+    }
+
+    int size() {
+        return codes.size();
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.jira.plugin.store;
+
+import java.time.LocalDate;
+import java.util.Locale;
+
+// granularity of the expense time series. buckets are identified by their first day
+public enum TimeBucket {
+    DAY,
+    // ISO weeks, starting on Monday
+    WEEK,
+    MONTH;
+
+    // null means DAY
+    public static TimeBucket parse(String value) {
+        if (value == null) {
+            return DAY;
+        }
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown granularity " + value);
+        }
+    }
+
+    int start(int epochDay) {
+        switch (this) {
+            case WEEK:
+                // epoch day 0 was a Thursday
+                return epochDay - Math.floorMod(epochDay + 3, 7);
+            case MONTH:
+                return (int) LocalDate.ofEpochDay(epochDay).withDayOfMonth(1).toEpochDay();
+            default:
+                return epochDay;
+        }
+    }
+}
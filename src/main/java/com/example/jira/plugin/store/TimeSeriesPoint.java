@@ -0,0 +1,37 @@
+package com.example.jira.plugin.store;
+
+import com.example.jira.plugin.model.Money;
+
+// one bucket of a project's expense time series
+public final class TimeSeriesPoint {
+    private final String date;
+    private final Money amount;
+    private final Money cumulative;
+    private final int count;
+
+    TimeSeriesPoint(String date, Money amount, Money cumulative, int count) {
+        this.date = date;
+        this.amount = amount;
+        this.cumulative = cumulative;
+        this.count = count;
+    }
+
+    // first day of the bucket, yyyy-MM-dd
+    public String getDate() {
+        return date;
+    }
+
+    // expenses dated inside the bucket
+    public Money getAmount() {
+        return amount;
+    }
+
+    // expenses dated up to the end of the bucket
+    public Money getCumulative() {
+        return cumulative;
+    }
+
+    public int getCount() {
+        return count;
+    }
+}
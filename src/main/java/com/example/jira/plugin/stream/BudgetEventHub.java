@@ -0,0 +1,249 @@
+package com.example.jira.plugin.stream;
+
+import com.example.jira.plugin.json.BudgetJson;
+import com.example.jira.plugin.metrics.BudgetMetrics;
+import com.example.jira.plugin.model.Budget;
+import com.example.jira.plugin.store.ExpenseStore;
+import com.example.jira.plugin.store.ExpenseStoreListener;
+import com.example.jira.plugin.store.ProjectAggregates;
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.AsyncContext;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// fans store changes out to the dashboards streaming a project. each change becomes one
+// small delta event, serialized once and handed to every connection of that project.
+//
+// a single thread does the serializing and hands events to the connections, whose writes
+// never block (see SseConnection), so the number of open streams costs no threads.
+// deltas carry the project's totals as absolute values and expenses by id, so applying
+// one twice is harmless; every event's id is the project version it brings the client to
+public class BudgetEventHub implements ExpenseStoreListener {
+    private static final Logger log = LoggerFactory.getLogger(BudgetEventHub.class);
+    private static final int MAX_CONNECTIONS = 2_000;
+    private static final long HEARTBEAT_SECONDS = 20;
+    private static final byte[] HEARTBEAT = ":\n\n".getBytes(StandardCharsets.UTF_8);
+
+    private final ExpenseStore expenseStore;
+    private final Gson gson = BudgetJson.gson();
+    private final ConcurrentMap<String, Set<SseConnection>> connectionsByProject = new ConcurrentHashMap<>();
+    private final AtomicInteger connectionCount = new AtomicInteger();
+    private final LongAdder eventsSent = BudgetMetrics.getInstance().counter("stream.events");
+    private final LongAdder resyncs = BudgetMetrics.getInstance().counter("stream.resyncs");
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "budget-tracker-events");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public BudgetEventHub(ExpenseStore expenseStore) {
+        this.expenseStore = expenseStore;
+        executor.scheduleWithFixedDelay(this::heartbeat, HEARTBEAT_SECONDS, HEARTBEAT_SECONDS, TimeUnit.SECONDS);
+        BudgetMetrics.getInstance().gauge("stream.connections", connectionCount::get);
+    }
+
+    // takes over the started async request. the stream opens with a snapshot of the project
+    // and then carries every change made after it; returns false when the hub is full
+    public boolean subscribe(String projectKey, AsyncContext context) throws IOException {
+        if (connectionCount.incrementAndGet() > MAX_CONNECTIONS) {
+            connectionCount.decrementAndGet();
+            return false;
+        }
+        SseConnection connection;
+        try {
+            connection = new SseConnection(this, projectKey, context);
+        } catch (IOException | RuntimeException e) {
+            connectionCount.decrementAndGet();
+            throw e;
+        }
+        // registered before its snapshot is taken, so no change can fall between the two
+        connectionsByProject.compute(projectKey, (k, connections) -> {
+            Set<SseConnection> joined = connections != null ? connections : ConcurrentHashMap.newKeySet();
+            joined.add(connection);
+            return joined;
+        });
+        connection.start();
+        return true;
+    }
+
+    @Override
+    public void expenseSaved(Budget oldBudget, Budget newBudget) {
+        if (oldBudget != null && !oldBudget.getProjectKey().equals(newBudget.getProjectKey())) {
+            // moved: gone from one board, new on the other
+            publishRemoved(oldBudget);
+            publish(newBudget.getProjectKey(), "expense-added", expenseData(newBudget));
+        } else {
+            publish(newBudget.getProjectKey(), oldBudget == null ? "expense-added" : "expense-updated", expenseData(newBudget));
+        }
+    }
+
+    @Override
+    public void expenseRemoved(Budget budget) {
+        publishRemoved(budget);
+    }
+
+    // a whole import as one delta per row would flood the streams; the dashboards take a later
+    // snapshot as a cue to reload, which a batch of any size costs them once
+    @Override
+    public void expensesAdded(String projectKey, List<Budget> budgets) {
+        publish(projectKey, "snapshot", new JsonObject());
+    }
+
+    @Override
+    public void projectBudgetSet(String projectKey, double totalBudget) {
+        publish(projectKey, "totals", new JsonObject());
+    }
+
+    // called by the alert dispatcher after it mailed the project's managers
+    public void thresholdsCrossed(String projectKey, List<Integer> thresholds, double percentageSpent) {
+        JsonObject data = new JsonObject();
+        data.add("thresholds", gson.toJsonTree(thresholds));
+        data.addProperty("percentageSpent", percentageSpent);
+        // not covered by any snapshot, so never skipped as already seen
+        publish(projectKey, "threshold-crossed", data, false);
+    }
+
+    public void close() {
+        executor.shutdownNow();
+        BudgetMetrics.getInstance().removeGauge("stream.connections");
+        for (Set<SseConnection> connections : connectionsByProject.values()) {
+            for (SseConnection connection : connections) {
+                connection.close();
+            }
+        }
+        connectionsByProject.clear();
+    }
+
+    // the current totals, sent first and again whenever a connection fell too far behind.
+    // the version is read before the totals, so the snapshot may already include the next
+    // few deltas; those are sent again and change nothing
+    Snapshot snapshot(String projectKey) {
+        resyncs.increment();
+        long version = expenseStore.getVersion(projectKey);
+        return new Snapshot(version, format(version, "snapshot", withTotals(projectKey, new JsonObject())));
+    }
+
+    void unsubscribe(SseConnection connection) {
+        boolean[] removed = new boolean[1];
+        connectionsByProject.computeIfPresent(connection.getProjectKey(), (k, connections) -> {
+            removed[0] = connections.remove(connection);
+            return connections.isEmpty() ? null : connections;
+        });
+        if (removed[0]) {
+            connectionCount.decrementAndGet();
+        }
+    }
+
+    private void publishRemoved(Budget budget) {
+        JsonObject data = new JsonObject();
+        data.addProperty("id", budget.getId());
+        publish(budget.getProjectKey(), "expense-removed", data);
+    }
+
+    // store listener calls arrive under the project lock, so the version and totals read here
+    // are exactly those after this change. the rest happens on the hub thread, in call order
+    private void publish(String projectKey, String event, JsonObject data) {
+        publish(projectKey, event, data, true);
+    }
+
+    private void publish(String projectKey, String event, JsonObject data, boolean coveredBySnapshot) {
+        if (!connectionsByProject.containsKey(projectKey)) {
+            return;
+        }
+        long version = expenseStore.getVersion(projectKey);
+        withTotals(projectKey, data);
+        try {
+            long skipAtOrBelow = coveredBySnapshot ? version : SseConnection.NO_VERSION;
+            executor.execute(() -> deliver(projectKey, skipAtOrBelow, format(version, event, data)));
+        } catch (RejectedExecutionException e) {
+            // shutting down, the streams are being closed anyway
+        }
+    }
+
+    private void deliver(String projectKey, long version, byte[] event) {
+        Set<SseConnection> connections = connectionsByProject.get(projectKey);
+        if (connections == null) {
+            return;
+        }
+        for (SseConnection connection : connections) {
+            connection.send(version, event);
+            eventsSent.increment();
+        }
+    }
+
+    private void heartbeat() {
+        try {
+            for (Set<SseConnection> connections : connectionsByProject.values()) {
+                for (SseConnection connection : connections) {
+                    // a dead client shows up as a failed write
+                    connection.send(SseConnection.NO_VERSION, HEARTBEAT);
+                }
+            }
+        } catch (RuntimeException e) {
+            log.warn("Budget stream heartbeat failed", e);
+        }
+    }
+
+    // the totals plus the whole by-category breakdown, as the by-category endpoint returns it.
+    // a project has few categories, and with all of them in every event the dashboards patch
+    // their category chart instead of refetching it on every change
+    private JsonObject withTotals(String projectKey, JsonObject data) {
+        ProjectAggregates aggregates = expenseStore.getAggregates(projectKey);
+        JsonObject totals = new JsonObject();
+        totals.addProperty("totalBudget", aggregates != null ? aggregates.getTotalBudget() : 0.0);
+        totals.addProperty("totalExpenses", aggregates != null ? aggregates.getTotalExpenses() : 0.0);
+        totals.addProperty("remainingBudget", aggregates != null ? aggregates.getRemainingBudget() : 0.0);
+        data.add("totals", totals);
+        JsonArray categories = new JsonArray();
+        if (aggregates != null) {
+            for (Map.Entry<String, ProjectAggregates.CategoryTotal> entry : aggregates.getCategoryTotals().entrySet()) {
+                JsonObject category = new JsonObject();
+                category.addProperty("name", entry.getKey());
+                category.addProperty("value", entry.getValue().getSum());
+                categories.add(category);
+            }
+        }
+        data.add("categories", categories);
+        return data;
+    }
+
+    // the row as the REST listings return it, so a dashboard can drop it straight into its table.
+    // converted right away, the caller may go on to change the Budget
+    private JsonObject expenseData(Budget budget) {
+        JsonObject data = new JsonObject();
+        data.add("expense", gson.toJsonTree(budget, Budget.class));
+        return data;
+    }
+
+    private byte[] format(long version, String event, JsonObject data) {
+        // gson escapes line breaks inside strings, so the JSON is always one data line
+        return ("id: " + Long.toString(version, 36) + "\nevent: " + event + "\ndata: " + gson.toJson(data) + "\n\n")
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    static final class Snapshot {
+        final long version;
+        final byte[] event;
+
+        Snapshot(long version, byte[] event) {
+            this.version = version;
+            this.event = event;
+        }
+    }
+}
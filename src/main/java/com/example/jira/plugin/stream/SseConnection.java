@@ -0,0 +1,134 @@
+package com.example.jira.plugin.stream;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import java.io.IOException;
+import java.util.ArrayDeque;
+
+// one open event stream. writes use the servlet's non-blocking output: events go out while
+// the container says the socket can take more, the rest wait in a short queue until it calls
+// onWritePossible. a client that lets the queue fill up loses the queued deltas and gets a
+// fresh snapshot instead once it catches up, so a slow reader costs a bounded amount of memory
+// and never holds up the hub thread or anyone else's stream
+final class SseConnection implements WriteListener, AsyncListener {
+    // for events that are never skipped as already covered by the snapshot
+    static final long NO_VERSION = Long.MIN_VALUE;
+    private static final int MAX_PENDING_EVENTS = 256;
+
+    private final BudgetEventHub hub;
+    private final String projectKey;
+    private final AsyncContext context;
+    private final ServletOutputStream out;
+    // everything below is guarded by this
+    private final ArrayDeque<byte[]> pending = new ArrayDeque<>();
+    private boolean snapshotNeeded = true;
+    private long snapshotVersion = NO_VERSION;
+    private boolean closed;
+
+    SseConnection(BudgetEventHub hub, String projectKey, AsyncContext context) throws IOException {
+        this.hub = hub;
+        this.projectKey = projectKey;
+        this.context = context;
+        this.out = context.getResponse().getOutputStream();
+    }
+
+    String getProjectKey() {
+        return projectKey;
+    }
+
+    // the container calls onWritePossible once the stream is ready, which sends the snapshot
+    void start() {
+        context.addListener(this);
+        out.setWriteListener(this);
+    }
+
+    // events at or below the version of the last snapshot sent are already in it
+    synchronized void send(long version, byte[] event) {
+        if (closed || snapshotNeeded || (version != NO_VERSION && version <= snapshotVersion)) {
+            return;
+        }
+        if (pending.size() >= MAX_PENDING_EVENTS) {
+            pending.clear();
+            snapshotNeeded = true;
+            return;
+        }
+        pending.add(event);
+        write();
+    }
+
+    @Override
+    public synchronized void onWritePossible() {
+        write();
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        close();
+    }
+
+    @Override
+    public void onComplete(AsyncEvent event) {
+        close();
+    }
+
+    @Override
+    public void onTimeout(AsyncEvent event) {
+        close();
+    }
+
+    @Override
+    public void onError(AsyncEvent event) {
+        close();
+    }
+
+    @Override
+    public void onStartAsync(AsyncEvent event) {
+    }
+
+    void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            pending.clear();
+        }
+        hub.unsubscribe(this);
+        try {
+            context.complete();
+        } catch (IllegalStateException e) {
+            // the container already finished the request
+        }
+    }
+
+    // must hold the lock. isReady() returning false makes the container call onWritePossible
+    // later, so nothing is written until then
+    private void write() {
+        if (closed) {
+            return;
+        }
+        try {
+            while (out.isReady()) {
+                if (snapshotNeeded) {
+                    BudgetEventHub.Snapshot snapshot = hub.snapshot(projectKey);
+                    snapshotNeeded = false;
+                    snapshotVersion = snapshot.version;
+                    out.write(snapshot.event);
+                    continue;
+                }
+                byte[] event = pending.poll();
+                if (event == null) {
+                    out.flush();
+                    return;
+                }
+                out.write(event);
+            }
+        } catch (IOException | RuntimeException e) {
+            // the client went away
+            close();
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.jira.plugin.suggest;
+
+import com.example.jira.plugin.model.Budget;
+
+// what the issue picker shows of an issue, plus what the index finds it by
+public final class IndexedIssue {
+    private final long id;
+    private final String key;
+    private final String summary;
+    private final String type;
+    // null when everyone who can browse the project can see the issue
+    private final Long securityLevelId;
+    // the distinct lowercase words of the summary, and the number of the key
+    final String[] words;
+
+    public IndexedIssue(long id, String key, String summary, String type, Long securityLevelId) {
+        this.id = id;
+        this.key = key;
+        this.summary = summary;
+        this.type = type;
+        this.securityLevelId = securityLevelId;
+        this.words = IssuePrefixIndex.wordsOf(summary, key);
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public String getSummary() {
+        return summary;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public Long getSecurityLevelId() {
+        return securityLevelId;
+    }
+
+    // the picker's option, which is also what an expense keeps in selectedIssues
+    public Budget.Issue toIssue() {
+        Budget.Issue issue = new Budget.Issue();
+        issue.setKey(key);
+        issue.setSummary(summary);
+        issue.setType(type);
+        return issue;
+    }
+}
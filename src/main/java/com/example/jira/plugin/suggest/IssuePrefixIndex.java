@@ -0,0 +1,166 @@
+package com.example.jira.plugin.suggest;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Predicate;
+
+// one project's issues, found by the start of their key or of the words of their summary.
+// keys and words are held in sorted maps, so every prefix is a range of entries and a lookup
+// costs a seek plus the entries it returns, however many issues the project has.
+//
+// writers take the lock, readers never do. a reader may catch an issue between its old and
+// its new words, which for suggestions is harmless
+public final class IssuePrefixIndex {
+    private final Map<Long, IndexedIssue> issuesById = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<String, IndexedIssue> issuesByKey = new ConcurrentSkipListMap<>();
+    private final ConcurrentSkipListMap<String, Set<IndexedIssue>> issuesByWord = new ConcurrentSkipListMap<>();
+    // ids removed while the index is still being loaded, so the load can't bring them back
+    private Set<Long> removedWhileLoading = new HashSet<>();
+
+    // adds the issue or replaces what the index had for it
+    public synchronized void put(IndexedIssue issue) {
+        IndexedIssue old = issuesById.put(issue.getId(), issue);
+        if (old != null) {
+            unindex(old);
+        }
+        index(issue);
+    }
+
+    public synchronized boolean remove(long issueId) {
+        if (removedWhileLoading != null) {
+            removedWhileLoading.add(issueId);
+        }
+        IndexedIssue old = issuesById.remove(issueId);
+        if (old == null) {
+            return false;
+        }
+        unindex(old);
+        return true;
+    }
+
+    // for the initial load, which read the issue before any change the index has seen since
+    public synchronized void add(IndexedIssue issue) {
+        if (issuesById.containsKey(issue.getId()) || (removedWhileLoading != null && removedWhileLoading.contains(issue.getId()))) {
+            return;
+        }
+        issuesById.put(issue.getId(), issue);
+        index(issue);
+    }
+
+    public synchronized void loaded() {
+        removedWhileLoading = null;
+    }
+
+    public boolean contains(long issueId) {
+        return issuesById.containsKey(issueId);
+    }
+
+    public int size() {
+        return issuesById.size();
+    }
+
+    // up to limit visible issues: first those whose key starts with the query, in key order,
+    // then those where every word of the query starts a word of the summary or the key's number
+    public List<IndexedIssue> search(String query, int limit, Predicate<IndexedIssue> visible) {
+        List<IndexedIssue> matches = new ArrayList<>(Math.min(limit, 32));
+        String normalized = query.trim().toLowerCase(Locale.ROOT);
+        if (normalized.isEmpty() || limit <= 0) {
+            return matches;
+        }
+        Set<IndexedIssue> seen = new HashSet<>();
+        for (IndexedIssue issue : issuesByKey.subMap(normalized, true, normalized + Character.MAX_VALUE, false).values()) {
+            if (matches.size() == limit) {
+                return matches;
+            }
+            if (visible.test(issue)) {
+                matches.add(issue);
+                seen.add(issue);
+            }
+        }
+
+        String[] words = wordsOf(normalized, null);
+        if (words.length == 0) {
+            return matches;
+        }
+        // the longest word has the fewest matches to go through
+        String scanned = words[0];
+        for (String word : words) {
+            if (word.length() > scanned.length()) {
+                scanned = word;
+            }
+        }
+        for (Set<IndexedIssue> issues : issuesByWord.subMap(scanned, true, scanned + Character.MAX_VALUE, false).values()) {
+            for (IndexedIssue issue : issues) {
+                if (matches.size() == limit) {
+                    return matches;
+                }
+                if (!seen.contains(issue) && startsWords(issue, words) && visible.test(issue)) {
+                    matches.add(issue);
+                    seen.add(issue);
+                }
+            }
+        }
+        return matches;
+    }
+
+    private void index(IndexedIssue issue) {
+        issuesByKey.put(issue.getKey().toLowerCase(Locale.ROOT), issue);
+        for (String word : issue.words) {
+            issuesByWord.computeIfAbsent(word, w -> ConcurrentHashMap.newKeySet()).add(issue);
+        }
+    }
+
+    private void unindex(IndexedIssue issue) {
+        issuesByKey.remove(issue.getKey().toLowerCase(Locale.ROOT), issue);
+        for (String word : issue.words) {
+            Set<IndexedIssue> issues = issuesByWord.get(word);
+            if (issues != null) {
+                issues.remove(issue);
+                if (issues.isEmpty()) {
+                    issuesByWord.remove(word, issues);
+                }
+            }
+        }
+    }
+
+    private static boolean startsWords(IndexedIssue issue, String[] words) {
+        for (String word : words) {
+            boolean found = false;
+            for (String issueWord : issue.words) {
+                if (issueWord.startsWith(word)) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // runs of letters and digits, lowercased, without repeats; plus the number of the key if given
+    static String[] wordsOf(String text, String key) {
+        Set<String> words = new LinkedHashSet<>();
+        if (text != null) {
+            int start = -1;
+            for (int i = 0; i <= text.length(); i++) {
+                boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+                if (wordChar && start < 0) {
+                    start = i;
+                } else if (!wordChar && start >= 0) {
+                    words.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                    start = -1;
+                }
+            }
+        }
+        if (key != null) {
+            int dash = key.lastIndexOf('-');
+            if (dash >= 0 && dash < key.length() - 1) {
+                words.add(key.substring(dash + 1));
+            }
+        }
+        return words.toArray(new String[0]);
+    }
+}
@@ -0,0 +1,8 @@
+package com.example.jira.plugin.suggest;
+
+import java.util.function.Consumer;
+
+// where an index gets a project's issues when it's first needed
+public interface IssueSource {
+    void load(String projectKey, Consumer<IndexedIssue> issues);
+}
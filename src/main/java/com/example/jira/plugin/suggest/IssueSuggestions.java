@@ -0,0 +1,216 @@
+package com.example.jira.plugin.suggest;
+
+import com.example.jira.plugin.model.Budget;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+// issue picker suggestions from memory. a project's IssuePrefixIndex is loaded on its first
+// suggestion and from then on kept current by issue events, so typing never runs a search.
+// the TTL reloads it now and then for changes that fire no event, e.g. a database import;
+// that reload runs in the background while the old index keeps answering.
+//
+// a project has at most one load running: whoever asks for a project that isn't loaded yet
+// waits for the load already under way instead of starting another
+public class IssueSuggestions {
+    private static final Logger log = LoggerFactory.getLogger(IssueSuggestions.class);
+    private static final int DEFAULT_MAX_PROJECTS = 200;
+    private static final long DEFAULT_TTL_MINUTES = 60;
+
+    private final IssueSource source;
+    private final int maxProjects;
+    private final long ttlNanos;
+    // access ordered, so the least recently used project is dropped first. guarded by itself
+    private final LinkedHashMap<String, Cached> indexes;
+    private final ConcurrentMap<String, CompletableFuture<IssuePrefixIndex>> loads = new ConcurrentHashMap<>();
+    // the indexes those loads are filling. events go to them too, so a change the load read
+    // too early to see isn't lost
+    private final ConcurrentMap<String, IssuePrefixIndex> loading = new ConcurrentHashMap<>();
+    // one thread at most, and none while there's nothing to refresh
+    private final Executor refresher = new ThreadPoolExecutor(0, 1, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+        Thread thread = new Thread(runnable, "budget-tracker-suggest-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder refreshes = new LongAdder();
+    // bumped on every invalidation, so a load that raced with one isn't cached. guarded by indexes
+    private long generation;
+
+    public IssueSuggestions(IssueSource source) {
+        this(source, DEFAULT_MAX_PROJECTS, TimeUnit.MINUTES.toMillis(DEFAULT_TTL_MINUTES));
+    }
+
+    public IssueSuggestions(IssueSource source, int maxProjects, long ttlMillis) {
+        this.source = source;
+        this.maxProjects = maxProjects;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.indexes = new LinkedHashMap<String, Cached>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Cached> eldest) {
+                return size() > IssueSuggestions.this.maxProjects;
+            }
+        };
+    }
+
+    // see IssuePrefixIndex.search for what matches
+    public List<Budget.Issue> suggest(String projectKey, String query, int limit, Predicate<IndexedIssue> visible) {
+        List<Budget.Issue> suggestions = new ArrayList<>();
+        for (IndexedIssue issue : indexOf(projectKey).search(query, limit, visible)) {
+            suggestions.add(issue.toIssue());
+        }
+        return suggestions;
+    }
+
+    // an issue was created or edited. projects without an index are left for their first suggestion
+    public void issueChanged(String projectKey, IndexedIssue issue) {
+        for (IssuePrefixIndex index : indexesOf(projectKey)) {
+            index.put(issue);
+        }
+    }
+
+    // moves are rare, so the old project's index is simply dropped and loaded again when needed
+    public void issueMoved(String projectKey, IndexedIssue issue) {
+        synchronized (indexes) {
+            generation++;
+            indexes.entrySet().removeIf(entry -> !entry.getKey().equals(projectKey) && entry.getValue().index.contains(issue.getId()));
+        }
+        for (Map.Entry<String, IssuePrefixIndex> entry : loading.entrySet()) {
+            if (!entry.getKey().equals(projectKey)) {
+                entry.getValue().remove(issue.getId());
+            }
+        }
+        issueChanged(projectKey, issue);
+    }
+
+    public void issueDeleted(String projectKey, long issueId) {
+        for (IssuePrefixIndex index : indexesOf(projectKey)) {
+            index.remove(issueId);
+        }
+    }
+
+    public void invalidateAll() {
+        synchronized (indexes) {
+            generation++;
+            indexes.clear();
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("hits", hits.sum());
+        stats.put("misses", misses.sum());
+        stats.put("refreshes", refreshes.sum());
+        synchronized (indexes) {
+            stats.put("projects", indexes.size());
+        }
+        stats.put("loading", loading.size());
+        return stats;
+    }
+
+    // a cached index, even an expired one, answers right away; an expired one is reloaded in the
+    // background. without one the caller loads it, or waits for the load already running
+    private IssuePrefixIndex indexOf(String projectKey) {
+        Cached cached;
+        synchronized (indexes) {
+            cached = indexes.get(projectKey);
+        }
+        if (cached != null) {
+            hits.increment();
+            if (System.nanoTime() - cached.loadedAt >= ttlNanos && !loads.containsKey(projectKey)) {
+                refreshes.increment();
+                startLoad(projectKey, refresher);
+            }
+            return cached.index;
+        }
+        misses.increment();
+        try {
+            return startLoad(projectKey, Runnable::run).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    // the project's running load, or a new one on the executor if none is
+    private CompletableFuture<IssuePrefixIndex> startLoad(String projectKey, Executor executor) {
+        CompletableFuture<IssuePrefixIndex> started = new CompletableFuture<>();
+        CompletableFuture<IssuePrefixIndex> load = loads.putIfAbsent(projectKey, started);
+        if (load != null) {
+            return load;
+        }
+        executor.execute(() -> load(projectKey, started));
+        return started;
+    }
+
+    private void load(String projectKey, CompletableFuture<IssuePrefixIndex> load) {
+        IssuePrefixIndex index = new IssuePrefixIndex();
+        long loadGeneration;
+        synchronized (indexes) {
+            loadGeneration = generation;
+        }
+        // the only load of the project, nothing else is registered under its key
+        loading.put(projectKey, index);
+        try {
+            source.load(projectKey, index::add);
+            index.loaded();
+            // cached before it stops being a loading index, so no event can miss it in between
+            synchronized (indexes) {
+                if (generation == loadGeneration) {
+                    indexes.put(projectKey, new Cached(index, System.nanoTime()));
+                }
+            }
+            load.complete(index);
+        } catch (RuntimeException | Error e) {
+            // whoever waits gets the failure; a failed refresh leaves the old index answering
+            log.warn("Failed to load the issues of {} for suggestions", projectKey, e);
+            load.completeExceptionally(e);
+        } finally {
+            loading.remove(projectKey, index);
+            loads.remove(projectKey, load);
+        }
+    }
+
+    private List<IssuePrefixIndex> indexesOf(String projectKey) {
+        List<IssuePrefixIndex> found = new ArrayList<>(2);
+        Cached cached;
+        synchronized (indexes) {
+            cached = indexes.get(projectKey);
+        }
+        if (cached != null) {
+            found.add(cached.index);
+        }
+        IssuePrefixIndex loadingIndex = loading.get(projectKey);
+        if (loadingIndex != null && (cached == null || loadingIndex != cached.index)) {
+            found.add(loadingIndex);
+        }
+        return found;
+    }
+
+    private static final class Cached {
+        final IssuePrefixIndex index;
+        final long loadedAt;
+
+        Cached(IssuePrefixIndex index, long loadedAt) {
+            this.index = index;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.jira.plugin.suggest;
+
+import com.atlassian.jira.component.ComponentAccessor;
+import com.atlassian.jira.issue.Issue;
+import com.atlassian.jira.issue.IssueManager;
+import com.atlassian.jira.project.Project;
+import org.ofbiz.core.entity.GenericEntityException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+// reads a project's issues straight from the database, in batches. no JQL, so the
+// search index isn't involved and the load isn't limited to what one user may see
+public class JiraIssueSource implements IssueSource {
+    private static final int ISSUES_PER_BATCH = 1_000;
+
+    @Override
+    public void load(String projectKey, Consumer<IndexedIssue> issues) {
+        Project project = ComponentAccessor.getProjectManager().getProjectObjByKey(projectKey);
+        if (project == null) {
+            return;
+        }
+        IssueManager issueManager = ComponentAccessor.getIssueManager();
+        List<Long> issueIds;
+        try {
+            issueIds = new ArrayList<>(issueManager.getIssueIdsForProject(project.getId()));
+        } catch (GenericEntityException e) {
+            throw new IllegalStateException("Failed to list the issues of project " + projectKey, e);
+        }
+        for (int from = 0; from < issueIds.size(); from += ISSUES_PER_BATCH) {
+            for (Issue issue : issueManager.getIssueObjects(issueIds.subList(from, Math.min(issueIds.size(), from + ISSUES_PER_BATCH)))) {
+                issues.accept(indexed(issue));
+            }
+        }
+    }
+
+    public static IndexedIssue indexed(Issue issue) {
+        return new IndexedIssue(issue.getId(), issue.getKey(), issue.getSummary(),
+                issue.getIssueType() != null ? issue.getIssueType().getName() : null, issue.getSecurityLevelId());
+    }
+}
@@ -0,0 +1,70 @@
+package ut.com.example.jira.plugin.cache;
+
+import com.example.jira.plugin.cache.ExpiringLruCache;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+
+// the invalidations below run inside the loader, i.e. while the load is in flight
+public class ExpiringLruCacheTest {
+    private final ExpiringLruCache<String, String> cache = new ExpiringLruCache<>(100, TimeUnit.MINUTES.toNanos(10));
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Test
+    public void invalidatingAnotherKeyKeepsTheLoad() {
+        cache.get("B", key -> {
+            cache.invalidate("A");
+            return load(key);
+        });
+        cache.get("B", this::load);
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void invalidatingTheLoadingKeyDropsTheLoad() {
+        cache.get("B", key -> {
+            cache.invalidate("B");
+            return load(key);
+        });
+        cache.get("B", this::load);
+        assertEquals(2, loads.get());
+    }
+
+    // the predicate is checked against what the load returned
+    @Test
+    public void invalidateIfDropsOnlyTheLoadsItMatches() {
+        cache.getAll(Arrays.asList("A", "B"), keys -> {
+            cache.invalidateIf((key, value) -> value.equals("value of A"));
+            Map<String, String> loaded = new HashMap<>();
+            for (String key : keys) {
+                loaded.put(key, load(key));
+            }
+            return loaded;
+        });
+        cache.get("A", this::load);
+        cache.get("B", this::load);
+        assertEquals(3, loads.get());
+    }
+
+    @Test
+    public void clearDropsEveryLoad() {
+        cache.getAll(Collections.singletonList("B"), keys -> {
+            cache.clear();
+            return Collections.singletonMap("B", load("B"));
+        });
+        cache.get("B", this::load);
+        assertEquals(2, loads.get());
+    }
+
+    private String load(String key) {
+        loads.incrementAndGet();
+        return "value of " + key;
+    }
+}
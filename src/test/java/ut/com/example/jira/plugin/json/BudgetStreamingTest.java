@@ -0,0 +1,156 @@
+package ut.com.example.jira.plugin.json;
+
+import com.example.jira.plugin.json.BudgetJson;
+import com.example.jira.plugin.model.Budget;
+import com.example.jira.plugin.store.ExpenseQuery;
+import com.example.jira.plugin.store.ExpenseStore;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+// the expense listings stream the store's rows through BudgetJson.writeBudgets. what they keep
+// on the heap while doing so, and what they allocate per row, must not grow with the result
+public class BudgetStreamingTest {
+    private static final int ROWS = 50_000;
+    private static final ExpenseStore store = new ExpenseStore();
+
+    @BeforeClass
+    public static void fillStore() {
+        List<Budget> budgets = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            Budget budget = new Budget();
+            budget.setId("expense-" + i);
+            budget.setProjectKey("STREAM");
+            budget.setBudgetName("Expense " + i);
+            budget.setBudgetCategory(i % 2 == 0 ? "Labor" : "Hardware");
+            budget.setDescription("Invoice " + i + " for work done during the sprint, booked against the project budget");
+            budget.setAmount(i % 10_000 / 100.0);
+            budget.setDate("2024-0" + (1 + i % 9) + "-15");
+            budgets.add(budget);
+        }
+        store.addAll(budgets);
+    }
+
+    @Test
+    public void writesTheSameBytesAsGson() throws IOException {
+        List<Budget> rows = new ArrayList<>();
+        for (Budget budget : store.query("STREAM", new ExpenseQuery())) {
+            rows.add(budget);
+            if (rows.size() == 100) {
+                break;
+            }
+        }
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        BudgetJson.writeBudgets(rows, output);
+        assertEquals(BudgetJson.gson().toJson(rows), output.toString("UTF-8"));
+    }
+
+    // live heap is sampled after a tenth of the rows and after all of them. a writer that held
+    // the payload (a list copy, a String) would have grown by as much as it wrote in between
+    @Test
+    public void retainedHeapStaysFlat() throws IOException {
+        CountingOutputStream output = new CountingOutputStream();
+        long[] used = new long[2];
+        long[] written = new long[2];
+        Iterable<Budget> rows = () -> new Iterator<Budget>() {
+            private final Iterator<Budget> rows = store.query("STREAM", new ExpenseQuery()).iterator();
+            private int count;
+
+            @Override
+            public boolean hasNext() {
+                if (count == ROWS / 10 || count == ROWS) {
+                    int sample = count == ROWS ? 1 : 0;
+                    used[sample] = usedHeapAfterGc();
+                    written[sample] = output.count;
+                }
+                return rows.hasNext();
+            }
+
+            @Override
+            public Budget next() {
+                count++;
+                return rows.next();
+            }
+        };
+
+        BudgetJson.writeBudgets(rows, output);
+
+        long payloadBetweenSamples = written[1] - written[0];
+        long growth = used[1] - used[0];
+        assertTrue("payload " + payloadBetweenSamples, payloadBetweenSamples > 5_000_000);
+        assertTrue("heap grew by " + growth + " bytes while writing " + payloadBetweenSamples,
+                growth < payloadBetweenSamples / 10);
+    }
+
+    // allocation per row for the whole result and for a tenth of it
+    @Test
+    public void allocationPerRowStaysFlat() throws IOException {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+        Assume.assumeTrue(allocations.isThreadAllocatedMemorySupported() && allocations.isThreadAllocatedMemoryEnabled());
+
+        // warms up the adapters and the store's read path first
+        write(ROWS, allocations);
+        double small = write(ROWS / 10, allocations) / (double) (ROWS / 10);
+        double large = write(ROWS, allocations) / (double) ROWS;
+        assertTrue("per row: " + small + " bytes for " + ROWS / 10 + " rows, " + large + " for " + ROWS,
+                large < small * 1.25);
+    }
+
+    private static long write(int limit, com.sun.management.ThreadMXBean allocations) throws IOException {
+        Iterable<Budget> rows = () -> new Iterator<Budget>() {
+            private final Iterator<Budget> rows = store.query("STREAM", new ExpenseQuery()).iterator();
+            private int count;
+
+            @Override
+            public boolean hasNext() {
+                return count < limit && rows.hasNext();
+            }
+
+            @Override
+            public Budget next() {
+                count++;
+                return rows.next();
+            }
+        };
+        long thread = Thread.currentThread().getId();
+        long before = allocations.getThreadAllocatedBytes(thread);
+        BudgetJson.writeBudgets(rows, new CountingOutputStream());
+        return allocations.getThreadAllocatedBytes(thread) - before;
+    }
+
+    private static long usedHeapAfterGc() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    private static final class CountingOutputStream extends OutputStream {
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package ut.com.example.jira.plugin.persistence;
+
+import com.example.jira.plugin.model.Budget;
+import com.example.jira.plugin.persistence.ExpenseMutation;
+import com.example.jira.plugin.persistence.ExpenseSnapshot;
+import com.example.jira.plugin.persistence.FileExpenseRepository;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+
+public class FileExpenseRepositoryTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    // a crash mid-append leaves a torn last line. the writes after the restart that follows
+    // have to survive the restart after that
+    @Test
+    public void writesAfterATornLineSurviveTheNextRestart() throws IOException {
+        File directory = folder.newFolder("budget");
+        FileExpenseRepository repository = new FileExpenseRepository(directory);
+        repository.load();
+        repository.write(Collections.singletonList(ExpenseMutation.saveExpense(expense("a"))));
+        repository.close();
+        tear(new File(directory, "expenses-0.log"));
+
+        repository = new FileExpenseRepository(directory);
+        assertEquals(Collections.singletonList("a"), new ArrayList<>(repository.load().getExpenses().keySet()));
+        repository.write(Collections.singletonList(ExpenseMutation.saveExpense(expense("b"))));
+        repository.write(Collections.singletonList(ExpenseMutation.saveExpense(expense("c"))));
+        repository.close();
+
+        repository = new FileExpenseRepository(directory);
+        ExpenseSnapshot snapshot = repository.load();
+        repository.close();
+        assertEquals(Arrays.asList("a", "b", "c"), new ArrayList<>(snapshot.getExpenses().keySet()));
+    }
+
+    private static Budget expense(String id) {
+        Budget budget = new Budget();
+        budget.setId(id);
+        budget.setProjectKey("DEMO");
+        budget.setBudgetName("Expense " + id);
+        budget.setBudgetCategory("Labor");
+        budget.setAmount(10);
+        budget.setDate("2024-01-15");
+        return budget;
+    }
+
+    // appends the first half of another entry, as a crash during the write would
+    private static void tear(File log) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(log, "rw")) {
+            raf.seek(raf.length());
+            raf.write("{\"type\":\"SAVE_EXPENSE\",\"expense\":{\"id\":\"torn\",\"proj".getBytes("UTF-8"));
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package ut.com.example.jira.plugin.store;
+
+import com.example.jira.plugin.model.Budget;
+import com.example.jira.plugin.model.Money;
+import com.example.jira.plugin.store.ExpenseStore;
+import com.example.jira.plugin.store.ProjectAggregates;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+// writer threads insert, update (within and across projects) and remove their own expenses
+// against one store at the same time. afterwards every project's aggregates have to match a
+// recomputation from its rows, and the rows have to be exactly what the threads last wrote
+public class ExpenseStoreConcurrencyTest {
+    private static final int THREADS = 8;
+    private static final int OPERATIONS_PER_THREAD = 5_000;
+    private static final String[] PROJECTS = {"ALPHA", "BETA", "GAMMA", "DELTA", "EPSILON"};
+    private static final String[] CATEGORIES = {"Labor", "Hardware", "Travel"};
+
+    @Test
+    public void aggregatesMatchRowsAfterConcurrentWrites() throws Exception {
+        ExpenseStore store = new ExpenseStore();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Map<String, Budget>>> writers = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            writers.add(executor.submit(() -> {
+                start.await();
+                return write(store, thread);
+            }));
+        }
+        start.countDown();
+
+        Map<String, Budget> expected = new HashMap<>();
+        try {
+            for (Future<Map<String, Budget>> writer : writers) {
+                expected.putAll(writer.get(2, TimeUnit.MINUTES));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(expected.size(), store.getAll().size());
+        for (Budget budget : expected.values()) {
+            Budget stored = store.get(budget.getId());
+            assertEquals(budget.getProjectKey(), stored.getProjectKey());
+            assertEquals(budget.getBudgetCategory(), stored.getBudgetCategory());
+            assertEquals(budget.getAmount(), stored.getAmount(), 0);
+        }
+        for (String projectKey : PROJECTS) {
+            assertAggregatesMatchRows(store, projectKey);
+        }
+        assertTrue(store.verifyAggregates());
+    }
+
+    // returns the expenses the thread left in the store, by id
+    private static Map<String, Budget> write(ExpenseStore store, int thread) {
+        Random random = new Random(thread);
+        Map<String, Budget> live = new LinkedHashMap<>();
+        List<String> ids = new ArrayList<>();
+        int next = 0;
+        for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+            int operation = random.nextInt(10);
+            if (operation < 4 || ids.isEmpty()) {
+                Budget budget = expense("t" + thread + "-" + next++, random);
+                store.add(budget);
+                live.put(budget.getId(), budget);
+                ids.add(budget.getId());
+            } else if (operation < 5) {
+                List<Budget> batch = new ArrayList<>();
+                for (int j = 0; j < 10; j++) {
+                    batch.add(expense("t" + thread + "-" + next++, random));
+                }
+                store.addAll(batch);
+                for (Budget budget : batch) {
+                    live.put(budget.getId(), budget);
+                    ids.add(budget.getId());
+                }
+            } else if (operation < 8) {
+                // may move the expense to another project
+                Budget budget = expense(ids.get(random.nextInt(ids.size())), random);
+                store.replace(budget);
+                live.put(budget.getId(), budget);
+            } else {
+                String id = ids.remove(random.nextInt(ids.size()));
+                store.remove(id);
+                live.remove(id);
+            }
+        }
+        return live;
+    }
+
+    private static Budget expense(String id, Random random) {
+        Budget budget = new Budget();
+        budget.setId(id);
+        budget.setProjectKey(PROJECTS[random.nextInt(PROJECTS.length)]);
+        budget.setBudgetName("Expense " + id);
+        budget.setBudgetCategory(CATEGORIES[random.nextInt(CATEGORIES.length)]);
+        budget.setAmount(random.nextInt(1_000_000) / 100.0);
+        budget.setDate("2024-0" + (1 + random.nextInt(9)) + "-1" + random.nextInt(10));
+        return budget;
+    }
+
+    private static void assertAggregatesMatchRows(ExpenseStore store, String projectKey) {
+        long total = 0;
+        Map<String, long[]> categories = new HashMap<>();
+        List<Budget> rows = store.getProjectExpenses(projectKey);
+        for (Budget budget : rows) {
+            long minorUnits = Money.toMinorUnits(budget.getAmount(), Money.DEFAULT_CURRENCY);
+            total += minorUnits;
+            long[] category = categories.computeIfAbsent(budget.getBudgetCategory(), k -> new long[2]);
+            category[0] += minorUnits;
+            category[1]++;
+        }
+
+        ProjectAggregates aggregates = store.getAggregates(projectKey);
+        assertEquals(projectKey, rows.size(), aggregates.getExpenseCount());
+        assertEquals(projectKey, total, aggregates.getTotalExpensesMoney().getMinorUnits());
+        assertEquals(projectKey, categories.keySet(), aggregates.getCategoryTotals().keySet());
+        for (Map.Entry<String, ProjectAggregates.CategoryTotal> entry : aggregates.getCategoryTotals().entrySet()) {
+            long[] category = categories.get(entry.getKey());
+            assertEquals(projectKey + "/" + entry.getKey(), category[0], entry.getValue().getSumMoney().getMinorUnits());
+            assertEquals(projectKey + "/" + entry.getKey(), category[1], entry.getValue().getCount());
+        }
+    }
+}